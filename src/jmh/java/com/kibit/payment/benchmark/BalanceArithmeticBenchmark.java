@@ -0,0 +1,63 @@
+package com.kibit.payment.benchmark;
+
+import com.kibit.payment.money.Money;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.Currency;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the {@link Money} operations performed per transfer: parsing the requested amount, the
+ * balance check of {@code validateSenderBalance}, the debit and credit applied after the
+ * transaction is saved, and the currency conversion. The operations mirror those private methods,
+ * which are covered as a whole by {@link TransactionServiceBenchmark}. Run with {@code -prof gc}
+ * to see the allocation per operation.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class BalanceArithmeticBenchmark {
+
+    private final Currency eur = Currency.getInstance("EUR");
+    private final Currency usd = Currency.getInstance("USD");
+    private BigDecimal requestedAmount = new BigDecimal("25.00");
+    private Money senderBalance = Money.of(new BigDecimal("1000000.00"), eur);
+    private Money receiverBalance = Money.of(new BigDecimal("250.00"), eur);
+    private Money amount = Money.of(requestedAmount, eur);
+    private BigDecimal rate = new BigDecimal("1.0850000000");
+
+    @Benchmark
+    public Money parseAmount() {
+        return Money.of(requestedAmount, eur);
+    }
+
+    @Benchmark
+    public boolean validateSenderBalance() {
+        return senderBalance.isLessThan(amount);
+    }
+
+    @Benchmark
+    public void applyTransfer(Blackhole blackhole) {
+        blackhole.consume(senderBalance.minus(amount));
+        blackhole.consume(receiverBalance.plus(amount));
+    }
+
+    @Benchmark
+    public Money convertCurrency() {
+        return amount.convert(rate, usd, RoundingMode.HALF_EVEN);
+    }
+}
@@ -0,0 +1,118 @@
+package com.kibit.payment.benchmark;
+
+import com.kibit.payment.entity.Account;
+import com.kibit.payment.entity.OutboxEvent;
+import com.kibit.payment.entity.Transaction;
+import com.kibit.payment.entity.TransactionNotification;
+import com.kibit.payment.repository.AccountBalanceBucketRepository;
+import com.kibit.payment.repository.AccountRepository;
+import com.kibit.payment.repository.OutboxEventRepository;
+import com.kibit.payment.repository.TransactionNotificationRepository;
+import com.kibit.payment.repository.TransactionRepository;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiConsumer;
+
+/**
+ * In-memory stand-ins for the Spring Data repositories used on the transfer path.
+ *
+ * Accounts are kept in a map. Transactions, notifications and outbox events only get an id
+ * assigned and are then dropped, so long benchmark runs do not accumulate garbage. Every
+ * repository method the benchmarks do not need throws {@link UnsupportedOperationException}.
+ */
+final class InMemoryRepositories {
+
+    private InMemoryRepositories() {
+    }
+
+    static AccountRepository accounts(Map<Long, Account> accounts) {
+        return proxy(AccountRepository.class, (method, args) -> switch (method) {
+            case "findById", "findByIdForUpdate" -> Optional.ofNullable(accounts.get((Long) args[0]));
+            case "findAllById", "findAllByIdForUpdate" -> {
+                List<Account> found = new ArrayList<>();
+                for (Object id : (Iterable<?>) args[0]) {
+                    Account account = accounts.get((Long) id);
+                    if (account != null) {
+                        found.add(account);
+                    }
+                }
+                yield found;
+            }
+            case "findBucketedAccountIds" -> List.of();
+            case "save" -> {
+                Account account = (Account) args[0];
+                accounts.put(account.getId(), account);
+                yield account;
+            }
+            default -> throw new UnsupportedOperationException(method);
+        });
+    }
+
+    static AccountBalanceBucketRepository balanceBuckets() {
+        return proxy(AccountBalanceBucketRepository.class, (method, args) -> {
+            throw new UnsupportedOperationException(method);
+        });
+    }
+
+    static TransactionRepository transactions() {
+        return writeOnly(TransactionRepository.class, Transaction::setId);
+    }
+
+    static TransactionNotificationRepository transactionNotifications() {
+        return writeOnly(TransactionNotificationRepository.class, TransactionNotification::setId);
+    }
+
+    static OutboxEventRepository outboxEvents() {
+        return writeOnly(OutboxEventRepository.class, OutboxEvent::setId);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <R, T> R writeOnly(Class<R> repositoryType, BiConsumer<T, Long> idSetter) {
+        AtomicLong sequence = new AtomicLong();
+        return proxy(repositoryType, (method, args) -> switch (method) {
+            case "save" -> {
+                T entity = (T) args[0];
+                idSetter.accept(entity, sequence.incrementAndGet());
+                yield entity;
+            }
+            case "saveAll" -> {
+                List<T> saved = new ArrayList<>();
+                for (Object entity : (Iterable<?>) args[0]) {
+                    idSetter.accept((T) entity, sequence.incrementAndGet());
+                    saved.add((T) entity);
+                }
+                yield saved;
+            }
+            default -> throw new UnsupportedOperationException(method);
+        });
+    }
+
+    private static <R> R proxy(Class<R> repositoryType, Handler handler) {
+        Object repository = Proxy.newProxyInstance(repositoryType.getClassLoader(), new Class<?>[]{repositoryType},
+                (proxy, method, args) -> switch (method.getName()) {
+                    case "toString" -> "InMemory" + repositoryType.getSimpleName();
+                    case "hashCode" -> System.identityHashCode(proxy);
+                    case "equals" -> proxy == args[0];
+                    default -> handler.invoke(method.getName(), args);
+                });
+        return repositoryType.cast(repository);
+    }
+
+    static Map<Long, Account> accountMap(Collection<Account> accounts) {
+        Map<Long, Account> map = new ConcurrentHashMap<>();
+        accounts.forEach(account -> map.put(account.getId(), account));
+        return map;
+    }
+
+    @FunctionalInterface
+    private interface Handler {
+        Object invoke(String method, Object[] args);
+    }
+}
@@ -0,0 +1,61 @@
+package com.kibit.payment.benchmark;
+
+import com.kibit.payment.entity.Transaction;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.math.BigDecimal;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the construction of the Kafka notifications: building the versioned event, encoding
+ * it as JSON and wrapping it in an outbox event.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class KafkaProducerServiceBenchmark {
+
+    private static final BigDecimal OLD_BALANCE = new BigDecimal("1025.00");
+
+    private PaymentFixture fixture;
+    private Transaction transaction;
+
+    @Setup
+    public void setUp() {
+        fixture = new PaymentFixture();
+        transaction = fixture.transaction(42L);
+    }
+
+    @TearDown
+    public void tearDown() throws InterruptedException {
+        fixture.stop();
+    }
+
+    @Benchmark
+    public void sendTransactionNotification() {
+        fixture.kafkaProducerService.sendTransactionNotification(transaction);
+    }
+
+    @Benchmark
+    public void modifyBalanceNotification() {
+        fixture.kafkaProducerService.modifyBalanceNotification(fixture.eurAccount, OLD_BALANCE, transaction.getId());
+    }
+
+    @Benchmark
+    public void modifyCurrencyNotification() {
+        fixture.kafkaProducerService.modifyCurrencyNotification(transaction, "EUR", "USD");
+    }
+}
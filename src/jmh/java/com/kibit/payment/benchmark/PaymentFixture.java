@@ -0,0 +1,114 @@
+package com.kibit.payment.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.kibit.payment.contention.LockContentionProfiler;
+import com.kibit.payment.entity.Account;
+import com.kibit.payment.entity.Transaction;
+import com.kibit.payment.entity.TransactionStatus;
+import com.kibit.payment.entity.User;
+import com.kibit.payment.event.EventCodec;
+import com.kibit.payment.exchange.ExchangeRateProvider;
+import com.kibit.payment.exchange.ExchangeRateSource;
+import com.kibit.payment.money.Money;
+import com.kibit.payment.repository.AccountRepository;
+import com.kibit.payment.service.AccountCache;
+import com.kibit.payment.service.AccountService;
+import com.kibit.payment.service.BalanceBucketService;
+import com.kibit.payment.service.KafkaProducerService;
+import com.kibit.payment.service.TransactionNotificationService;
+import com.kibit.payment.service.TransactionService;
+import com.kibit.payment.service.TransferMetrics;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * The service graph of the transfer path wired by hand on top of {@link InMemoryRepositories},
+ * without a Spring context, database or Kafka broker.
+ *
+ * Accounts 1 and 2 are EUR accounts and account 3 is a USD account, all funded well beyond
+ * what a benchmark iteration can spend.
+ */
+final class PaymentFixture {
+
+    static final Long EUR_ACCOUNT = 1L;
+    static final Long OTHER_EUR_ACCOUNT = 2L;
+    static final Long USD_ACCOUNT = 3L;
+
+    private static final BigDecimal OPENING_BALANCE = new BigDecimal("1000000000000.00");
+
+    final ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json().build();
+    final KafkaProducerService kafkaProducerService;
+    final AccountService accountService;
+    final TransactionNotificationService transactionNotificationService;
+    final TransactionService transactionService;
+    final Account eurAccount;
+    final Account usdAccount;
+
+    PaymentFixture() {
+        User user = new User();
+        user.setId(1L);
+        user.setName("Benchmark");
+        user.setEmail("benchmark@test.com");
+
+        eurAccount = account(EUR_ACCOUNT, user, "EUR");
+        usdAccount = account(USD_ACCOUNT, user, "USD");
+        AccountRepository accountRepository = InMemoryRepositories.accounts(
+                InMemoryRepositories.accountMap(List.of(eurAccount, account(OTHER_EUR_ACCOUNT, user, "EUR"), usdAccount)));
+
+        kafkaProducerService = new KafkaProducerService(null, InMemoryRepositories.outboxEvents(),
+                new EventCodec(objectMapper), new SimpleMeterRegistry());
+        accountService = new AccountService(accountRepository, kafkaProducerService,
+                new BalanceBucketService(accountRepository, InMemoryRepositories.balanceBuckets()), Optional.empty(), Optional.empty(),
+                new AccountCache(new EventCodec(objectMapper), new SimpleMeterRegistry(), 10_000, 5_000),
+                new LockContentionProfiler(new SimpleMeterRegistry(), true, 1000, 100, 5000),
+                // Only used to load accounts missing from the cache, which no benchmark does.
+                new TransactionTemplate());
+        transactionNotificationService = new TransactionNotificationService(
+                InMemoryRepositories.transactionNotifications(), new SimpleMeterRegistry(), 10_000, 500, 5, 60_000, 24);
+        transactionNotificationService.start();
+        transactionService = new TransactionService(InMemoryRepositories.transactions(), accountService, kafkaProducerService,
+                transactionNotificationService, exchangeRateProvider(), new TransferMetrics(new SimpleMeterRegistry()));
+    }
+
+    /**
+     * Stops the notification writer thread started by the constructor.
+     */
+    void stop() throws InterruptedException {
+        transactionNotificationService.stop();
+    }
+
+    Transaction transaction(Long id) {
+        Transaction transaction = new Transaction();
+        transaction.setId(id);
+        transaction.setSenderAccount(eurAccount);
+        transaction.setReceiverAccount(usdAccount);
+        transaction.setAmount(new BigDecimal("25.00"));
+        transaction.setCreditedAmount(new BigDecimal("27.13"));
+        transaction.setExchangeRate(new BigDecimal("1.0850000000"));
+        transaction.setStatus(TransactionStatus.COMPLETED);
+        return transaction;
+    }
+
+    private static ExchangeRateProvider exchangeRateProvider() {
+        ExchangeRateProvider provider = new ExchangeRateProvider(
+                () -> new ExchangeRateSource.RateTable("EUR", Map.of("USD", new BigDecimal("1.0850"))),
+                new SimpleMeterRegistry(), Long.MAX_VALUE);
+        provider.refresh();
+        return provider;
+    }
+
+    private static Account account(Long id, User user, String currency) {
+        Account account = new Account();
+        account.setId(id);
+        account.setUser(user);
+        account.setCurrency(currency);
+        account.setBalance(Money.of(OPENING_BALANCE, currency));
+        return account;
+    }
+}
@@ -0,0 +1,46 @@
+package com.kibit.payment.benchmark;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.kibit.payment.entity.Transaction;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the Jackson serialization of the {@link Transaction} returned by
+ * {@code POST /api/transactions}, including the nested sender and receiver accounts and their user.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class TransactionSerializationBenchmark {
+
+    private ObjectWriter writer;
+    private Transaction transaction;
+
+    @Setup
+    public void setUp() throws InterruptedException {
+        PaymentFixture fixture = new PaymentFixture();
+        writer = fixture.objectMapper.writerFor(Transaction.class);
+        transaction = fixture.transaction(42L);
+        fixture.stop();
+    }
+
+    @Benchmark
+    public byte[] serializeTransaction() throws JsonProcessingException {
+        return writer.writeValueAsBytes(transaction);
+    }
+}
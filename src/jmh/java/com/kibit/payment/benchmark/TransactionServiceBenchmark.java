@@ -0,0 +1,67 @@
+package com.kibit.payment.benchmark;
+
+import com.kibit.payment.dto.TransactionRequest;
+import com.kibit.payment.entity.Transaction;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.math.BigDecimal;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures {@code TransactionService.processTransaction} end to end against in-memory
+ * repositories: validation, locking, the balance check, transaction and notification creation,
+ * the balance updates and the outbox events.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class TransactionServiceBenchmark {
+
+    private static final BigDecimal AMOUNT = new BigDecimal("25.00");
+
+    private PaymentFixture fixture;
+
+    @Setup(Level.Iteration)
+    public void setUp() {
+        fixture = new PaymentFixture();
+    }
+
+    @TearDown(Level.Iteration)
+    public void tearDown() throws InterruptedException {
+        fixture.stop();
+    }
+
+    @Benchmark
+    public Transaction processTransaction() {
+        return fixture.transactionService.processTransaction(
+                request(PaymentFixture.EUR_ACCOUNT, PaymentFixture.OTHER_EUR_ACCOUNT));
+    }
+
+    @Benchmark
+    public Transaction processTransactionWithCurrencyConversion() {
+        return fixture.transactionService.processTransaction(
+                request(PaymentFixture.EUR_ACCOUNT, PaymentFixture.USD_ACCOUNT));
+    }
+
+    private static TransactionRequest request(Long senderId, Long receiverId) {
+        TransactionRequest request = new TransactionRequest();
+        request.setSenderAccountId(senderId);
+        request.setReceiverAccountId(receiverId);
+        request.setAmount(AMOUNT);
+        return request;
+    }
+}
@@ -0,0 +1,138 @@
+package com.kibit.payment.loadtest;
+
+import org.HdrHistogram.Histogram;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Closed-loop HTTP load generator for {@code POST /api/transactions}.
+ *
+ * Every client runs on its own virtual thread and sends its next transfer as soon as the previous
+ * response arrives. Receivers are drawn from the hot accounts with probability
+ * {@link LoadTestOptions#hotRatio()} and uniformly from all accounts otherwise; senders are drawn
+ * uniformly. Responses received during the warmup are not recorded.
+ */
+class LoadDriver {
+
+    private static final long MAX_LATENCY_MICROS = TimeUnit.MINUTES.toMicros(1);
+
+    private final LoadTestOptions options;
+    private final List<Long> accountIds;
+    private final URI transactionsUri;
+    private final HttpClient httpClient;
+
+    LoadDriver(LoadTestOptions options, List<Long> accountIds, int port) {
+        this.options = options;
+        this.accountIds = accountIds;
+        this.transactionsUri = URI.create("http://localhost:" + port + "/api/transactions");
+        this.httpClient = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .executor(Executors.newVirtualThreadPerTaskExecutor())
+                .build();
+    }
+
+    LoadTestResult run() throws InterruptedException, ExecutionException {
+        long start = System.nanoTime();
+        long recordFrom = start + TimeUnit.SECONDS.toNanos(options.warmupSeconds());
+        long end = recordFrom + TimeUnit.SECONDS.toNanos(options.durationSeconds());
+
+        List<Future<ClientStats>> clients = new ArrayList<>(options.concurrency());
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < options.concurrency(); i++) {
+                clients.add(executor.submit(() -> runClient(recordFrom, end)));
+            }
+        }
+
+        ClientStats total = new ClientStats();
+        for (Future<ClientStats> client : clients) {
+            total.add(client.get());
+        }
+        return LoadTestResult.from(options, total.latencies, total.completed, total.clientErrors,
+                total.serverErrors, total.connectionErrors);
+    }
+
+    private ClientStats runClient(long recordFrom, long end) {
+        ClientStats stats = new ClientStats();
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        long now = System.nanoTime();
+        while (now < end) {
+            HttpRequest request = transferRequest(random);
+            long sentAt = now;
+            int status;
+            try {
+                status = httpClient.send(request, HttpResponse.BodyHandlers.discarding()).statusCode();
+            } catch (IOException ex) {
+                status = -1;
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+            now = System.nanoTime();
+            if (sentAt >= recordFrom && now < end) {
+                stats.record(status, TimeUnit.NANOSECONDS.toMicros(now - sentAt));
+            }
+        }
+        return stats;
+    }
+
+    private HttpRequest transferRequest(ThreadLocalRandom random) {
+        Long receiver = random.nextDouble() < options.hotRatio()
+                ? accountIds.get(random.nextInt(options.hotAccounts()))
+                : accountIds.get(random.nextInt(accountIds.size()));
+        Long sender;
+        do {
+            sender = accountIds.get(random.nextInt(accountIds.size()));
+        } while (sender.equals(receiver));
+
+        String body = String.format("{\"senderAccountId\":%d,\"receiverAccountId\":%d,\"amount\":%s}",
+                sender, receiver, options.amount().toPlainString());
+        return HttpRequest.newBuilder(transactionsUri)
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(body))
+                .build();
+    }
+
+    /**
+     * Statistics of one client. Only touched by the client's own thread until it finishes.
+     */
+    private static final class ClientStats {
+        private final Histogram latencies = new Histogram(MAX_LATENCY_MICROS, 3);
+        private long completed;
+        private long clientErrors;
+        private long serverErrors;
+        private long connectionErrors;
+
+        void record(int status, long latencyMicros) {
+            latencies.recordValue(Math.min(latencyMicros, MAX_LATENCY_MICROS));
+            if (status < 0) {
+                connectionErrors++;
+            } else if (status >= 500) {
+                serverErrors++;
+            } else if (status >= 400) {
+                clientErrors++;
+            } else {
+                completed++;
+            }
+        }
+
+        void add(ClientStats other) {
+            latencies.add(other.latencies);
+            completed += other.completed;
+            clientErrors += other.clientErrors;
+            serverErrors += other.serverErrors;
+            connectionErrors += other.connectionErrors;
+        }
+    }
+}
@@ -0,0 +1,120 @@
+package com.kibit.payment.loadtest;
+
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.kibit.payment.PaymentApplication;
+import io.zonky.test.db.postgres.embedded.EmbeddedPostgres;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.jdbc.datasource.init.ScriptUtils;
+import org.springframework.kafka.test.EmbeddedKafkaKraftBroker;
+
+import javax.sql.DataSource;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * End-to-end load test of the payment service.
+ *
+ * Starts an embedded PostgreSQL database initialised from {@code init.sql} and an embedded Kafka
+ * broker, boots {@link PaymentApplication} against them on a random port, funds a set of accounts
+ * and drives {@code POST /api/transactions} with {@link LoadDriver}. The report covers throughput,
+ * latency percentiles, error counts and the deadlocks PostgreSQL detected.
+ *
+ * Settings are read from {@code load.*} system properties, see {@link LoadTestOptions}. Any other
+ * system property is visible to the application, so e.g. {@code -Dpayment.ledger.engine=in-memory}
+ * runs the same load against the in-memory ledger engine.
+ */
+public class LoadTestHarness {
+
+    private static final String SCHEMA_SCRIPT = "src/main/java/com/kibit/payment/db/init.sql";
+    private static final String[] TOPICS = {"transaction_notifications", "account_notifications", "currency_notifications"};
+    private static final int TOPIC_PARTITIONS = 8;
+    private static final BigDecimal OPENING_BALANCE = new BigDecimal("1000000000.00");
+
+    public static void main(String[] args) throws Exception {
+        LoadTestOptions options = LoadTestOptions.fromSystemProperties();
+
+        EmbeddedKafkaKraftBroker kafka = new EmbeddedKafkaKraftBroker(1, TOPIC_PARTITIONS, TOPICS);
+        try (EmbeddedPostgres postgres = EmbeddedPostgres.builder().start()) {
+            kafka.afterPropertiesSet();
+            DataSource dataSource = postgres.getPostgresDatabase();
+            try (Connection connection = dataSource.getConnection()) {
+                ScriptUtils.executeSqlScript(connection, new FileSystemResource(SCHEMA_SCRIPT));
+            }
+            List<Long> accountIds = createAccounts(dataSource, options.accounts());
+            long deadlocksBefore = deadlocks(dataSource);
+
+            LoadTestResult result;
+            try (ConfigurableApplicationContext context = startApplication(postgres, kafka)) {
+                int port = ((WebServerApplicationContext) context).getWebServer().getPort();
+                result = new LoadDriver(options, accountIds, port).run();
+            }
+            // Backends flush their statistics when they exit, so deadlocks are read after the pool is closed.
+            result = result.withDeadlocks(deadlocks(dataSource) - deadlocksBefore);
+
+            System.out.println(result.summary());
+            Files.createDirectories(options.resultFile().toAbsolutePath().getParent());
+            Jackson2ObjectMapperBuilder.json().build()
+                    .enable(SerializationFeature.INDENT_OUTPUT)
+                    .writeValue(options.resultFile().toFile(), result);
+        } finally {
+            kafka.destroy();
+        }
+    }
+
+    private static ConfigurableApplicationContext startApplication(EmbeddedPostgres postgres, EmbeddedKafkaKraftBroker kafka) {
+        // Passed as command line arguments so they take precedence over application.yaml.
+        return new SpringApplicationBuilder(PaymentApplication.class)
+                .properties("logging.level.root=WARN")
+                .run("--spring.datasource.url=" + postgres.getJdbcUrl("postgres", "postgres"),
+                        "--spring.datasource.username=postgres",
+                        "--spring.datasource.password=postgres",
+                        "--spring.kafka.bootstrap-servers=" + kafka.getBrokersAsString(),
+                        "--spring.docker.compose.enabled=false",
+                        "--server.port=0",
+                        "--payment.ledger.journal-dir=target/load-test-journal");
+    }
+
+    private static List<Long> createAccounts(DataSource dataSource, int count) throws SQLException {
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement user = connection.prepareStatement(
+                     "INSERT INTO users (name, email) VALUES ('Load test', 'load-test@test.com') RETURNING id");
+             PreparedStatement accounts = connection.prepareStatement(
+                     "INSERT INTO accounts (user_id, balance, currency) SELECT ?, ?, 'EUR' FROM generate_series(1, ?) RETURNING id")) {
+            long userId;
+            try (ResultSet rs = user.executeQuery()) {
+                rs.next();
+                userId = rs.getLong(1);
+            }
+            accounts.setLong(1, userId);
+            accounts.setBigDecimal(2, OPENING_BALANCE);
+            accounts.setInt(3, count);
+            List<Long> accountIds = new ArrayList<>(count);
+            try (ResultSet rs = accounts.executeQuery()) {
+                while (rs.next()) {
+                    accountIds.add(rs.getLong(1));
+                }
+            }
+            return accountIds;
+        }
+    }
+
+    private static long deadlocks(DataSource dataSource) throws SQLException {
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement statement = connection.prepareStatement(
+                     "SELECT deadlocks FROM pg_stat_database WHERE datname = current_database()");
+             ResultSet rs = statement.executeQuery()) {
+            rs.next();
+            return rs.getLong(1);
+        }
+    }
+}
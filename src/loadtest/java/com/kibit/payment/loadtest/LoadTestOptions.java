@@ -0,0 +1,52 @@
+package com.kibit.payment.loadtest;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
+import java.math.BigDecimal;
+import java.nio.file.Path;
+
+/**
+ * Settings of a load test run, read from {@code load.*} system properties.
+ *
+ * @param concurrency number of clients sending requests back to back
+ * @param accounts number of funded accounts created for the run
+ * @param hotAccounts number of accounts, out of {@code accounts}, that receive the skewed share of transfers
+ * @param hotRatio probability that a transfer is sent to one of the hot accounts
+ * @param warmupSeconds time the load runs before latencies and counts are recorded
+ * @param durationSeconds time latencies and counts are recorded for
+ * @param amount amount of every transfer
+ * @param resultFile file the JSON report is written to
+ */
+record LoadTestOptions(int concurrency, int accounts, int hotAccounts, double hotRatio, long warmupSeconds,
+                       long durationSeconds, BigDecimal amount, @JsonIgnore Path resultFile) {
+
+    LoadTestOptions {
+        if (concurrency < 1) {
+            throw new IllegalArgumentException("load.concurrency must be at least 1");
+        }
+        if (accounts < 2) {
+            throw new IllegalArgumentException("load.accounts must be at least 2");
+        }
+        if (hotAccounts < 1 || hotAccounts >= accounts) {
+            throw new IllegalArgumentException("load.hot-accounts must be between 1 and load.accounts - 1");
+        }
+        if (durationSeconds < 1) {
+            throw new IllegalArgumentException("load.duration-seconds must be at least 1");
+        }
+        if (hotRatio < 0 || hotRatio > 1) {
+            throw new IllegalArgumentException("load.hot-ratio must be between 0 and 1");
+        }
+    }
+
+    static LoadTestOptions fromSystemProperties() {
+        return new LoadTestOptions(
+                Integer.getInteger("load.concurrency", 32),
+                Integer.getInteger("load.accounts", 1000),
+                Integer.getInteger("load.hot-accounts", 1),
+                Double.parseDouble(System.getProperty("load.hot-ratio", "0.0")),
+                Long.getLong("load.warmup-seconds", 10),
+                Long.getLong("load.duration-seconds", 30),
+                new BigDecimal(System.getProperty("load.amount", "1.00")),
+                Path.of(System.getProperty("load.result-file", "target/load-test-result.json")));
+    }
+}
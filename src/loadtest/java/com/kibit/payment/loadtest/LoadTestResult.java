@@ -0,0 +1,44 @@
+package com.kibit.payment.loadtest;
+
+import org.HdrHistogram.Histogram;
+
+/**
+ * Report of a load test run. Latencies are in milliseconds and cover every recorded request,
+ * whatever its outcome.
+ *
+ * @param throughput completed transfers per second
+ * @param deadlocks deadlocks PostgreSQL detected while the application was running, including the warmup
+ */
+record LoadTestResult(LoadTestOptions options, long requests, long completed, long clientErrors, long serverErrors,
+                      long connectionErrors, long deadlocks, double throughput, double p50Millis, double p99Millis,
+                      double p999Millis, double maxMillis) {
+
+    static LoadTestResult from(LoadTestOptions options, Histogram latencies, long completed, long clientErrors,
+                               long serverErrors, long connectionErrors) {
+        return new LoadTestResult(options, latencies.getTotalCount(), completed, clientErrors, serverErrors,
+                connectionErrors, 0, completed / (double) options.durationSeconds(),
+                millis(latencies.getValueAtPercentile(50)), millis(latencies.getValueAtPercentile(99)),
+                millis(latencies.getValueAtPercentile(99.9)), millis(latencies.getMaxValue()));
+    }
+
+    LoadTestResult withDeadlocks(long deadlocks) {
+        return new LoadTestResult(options, requests, completed, clientErrors, serverErrors, connectionErrors,
+                deadlocks, throughput, p50Millis, p99Millis, p999Millis, maxMillis);
+    }
+
+    String summary() {
+        return String.format("""
+                        Load test: %d clients, %d accounts, %d hot accounts receiving %.0f%% of transfers, %ds measured
+                          Throughput:  %.1f transfers/s
+                          Latency:     p50 %.2f ms, p99 %.2f ms, p99.9 %.2f ms, max %.2f ms
+                          Requests:    %d (%d completed, %d 4xx, %d 5xx, %d connection errors)
+                          Deadlocks:   %d""",
+                options.concurrency(), options.accounts(), options.hotAccounts(), options.hotRatio() * 100,
+                options.durationSeconds(), throughput, p50Millis, p99Millis, p999Millis, maxMillis,
+                requests, completed, clientErrors, serverErrors, connectionErrors, deadlocks);
+    }
+
+    private static double millis(long micros) {
+        return micros / 1000.0;
+    }
+}
@@ -0,0 +1,47 @@
+package com.kibit.payment.contention;
+
+import com.kibit.payment.dto.LockContentionReport;
+import org.springframework.boot.actuate.endpoint.annotation.DeleteOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Component;
+
+/**
+ * Actuator endpoint {@code /actuator/contention} listing the accounts whose row locks were waited
+ * for the longest, in the current and in the last completed interval of the
+ * {@link LockContentionProfiler}.
+ */
+@Component
+@Endpoint(id = "contention")
+public class LockContentionEndpoint {
+
+    private static final int DEFAULT_LIMIT = 20;
+
+    private final LockContentionProfiler lockContentionProfiler;
+
+    public LockContentionEndpoint(LockContentionProfiler lockContentionProfiler) {
+        this.lockContentionProfiler = lockContentionProfiler;
+    }
+
+    /**
+     * @param limit the maximum number of accounts listed for the current interval, at most
+     *              {@code payment.contention.reported-accounts}
+     */
+    @ReadOperation
+    public Contention contention(@Nullable Integer limit) {
+        return new Contention(lockContentionProfiler.current(limit == null ? DEFAULT_LIMIT : limit),
+                lockContentionProfiler.previous());
+    }
+
+    /**
+     * Completes the current interval, e.g. to measure from a known point in time.
+     */
+    @DeleteOperation
+    public void rotate() {
+        lockContentionProfiler.rotate();
+    }
+
+    public record Contention(LockContentionReport current, LockContentionReport previous) {
+    }
+}
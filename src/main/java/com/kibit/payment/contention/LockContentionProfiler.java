@@ -0,0 +1,150 @@
+package com.kibit.payment.contention;
+
+import com.kibit.payment.dto.LockContentionReport;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Finds the accounts whose row locks transfers wait for the longest.
+ *
+ * Callers report how long each locking query took, which is its lock wait plus one round trip, and
+ * the wait is added to every account the query locked: a query that waited for one hot account is
+ * also charged to the other accounts it locked, but only the hot account collects waits from all of
+ * its transfers. Waits are kept in a {@link LockWaitSketch} of {@code payment.contention.capacity}
+ * accounts, so memory stays bounded however many accounts there are.
+ *
+ * Waits are collected in intervals of {@code interval-ms}; the last completed interval is kept as a
+ * report. An account whose wait within an interval exceeds {@code hot-wait-ms} is logged once per
+ * interval and counted in {@code payment.contention.hot.accounts}.
+ *
+ * Transfers report their waits while they still hold their row locks, so recording only appends
+ * to a lock-free queue. The sketch is updated from the queue by a scheduled task every
+ * {@code drain-interval-ms} and before every report. Should the task fall behind by more than
+ * {@value #MAX_PENDING} waits, further waits are dropped and counted in
+ * {@code payment.contention.dropped}.
+ */
+@Component
+@Slf4j
+public class LockContentionProfiler {
+
+    static final int MAX_PENDING = 1 << 18;
+
+    private final boolean enabled;
+    private final int capacity;
+    private final int reportedAccounts;
+    private final long hotWaitNanos;
+    private final Counter hotAccounts;
+    private final Counter dropped;
+    private final Queue<Wait> pending = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger pendingCount = new AtomicInteger();
+    private LockWaitSketch sketch;
+    private Instant intervalStart;
+    private LockContentionReport previous;
+
+    public LockContentionProfiler(MeterRegistry meterRegistry,
+                                  @Value("${payment.contention.enabled:true}") boolean enabled,
+                                  @Value("${payment.contention.capacity:1000}") int capacity,
+                                  @Value("${payment.contention.reported-accounts:100}") int reportedAccounts,
+                                  @Value("${payment.contention.hot-wait-ms:5000}") long hotWaitMs) {
+        this.enabled = enabled;
+        this.capacity = capacity;
+        this.reportedAccounts = reportedAccounts;
+        this.hotWaitNanos = Duration.ofMillis(hotWaitMs).toNanos();
+        this.hotAccounts = meterRegistry.counter("payment.contention.hot.accounts");
+        this.dropped = meterRegistry.counter("payment.contention.dropped");
+        this.sketch = new LockWaitSketch(capacity);
+        this.intervalStart = Instant.now();
+    }
+
+    /**
+     * Records a locking query that locked the given accounts and took {@code waitNanos}.
+     */
+    public void record(Collection<Long> accountIds, long waitNanos) {
+        if (!enabled) {
+            return;
+        }
+        for (Long accountId : accountIds) {
+            record(accountId, waitNanos);
+        }
+    }
+
+    /**
+     * Records a locking query that locked one account and took {@code waitNanos}.
+     */
+    public void record(Long accountId, long waitNanos) {
+        if (!enabled) {
+            return;
+        }
+        if (pendingCount.incrementAndGet() > MAX_PENDING) {
+            pendingCount.decrementAndGet();
+            dropped.increment();
+            return;
+        }
+        pending.offer(new Wait(accountId, waitNanos));
+    }
+
+    /**
+     * Adds the recorded waits to the sketch.
+     */
+    @Scheduled(fixedDelayString = "${payment.contention.drain-interval-ms:100}")
+    public synchronized void drain() {
+        Wait wait;
+        while ((wait = pending.poll()) != null) {
+            pendingCount.decrementAndGet();
+            LockWaitSketch.Entry entry = sketch.record(wait.accountId(), wait.nanos());
+            long intervalWaitNanos = entry.guaranteedWaitNanos();
+            if (!entry.reported && intervalWaitNanos >= hotWaitNanos) {
+                entry.reported = true;
+                hotAccounts.increment();
+                log.warn("Account {} is contended: transfers waited {} ms for its lock since {}",
+                        wait.accountId(), Duration.ofNanos(intervalWaitNanos).toMillis(), intervalStart);
+            }
+        }
+    }
+
+    /**
+     * Returns the most contended accounts of the current interval, most first.
+     *
+     * @param limit the maximum number of accounts returned, clamped to 1..{@code reported-accounts}
+     */
+    public synchronized LockContentionReport current(int limit) {
+        drain();
+        return new LockContentionReport(intervalStart, Instant.now(), sketch.size(),
+                sketch.top(Math.clamp(limit, 1, reportedAccounts)));
+    }
+
+    /**
+     * Returns the most contended accounts of the last completed interval, or null before the first
+     * interval has completed.
+     */
+    public synchronized LockContentionReport previous() {
+        return previous;
+    }
+
+    /**
+     * Completes the current interval and starts the next one.
+     */
+    @Scheduled(fixedRateString = "${payment.contention.interval-ms:300000}",
+            initialDelayString = "${payment.contention.interval-ms:300000}")
+    public synchronized void rotate() {
+        drain();
+        Instant now = Instant.now();
+        previous = new LockContentionReport(intervalStart, now, sketch.size(), sketch.top(reportedAccounts));
+        sketch = new LockWaitSketch(capacity);
+        intervalStart = now;
+    }
+
+    private record Wait(Long accountId, long nanos) {
+    }
+}
@@ -0,0 +1,186 @@
+package com.kibit.payment.contention;
+
+import com.kibit.payment.dto.LockContentionReport;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Space-saving heavy hitters sketch of lock wait time per account.
+ *
+ * At most {@code capacity} accounts are tracked. An account that is not tracked while the sketch is
+ * full takes over the entry with the least wait and inherits that wait as its error, so the wait of
+ * a tracked account is never underestimated and is overestimated by at most its error. Every
+ * account whose true wait exceeds 1/capacity of the total is guaranteed to be tracked. Entries are
+ * kept in a min-heap on their wait, so recording is O(log capacity).
+ *
+ * Each entry also keeps a histogram of the single waits seen since it started tracking the account,
+ * in power-of-two buckets of microseconds. Not thread-safe.
+ */
+final class LockWaitSketch {
+
+    // Bucket i holds waits below 2^i microseconds; the last one also holds everything longer.
+    static final int HISTOGRAM_BUCKETS = 32;
+
+    private final Entry[] heap;
+    private final Map<Long, Entry> entries;
+    private int size;
+
+    LockWaitSketch(int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("capacity must be positive");
+        }
+        this.heap = new Entry[capacity];
+        this.entries = new HashMap<>(capacity * 4 / 3 + 1);
+    }
+
+    /**
+     * Adds one lock wait of an account.
+     *
+     * @return the entry now tracking the account
+     */
+    Entry record(Long accountId, long waitNanos) {
+        Entry entry = entries.get(accountId);
+        if (entry == null) {
+            if (size < heap.length) {
+                entry = new Entry(accountId, size);
+                heap[size++] = entry;
+            } else {
+                entry = heap[0];
+                entries.remove(entry.accountId);
+                entry.reuse(accountId);
+            }
+            entries.put(accountId, entry);
+        }
+        entry.add(waitNanos);
+        siftDown(entry.heapIndex);
+        siftUp(entry.heapIndex);
+        return entry;
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * Returns the {@code limit} accounts with the most wait, most first.
+     */
+    List<LockContentionReport.HotAccount> top(int limit) {
+        Entry[] sorted = Arrays.copyOf(heap, size);
+        Arrays.sort(sorted, Comparator.comparingLong((Entry entry) -> entry.waitNanos).reversed());
+        List<LockContentionReport.HotAccount> top = new ArrayList<>(Math.min(limit, size));
+        for (int i = 0; i < sorted.length && i < limit; i++) {
+            top.add(sorted[i].toHotAccount());
+        }
+        return top;
+    }
+
+    private void siftUp(int index) {
+        Entry entry = heap[index];
+        while (index > 0) {
+            int parent = (index - 1) >>> 1;
+            if (heap[parent].waitNanos <= entry.waitNanos) {
+                break;
+            }
+            place(heap[parent], index);
+            index = parent;
+        }
+        place(entry, index);
+    }
+
+    private void siftDown(int index) {
+        Entry entry = heap[index];
+        int half = size >>> 1;
+        while (index < half) {
+            int child = 2 * index + 1;
+            if (child + 1 < size && heap[child + 1].waitNanos < heap[child].waitNanos) {
+                child++;
+            }
+            if (entry.waitNanos <= heap[child].waitNanos) {
+                break;
+            }
+            place(heap[child], index);
+            index = child;
+        }
+        place(entry, index);
+    }
+
+    private void place(Entry entry, int index) {
+        heap[index] = entry;
+        entry.heapIndex = index;
+    }
+
+    static int bucketOf(long waitNanos) {
+        long micros = TimeUnit.NANOSECONDS.toMicros(waitNanos);
+        return Math.min(HISTOGRAM_BUCKETS - 1, 64 - Long.numberOfLeadingZeros(micros));
+    }
+
+    static final class Entry {
+
+        private Long accountId;
+        private int heapIndex;
+        // Includes the error, so the heap orders entries by their upper bound.
+        private long waitNanos;
+        private long errorNanos;
+        private long locks;
+        private long maxWaitNanos;
+        private final long[] histogram = new long[HISTOGRAM_BUCKETS];
+        boolean reported;
+
+        private Entry(Long accountId, int heapIndex) {
+            this.accountId = accountId;
+            this.heapIndex = heapIndex;
+        }
+
+        /**
+         * Starts tracking another account, which inherits this entry's wait as its error.
+         */
+        private void reuse(Long accountId) {
+            this.accountId = accountId;
+            this.errorNanos = waitNanos;
+            this.locks = 0;
+            this.maxWaitNanos = 0;
+            this.reported = false;
+            Arrays.fill(histogram, 0);
+        }
+
+        private void add(long nanos) {
+            waitNanos += nanos;
+            locks++;
+            maxWaitNanos = Math.max(maxWaitNanos, nanos);
+            histogram[bucketOf(nanos)]++;
+        }
+
+        Long accountId() {
+            return accountId;
+        }
+
+        /**
+         * Wait that is certain to belong to the account.
+         */
+        long guaranteedWaitNanos() {
+            return waitNanos - errorNanos;
+        }
+
+        private LockContentionReport.HotAccount toHotAccount() {
+            List<LockContentionReport.Bucket> buckets = new ArrayList<>();
+            for (int i = 0; i < HISTOGRAM_BUCKETS; i++) {
+                if (histogram[i] > 0) {
+                    Long lessThanMicros = i == HISTOGRAM_BUCKETS - 1 ? null : 1L << i;
+                    buckets.add(new LockContentionReport.Bucket(lessThanMicros, histogram[i]));
+                }
+            }
+            return new LockContentionReport.HotAccount(accountId, locks, millis(waitNanos), millis(errorNanos),
+                    millis(maxWaitNanos), buckets);
+        }
+
+        private static double millis(long nanos) {
+            return nanos / 1_000_000.0;
+        }
+    }
+}
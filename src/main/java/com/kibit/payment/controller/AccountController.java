@@ -1,16 +1,29 @@
 package com.kibit.payment.controller;
 
-import com.kibit.payment.entity.Account;
+import com.kibit.payment.dto.AccountActivityResponse;
+import com.kibit.payment.dto.AccountResponse;
+import com.kibit.payment.dto.TransactionDirection;
+import com.kibit.payment.dto.TransactionHistoryPage;
+import com.kibit.payment.exception.AccountActivityUnavailableException;
+import com.kibit.payment.security.PreAuthorize;
 import com.kibit.payment.service.AccountService;
+import com.kibit.payment.service.TransactionHistoryService;
+import com.kibit.payment.streams.AccountActivityService;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Optional;
+
 /**
  * The AccountController class is a REST controller responsible for handling HTTP requests
- * related to accounts. It provides endpoints to fetch account details.
+ * related to accounts. It provides endpoints to fetch account details and transaction history.
  *
  * This controller maps requests to the `/api/accounts` endpoint and works with
  * an AccountService to perform operations involving accounts.
@@ -19,22 +32,86 @@ import org.springframework.web.bind.annotation.RestController;
 @RequestMapping("/api/accounts")
 public class AccountController {
 
+    private static final Duration DEFAULT_ACTIVITY_RANGE = Duration.ofHours(1);
 
     private final AccountService accountService;
+    private final TransactionHistoryService transactionHistoryService;
+    private final Optional<AccountActivityService> accountActivityService;
 
-    public AccountController(AccountService accountService) {
+    public AccountController(AccountService accountService, TransactionHistoryService transactionHistoryService,
+                             Optional<AccountActivityService> accountActivityService) {
         this.accountService = accountService;
+        this.transactionHistoryService = transactionHistoryService;
+        this.accountActivityService = accountActivityService;
     }
 
     /**
      * Handles an HTTP GET request to retrieve an account by its unique identifier.
      *
      * @param id the unique identifier of the account to be retrieved
-     * @return a ResponseEntity containing the Account object and an HTTP status code
+     * @return a ResponseEntity containing the account and an HTTP status code
      */
     @GetMapping("/{id}")
-    public ResponseEntity<Account> getAccountById(@PathVariable Long id) {
+    public ResponseEntity<AccountResponse> getAccountById(@PathVariable Long id) {
         return ResponseEntity.ok(accountService.getAccountById(id));
     }
 
+    /**
+     * Handles an HTTP GET request to list the transactions of an account, newest first.
+     *
+     * @param id the unique identifier of the account
+     * @param direction whether sent, received or all transactions are listed
+     * @param from only transactions created at or after this instant are listed
+     * @param to only transactions created before this instant are listed
+     * @param cursor the nextCursor of the previous page; omitted for the first page
+     * @param limit the maximum number of transactions on the page
+     * @return a ResponseEntity containing the page and the cursor of the next one
+     */
+    @GetMapping("/{id}/transactions")
+    public ResponseEntity<TransactionHistoryPage> getAccountTransactions(@PathVariable Long id,
+                                                                         @RequestParam(defaultValue = "ALL") TransactionDirection direction,
+                                                                         @RequestParam(required = false) Instant from,
+                                                                         @RequestParam(required = false) Instant to,
+                                                                         @RequestParam(required = false) String cursor,
+                                                                         @RequestParam(defaultValue = "50") int limit) {
+        return ResponseEntity.ok(transactionHistoryService.getAccountTransactions(id, direction, from, to, cursor, limit));
+    }
+
+    /**
+     * Handles an HTTP GET request to read the precomputed transfer aggregates of an account,
+     * per time window and in total, without querying the transactions table.
+     *
+     * @param id the unique identifier of the account
+     * @param from start of the range; defaults to one hour before {@code to}
+     * @param to end of the range, exclusive; defaults to now
+     * @param local answer from this instance only; set when a query is forwarded between instances
+     * @return a ResponseEntity containing the aggregates and an HTTP status code
+     */
+    @GetMapping("/{id}/activity")
+    public ResponseEntity<AccountActivityResponse> getAccountActivity(@PathVariable Long id,
+                                                                      @RequestParam(required = false) Instant from,
+                                                                      @RequestParam(required = false) Instant to,
+                                                                      @RequestParam(defaultValue = "false") boolean local) {
+        AccountActivityService service = accountActivityService.orElseThrow(
+                () -> new AccountActivityUnavailableException("Account activity aggregates are disabled"));
+        Instant end = to == null ? Instant.now() : to;
+        Instant start = from == null ? end.minus(DEFAULT_ACTIVITY_RANGE) : from;
+        return ResponseEntity.ok(service.getActivity(id, start, end, local));
+    }
+
+    /**
+     * Handles an HTTP PUT request to split the balance of an account into balance buckets.
+     * Intended for hot accounts, such as merchant settlement accounts, that receive a large share
+     * of all transfers.
+     *
+     * @param id the unique identifier of the account
+     * @param count the number of buckets to split the balance into
+     * @return a ResponseEntity containing the updated account and an HTTP status code
+     */
+    @PutMapping("/{id}/balance-buckets")
+    @PreAuthorize()
+    public ResponseEntity<AccountResponse> enableBalanceBuckets(@PathVariable Long id, @RequestParam int count) {
+        return ResponseEntity.ok(accountService.enableBalanceBuckets(id, count));
+    }
+
 }
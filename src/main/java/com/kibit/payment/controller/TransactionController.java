@@ -1,25 +1,57 @@
 package com.kibit.payment.controller;
 
+import com.kibit.payment.dto.BatchMode;
+import com.kibit.payment.dto.BatchTransactionResult;
 import com.kibit.payment.dto.TransactionRequest;
+import com.kibit.payment.dto.TransactionResponse;
 import com.kibit.payment.entity.Transaction;
+import com.kibit.payment.entity.TransactionStatus;
 import com.kibit.payment.security.PreAuthorize;
+import com.kibit.payment.service.AsyncTransactionProcessor;
+import com.kibit.payment.service.IdempotencyService;
 import com.kibit.payment.service.TransactionService;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
+import java.net.URI;
+import java.util.List;
+
 @RestController
 @RequestMapping("/api/transactions")
 public class TransactionController {
 
 
+    static final String IDEMPOTENCY_KEY_HEADER = "Idempotency-Key";
+
     private final TransactionService transactionService;
+    private final IdempotencyService idempotencyService;
+    private final AsyncTransactionProcessor asyncTransactionProcessor;
 
-    public TransactionController(TransactionService transactionService) {
+    public TransactionController(TransactionService transactionService, IdempotencyService idempotencyService,
+                                 AsyncTransactionProcessor asyncTransactionProcessor) {
         this.transactionService = transactionService;
+        this.idempotencyService = idempotencyService;
+        this.asyncTransactionProcessor = asyncTransactionProcessor;
+    }
+
+    /**
+     * Retrieves a transaction by its id, e.g. to poll the status of an asynchronously
+     * submitted transfer.
+     *
+     * @param id the unique identifier of the transaction
+     * @return a ResponseEntity containing the transaction and an HTTP status code
+     */
+    @GetMapping("/{id}")
+    public ResponseEntity<TransactionResponse> getTransactionById(@PathVariable Long id) {
+        return ResponseEntity.ok(transactionService.getTransactionById(id));
     }
 
 
@@ -27,15 +59,58 @@ public class TransactionController {
      * Creates a new transaction based on the provided transaction request.
      * This method processes the transaction and returns the created transaction
      * wrapped in a ResponseEntity with an HTTP status of 201 (Created).
+     * If an Idempotency-Key header is present, retries with the same key return the
+     * originally created transaction instead of processing the transfer again.
      *
      * @param request the transaction request containing details such as sender account ID,
      *                receiver account ID, and the transfer amount
-     * @return a ResponseEntity containing the created Transaction object and the HTTP status
+     * @param idempotencyKey optional client-chosen key identifying this transfer across retries
+     * @return a ResponseEntity containing the created transaction and the HTTP status
      */
     @PostMapping
     @PreAuthorize()
-    public ResponseEntity<Transaction> createTransaction(@RequestBody TransactionRequest request) {
-        Transaction transaction = transactionService.processTransaction(request);
-        return ResponseEntity.status(HttpStatus.CREATED).body(transaction);
+    public ResponseEntity<TransactionResponse> createTransaction(@RequestBody TransactionRequest request,
+                                                                 @RequestHeader(value = IDEMPOTENCY_KEY_HEADER, required = false) String idempotencyKey) {
+        Transaction transaction = idempotencyKey == null
+                ? transactionService.processTransaction(request)
+                : idempotencyService.processTransaction(idempotencyKey, request);
+        return ResponseEntity.status(HttpStatus.CREATED).body(TransactionResponse.from(transaction));
+    }
+
+    /**
+     * Submits a transaction for asynchronous execution.
+     * The request is validated and stored with status PENDING, and the response is sent with
+     * HTTP 202 (Accepted) before any balance is changed. The Location header points to the
+     * transaction, which moves to COMPLETED or FAILED once it has been executed.
+     *
+     * @param request the transaction request containing details such as sender account ID,
+     *                receiver account ID, and the transfer amount
+     * @return a ResponseEntity containing the pending transaction and its status URL
+     */
+    @PostMapping("/async")
+    @PreAuthorize()
+    public ResponseEntity<TransactionResponse> submitTransaction(@RequestBody TransactionRequest request) {
+        Transaction transaction = asyncTransactionProcessor.submit(request);
+        return ResponseEntity.accepted()
+                .location(URI.create("/api/transactions/" + transaction.getId()))
+                .body(TransactionResponse.from(transaction));
+    }
+
+    /**
+     * Creates a batch of transactions in a single database transaction.
+     * Responds with HTTP 201 (Created) if every transaction of the batch was completed and with
+     * HTTP 207 (Multi-Status) otherwise; the body always contains one result per request.
+     *
+     * @param requests the transaction requests of the batch
+     * @param mode whether the batch is applied all-or-nothing or best-effort
+     * @return a ResponseEntity containing the per-transaction results in request order
+     */
+    @PostMapping("/batch")
+    @PreAuthorize()
+    public ResponseEntity<List<BatchTransactionResult>> createTransactions(@RequestBody List<TransactionRequest> requests,
+                                                                           @RequestParam(defaultValue = "ALL_OR_NOTHING") BatchMode mode) {
+        List<BatchTransactionResult> results = transactionService.processBatch(requests, mode);
+        boolean allCompleted = results.stream().allMatch(result -> result.getStatus() == TransactionStatus.COMPLETED);
+        return ResponseEntity.status(allCompleted ? HttpStatus.CREATED : HttpStatus.MULTI_STATUS).body(results);
     }
 }
@@ -1,7 +1,12 @@
 package com.kibit.payment.controller;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.kibit.payment.dto.UserPage;
+import com.kibit.payment.dto.UserResponse;
 import com.kibit.payment.entity.User;
 import com.kibit.payment.service.UserService;
+import jakarta.servlet.http.HttpServletResponse;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
@@ -9,14 +14,17 @@ import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
-import java.util.List;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
 
 /**
  * The UserController class is a REST controller responsible for managing users.
- * It provides endpoints for creating users, retrieving a user by ID, and
- * fetching all users.
+ * It provides endpoints for creating users, retrieving a user by ID,
+ * paging through users and exporting all users as a stream.
  *
  * This controller maps requests to the `/api/users` endpoint and delegates
  * user management operations to the UserService.
@@ -26,25 +34,59 @@ import java.util.List;
 public class UserController {
 
 
+    static final String NDJSON = "application/x-ndjson";
+
     private final UserService userService;
+    private final ObjectWriter userWriter;
 
-    public UserController(UserService userService) {
+    public UserController(UserService userService, ObjectMapper objectMapper) {
         this.userService = userService;
+        this.userWriter = objectMapper.writerFor(UserResponse.class);
     }
 
     @PostMapping
-    public ResponseEntity<User> createUser(@RequestBody User user) {
+    public ResponseEntity<UserResponse> createUser(@RequestBody User user) {
         User createdUser = userService.createUser(user.getName(), user.getEmail());
-        return ResponseEntity.status(HttpStatus.CREATED).body(createdUser);
+        return ResponseEntity.status(HttpStatus.CREATED).body(UserResponse.from(createdUser));
     }
 
     @GetMapping("/{id}")
-    public ResponseEntity<User> getUserById(@PathVariable Long id) {
+    public ResponseEntity<UserResponse> getUserById(@PathVariable Long id) {
         return ResponseEntity.ok(userService.getUserById(id));
     }
 
+    /**
+     * Handles an HTTP GET request to retrieve one page of users in id order.
+     *
+     * @param after the nextCursor of the previous page; omitted for the first page
+     * @param limit the maximum number of users on the page
+     * @return a ResponseEntity containing the page and the cursor of the next one
+     */
     @GetMapping
-    public ResponseEntity<List<User>> getUsers() {
-        return ResponseEntity.ok(userService.getAllUSers());
+    public ResponseEntity<UserPage> getUsers(@RequestParam(required = false) Long after,
+                                             @RequestParam(defaultValue = "100") int limit) {
+        return ResponseEntity.ok(userService.getUsers(after, limit));
+    }
+
+    /**
+     * Handles an HTTP GET request to export all users as newline-delimited JSON, one user per line
+     * in id order. Rows are written as they are read from the database cursor, so memory use does
+     * not grow with the number of users. The response is written on the request thread, so the
+     * export holds a read admission permit and a read pool connection until it is complete.
+     *
+     * @param response the response the users are written to
+     */
+    @GetMapping(value = "/stream", produces = NDJSON)
+    public void streamUsers(HttpServletResponse response) throws IOException {
+        response.setContentType(NDJSON);
+        OutputStream out = response.getOutputStream();
+        userService.streamUsers(user -> {
+            try {
+                out.write(userWriter.writeValueAsBytes(user));
+                out.write('\n');
+            } catch (IOException ex) {
+                throw new UncheckedIOException(ex);
+            }
+        });
     }
 }
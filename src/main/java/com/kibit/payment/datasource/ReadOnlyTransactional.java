@@ -0,0 +1,24 @@
+package com.kibit.payment.datasource;
+
+import org.springframework.transaction.annotation.Transactional;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Runs the annotated method in a read-only transaction, whose queries go to the read pool
+ * configured by {@link ReadWriteDataSourceConfiguration} instead of the primary.
+ *
+ * What is read this way can be up to {@code payment.datasource.read.max-lag-ms} behind the
+ * primary, so it is meant for queries answering API reads, not for reads a write is decided on.
+ * Called within a transaction that is already running, the method joins it and uses its connection.
+ */
+@Target({ElementType.METHOD, ElementType.TYPE})
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+@Transactional(readOnly = true)
+public @interface ReadOnlyTransactional {
+}
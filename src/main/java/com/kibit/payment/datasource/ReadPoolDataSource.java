@@ -0,0 +1,36 @@
+package com.kibit.payment.datasource;
+
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+
+/**
+ * The read pool, replaced by the primary while the {@link ReplicaLagMonitor} finds it too far behind.
+ */
+final class ReadPoolDataSource extends DelegatingDataSource {
+
+    private final DataSource primaryDataSource;
+    private final ReplicaLagMonitor replicaLagMonitor;
+
+    ReadPoolDataSource(DataSource readDataSource, DataSource primaryDataSource, ReplicaLagMonitor replicaLagMonitor) {
+        super(readDataSource);
+        this.primaryDataSource = primaryDataSource;
+        this.replicaLagMonitor = replicaLagMonitor;
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        return current().getConnection();
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        return current().getConnection(username, password);
+    }
+
+    private DataSource current() {
+        return replicaLagMonitor.isAvailable() ? obtainTargetDataSource() : primaryDataSource;
+    }
+}
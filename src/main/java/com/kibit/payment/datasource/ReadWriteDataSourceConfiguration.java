@@ -0,0 +1,94 @@
+package com.kibit.payment.datasource;
+
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.autoconfigure.jdbc.JdbcConnectionDetails;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.jdbc.DataSourceBuilder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+
+/**
+ * Two connection pools behind the application's {@link DataSource}: the primary pool for
+ * everything that writes or has to see the latest committed state, and a read pool for
+ * {@link ReadOnlyTransactional} queries, so that API reads neither compete with transfers for
+ * connections nor load the primary database.
+ *
+ * The primary pool is configured under {@code spring.datasource} as before. The read pool
+ * connects to the same database unless {@code payment.datasource.read.jdbc-url}, {@code username}
+ * and {@code password} point it at a replica, and takes its Hikari settings, such as
+ * {@code maximum-pool-size}, from {@code payment.datasource.read}. Connections are taken lazily:
+ * a transaction gets a read pool connection once it has been marked read-only, otherwise a primary
+ * one. While the {@link ReplicaLagMonitor} finds the replica more than {@code max-lag-ms} behind,
+ * read-only transactions use the primary pool as well.
+ *
+ * Setting {@code payment.datasource.read.enabled} to false leaves the single pool configured by
+ * Spring Boot.
+ */
+@Configuration
+@ConditionalOnProperty(name = "payment.datasource.read.enabled", havingValue = "true", matchIfMissing = true)
+public class ReadWriteDataSourceConfiguration {
+
+    @Bean
+    @ConfigurationProperties("spring.datasource.hikari")
+    public HikariDataSource primaryDataSource(DataSourceProperties properties,
+                                              ObjectProvider<JdbcConnectionDetails> connectionDetails) {
+        HikariDataSource dataSource = createPool(properties, connectionDetails.getIfAvailable());
+        dataSource.setPoolName("primary");
+        return dataSource;
+    }
+
+    @Bean
+    @ConfigurationProperties("payment.datasource.read")
+    public HikariDataSource readDataSource(DataSourceProperties properties,
+                                           ObjectProvider<JdbcConnectionDetails> connectionDetails) {
+        HikariDataSource dataSource = createPool(properties, connectionDetails.getIfAvailable());
+        dataSource.setPoolName("read");
+        dataSource.setReadOnly(true);
+        return dataSource;
+    }
+
+    @Bean
+    public ReplicaLagMonitor replicaLagMonitor(@Qualifier("readDataSource") DataSource readDataSource,
+                                               MeterRegistry meterRegistry,
+                                               @Value("${payment.datasource.read.max-lag-ms:1000}") long maxLagMs) {
+        return new ReplicaLagMonitor(new JdbcTemplate(readDataSource), meterRegistry, maxLagMs);
+    }
+
+    @Bean
+    @Primary
+    public DataSource dataSource(@Qualifier("primaryDataSource") DataSource primaryDataSource,
+                                 @Qualifier("readDataSource") DataSource readDataSource,
+                                 ReplicaLagMonitor replicaLagMonitor) {
+        LazyConnectionDataSourceProxy dataSource = new LazyConnectionDataSourceProxy();
+        dataSource.setTargetDataSource(primaryDataSource);
+        dataSource.setReadOnlyDataSource(new ReadPoolDataSource(readDataSource, primaryDataSource, replicaLagMonitor));
+        // Known up front, so the proxy does not open a connection at startup to find them out.
+        dataSource.setDefaultAutoCommit(true);
+        dataSource.setDefaultTransactionIsolation(Connection.TRANSACTION_READ_COMMITTED);
+        return dataSource;
+    }
+
+    private static HikariDataSource createPool(DataSourceProperties properties, JdbcConnectionDetails connectionDetails) {
+        DataSourceBuilder<HikariDataSource> builder = properties.initializeDataSourceBuilder().type(HikariDataSource.class);
+        if (connectionDetails != null) {
+            // E.g. the database started by the Docker Compose support.
+            builder.url(connectionDetails.getJdbcUrl())
+                    .username(connectionDetails.getUsername())
+                    .password(connectionDetails.getPassword())
+                    .driverClassName(connectionDetails.getDriverClassName());
+        }
+        return builder.build();
+    }
+}
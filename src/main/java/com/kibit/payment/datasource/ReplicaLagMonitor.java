@@ -0,0 +1,98 @@
+package com.kibit.payment.datasource;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+
+/**
+ * Measures how far the database behind the read pool is behind the primary and decides whether
+ * read-only transactions may use it.
+ *
+ * The lag is zero when the read pool points at a database that is not in recovery, or at a replica
+ * that is streaming WAL from the primary and has replayed everything it received. Otherwise, also
+ * when the replica lost its connection to the primary, it is the time since the last transaction
+ * replayed by the replica. Reads go to the read pool only while the last check succeeded and found
+ * at most {@code payment.datasource.read.max-lag-ms}; until the first check, after a failed check
+ * and while the replica is behind, they go to the primary. Published as
+ * {@code payment.datasource.read.lag} in milliseconds, NaN while unknown, and
+ * {@code payment.datasource.read.available}, 1 while reads use the read pool.
+ *
+ * Whether the replica is streaming is only visible to roles with {@code pg_read_all_stats}, e.g.
+ * through {@code pg_monitor}; without it, the read pool user sees an idle replica as falling behind.
+ */
+@Slf4j
+public class ReplicaLagMonitor {
+
+    static final String LAG_QUERY = """
+            SELECT pg_is_in_recovery() AS in_recovery,
+                   EXISTS (SELECT 1 FROM pg_stat_wal_receiver WHERE status = 'streaming') AS streaming,
+                   pg_last_wal_receive_lsn() IS NOT DISTINCT FROM pg_last_wal_replay_lsn() AS replayed_received,
+                   EXTRACT(EPOCH FROM clock_timestamp() - pg_last_xact_replay_timestamp())::float8 * 1000 AS replay_age_ms""";
+
+    private final JdbcTemplate readJdbcTemplate;
+    private final double maxLagMs;
+    private volatile double lagMs = Double.NaN;
+    private volatile boolean available;
+
+    public ReplicaLagMonitor(JdbcTemplate readJdbcTemplate, MeterRegistry meterRegistry, long maxLagMs) {
+        this.readJdbcTemplate = readJdbcTemplate;
+        this.maxLagMs = maxLagMs;
+        Gauge.builder("payment.datasource.read.lag", this, monitor -> monitor.lagMs)
+                .baseUnit("milliseconds")
+                .register(meterRegistry);
+        Gauge.builder("payment.datasource.read.available", this, monitor -> monitor.available ? 1 : 0)
+                .register(meterRegistry);
+    }
+
+    /**
+     * Returns whether read-only transactions may use the read pool.
+     */
+    public boolean isAvailable() {
+        return available;
+    }
+
+    @Scheduled(fixedDelayString = "${payment.datasource.read.lag-check-interval-ms:1000}")
+    public void check() {
+        ReplicaStatus status;
+        try {
+            status = readJdbcTemplate.queryForObject(LAG_QUERY, (resultSet, rowNum) -> new ReplicaStatus(
+                    resultSet.getBoolean("in_recovery"),
+                    resultSet.getBoolean("streaming"),
+                    resultSet.getBoolean("replayed_received"),
+                    resultSet.getObject("replay_age_ms", Double.class)));
+        } catch (DataAccessException ex) {
+            lagMs = Double.NaN;
+            if (available) {
+                available = false;
+                log.warn("Could not check the lag of the read pool, reading from the primary: {}", ex.getMessage());
+            }
+            return;
+        }
+        lagMs = status == null ? Double.NaN : status.lagMs();
+        boolean caughtUp = lagMs <= maxLagMs;
+        if (caughtUp && !available) {
+            log.info("Read pool is {} ms behind the primary, reading from the read pool", lagMs);
+        } else if (!caughtUp && available) {
+            log.warn("Read pool is {} ms behind the primary, reading from the primary", lagMs);
+        }
+        available = caughtUp;
+    }
+
+    /**
+     * The state of the database behind the read pool, as reported by {@link #LAG_QUERY}.
+     *
+     * @param replayAgeMs the time since the last replayed transaction; null if none was replayed
+     */
+    record ReplicaStatus(boolean inRecovery, boolean streaming, boolean replayedReceived, Double replayAgeMs) {
+
+        double lagMs() {
+            if (!inRecovery || (streaming && replayedReceived)) {
+                return 0;
+            }
+            return replayAgeMs == null ? Double.POSITIVE_INFINITY : replayAgeMs;
+        }
+    }
+}
@@ -10,26 +10,138 @@ CREATE TABLE accounts (
                           user_id INT NOT NULL REFERENCES users(id) ON DELETE CASCADE,
                           balance DECIMAL(15, 2) NOT NULL CHECK (balance >= 0),
                           currency VARCHAR(3) NOT NULL DEFAULT 'HUF',
+                          balance_buckets INT NOT NULL DEFAULT 0,
                           created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP
 );
 
+CREATE TABLE account_balance_buckets (
+                                         account_id INT NOT NULL REFERENCES accounts(id) ON DELETE CASCADE,
+                                         bucket INT NOT NULL,
+                                         balance DECIMAL(15, 2) NOT NULL CHECK (balance >= 0),
+                                         PRIMARY KEY (account_id, bucket)
+);
+
+-- Creates the missing monthly range partitions of a table partitioned by a timestamp column, from the
+-- month of first_day through months_ahead months after the current one, named <parent>_pYYYYMM.
+-- Called by PartitionMaintenance to keep future partitions in place.
+CREATE FUNCTION create_monthly_partitions(parent TEXT, first_day DATE, months_ahead INT) RETURNS INT LANGUAGE plpgsql AS '
+DECLARE
+    month_start DATE := date_trunc(''month'', first_day);
+    last_month DATE := date_trunc(''month'', CURRENT_DATE) + make_interval(months => months_ahead);
+    partition_name TEXT;
+    created INT := 0;
+BEGIN
+    WHILE month_start <= last_month LOOP
+        partition_name := parent || ''_p'' || to_char(month_start, ''YYYYMM'');
+        IF to_regclass(partition_name) IS NULL THEN
+            EXECUTE format(''CREATE TABLE %I PARTITION OF %I FOR VALUES FROM (%L) TO (%L)'',
+                           partition_name, parent, month_start, month_start + interval ''1 month'');
+            created := created + 1;
+        END IF;
+        month_start := month_start + interval ''1 month'';
+    END LOOP;
+    RETURN created;
+END';
+
+-- Partitioned by month of created_at, so old months can be detached and archived as a whole. The
+-- primary key has to contain the partition key; ids are still unique, as they come from one sequence.
 CREATE TABLE transactions (
-                              id SERIAL PRIMARY KEY,
+                              id SERIAL,
                               sender_account_id INT NOT NULL REFERENCES accounts(id) ON DELETE CASCADE,
                               receiver_account_id INT NOT NULL REFERENCES accounts(id) ON DELETE CASCADE,
                               amount DECIMAL(15, 2) NOT NULL CHECK (amount > 0),
+                              credited_amount DECIMAL(15, 2) CHECK (credited_amount > 0),
+                              exchange_rate DECIMAL(19, 10),
                               status VARCHAR(20) CHECK (status IN ('PENDING', 'COMPLETED', 'FAILED')) NOT NULL DEFAULT 'PENDING',
-                              created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP
-);
+                              failure_reason VARCHAR(255),
+                              created_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+                              completed_at TIMESTAMP,
+                              PRIMARY KEY (id, created_at)
+) PARTITION BY RANGE (created_at);
+
+CREATE INDEX idx_transactions_pending ON transactions (id) WHERE status = 'PENDING';
+
+-- Account history is read newest first per side of the transfer. The indexes carry every column of
+-- the response, so a page is an index-only range scan whatever the size of the account's history.
+CREATE INDEX idx_transactions_sender_history ON transactions (sender_account_id, created_at, id)
+    INCLUDE (receiver_account_id, amount, credited_amount, exchange_rate, status, failure_reason);
+CREATE INDEX idx_transactions_receiver_history ON transactions (receiver_account_id, created_at, id)
+    INCLUDE (sender_account_id, amount, credited_amount, exchange_rate, status, failure_reason);
+-- Rows are completed in roughly the order they are inserted, so a BRIN index finds a recent range of
+-- completion times, as scanned by the notification reconciliation, at a fraction of the size and
+-- update cost of a B-tree.
+CREATE INDEX idx_transactions_completed_at ON transactions USING brin (completed_at);
 
+-- Partitioned by month of sent_at. transaction_id cannot reference transactions, whose primary key
+-- includes created_at; both tables are archived with the same retention.
 CREATE TABLE transaction_notifications (
-                                           id SERIAL PRIMARY KEY,
-                                           transaction_id INT NOT NULL REFERENCES transactions(id) ON DELETE CASCADE,
+                                           id SERIAL,
+                                           transaction_id INT NOT NULL,
                                            recipient_email VARCHAR(100) NOT NULL,
                                            message TEXT NOT NULL,
-                                           sent_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP
+                                           sent_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+                                           PRIMARY KEY (id, sent_at)
+) PARTITION BY RANGE (sent_at);
+
+CREATE INDEX idx_transaction_notifications_transaction ON transaction_notifications (transaction_id);
+
+SELECT create_monthly_partitions('transactions', CURRENT_DATE, 2);
+SELECT create_monthly_partitions('transaction_notifications', CURRENT_DATE, 2);
+
+CREATE TABLE idempotency_keys (
+                                  idempotency_key VARCHAR(100) PRIMARY KEY,
+                                  request_hash VARCHAR(64) NOT NULL,
+                                  transaction_id INT NOT NULL,
+                                  created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP
+);
+
+CREATE INDEX idx_idempotency_keys_created_at ON idempotency_keys (created_at);
+
+CREATE TABLE outbox_events (
+                               id BIGSERIAL PRIMARY KEY,
+                               topic VARCHAR(100) NOT NULL,
+                               message_key VARCHAR(64),
+                               payload TEXT NOT NULL,
+                               created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+                               published_at TIMESTAMP
+);
+
+CREATE INDEX idx_outbox_events_unpublished ON outbox_events (id) WHERE published_at IS NULL;
+
+CREATE TABLE ledger_checkpoints (
+                                    id BIGSERIAL PRIMARY KEY,
+                                    journal_segment BIGINT NOT NULL,
+                                    created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP
+);
+
+-- Double-entry ledger (payment.ledger.engine=double-entry). Entries are only ever inserted; xid is the
+-- database transaction that wrote the entry, which tells whether a checkpoint's snapshot covered it.
+-- There are no foreign keys, as checking them would lock the hot accounts rows in KEY SHARE mode.
+CREATE TABLE ledger_entries (
+                                id BIGSERIAL PRIMARY KEY,
+                                account_id INT NOT NULL,
+                                transaction_id INT NOT NULL,
+                                amount DECIMAL(15, 2) NOT NULL CHECK (amount <> 0),
+                                xid xid8 NOT NULL DEFAULT pg_current_xact_id(),
+                                created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP
+);
+
+CREATE INDEX idx_ledger_entries_account ON ledger_entries (account_id, xid) INCLUDE (amount);
+CREATE INDEX idx_ledger_entries_xid ON ledger_entries (xid);
+
+CREATE TABLE account_checkpoints (
+                                     account_id INT PRIMARY KEY REFERENCES accounts(id) ON DELETE CASCADE,
+                                     balance DECIMAL(15, 2) NOT NULL CHECK (balance >= 0),
+                                     snapshot pg_snapshot NOT NULL,
+                                     created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP
 );
 
 INSERT INTO public.users (id, name, email, created_at) VALUES (DEFAULT, 'Test', 'test@test.com', DEFAULT);
 INSERT INTO public.accounts (id, user_id, balance, currency, created_at) VALUES (DEFAULT, 1, 1000.00, 'EUR', DEFAULT);
-INSERT INTO public.accounts (id, user_id, balance, currency, created_at) VALUES (DEFAULT, 1, 300.00, 'USD', DEFAULT);
\ No newline at end of file
+INSERT INTO public.accounts (id, user_id, balance, currency, created_at) VALUES (DEFAULT, 1, 300.00, 'USD', DEFAULT);
+
+-- Ids are assigned by Hibernate from blocks of 50 (pooled-lo), so every nextval reserves a block.
+ALTER SEQUENCE users_id_seq INCREMENT BY 50;
+ALTER SEQUENCE accounts_id_seq INCREMENT BY 50;
+ALTER SEQUENCE transactions_id_seq INCREMENT BY 50;
+ALTER SEQUENCE transaction_notifications_id_seq INCREMENT BY 50;
@@ -0,0 +1,8 @@
+-- Adds the indexes behind the reconciliation of missing transaction notifications to an existing database.
+-- Both tables are partitioned, and indexes on a partitioned table cannot be built CONCURRENTLY: creating
+-- them locks out writes until the partitions are indexed. On large tables, first create each index on
+-- every partition with CONCURRENTLY, then run these statements, which attach the existing ones.
+
+CREATE INDEX IF NOT EXISTS idx_transactions_created_at ON transactions USING brin (created_at);
+
+CREATE INDEX IF NOT EXISTS idx_transaction_notifications_transaction ON transaction_notifications (transaction_id);
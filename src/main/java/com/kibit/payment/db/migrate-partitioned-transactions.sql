@@ -0,0 +1,87 @@
+-- Converts transactions and transaction_notifications into tables range-partitioned by month.
+-- Every existing row is copied into the monthly partition of its date; the original tables are kept as
+-- *_unpartitioned and can be dropped once the copy has been checked. The id sequences are moved over
+-- to the new tables. Run once, with the application stopped.
+
+BEGIN;
+
+ALTER TABLE idempotency_keys DROP CONSTRAINT IF EXISTS idempotency_keys_transaction_id_fkey;
+ALTER TABLE transaction_notifications DROP CONSTRAINT IF EXISTS transaction_notifications_transaction_id_fkey;
+
+ALTER TABLE transactions RENAME TO transactions_unpartitioned;
+ALTER TABLE transactions_unpartitioned RENAME CONSTRAINT transactions_pkey TO transactions_unpartitioned_pkey;
+ALTER INDEX IF EXISTS idx_transactions_pending RENAME TO idx_transactions_unpartitioned_pending;
+ALTER INDEX IF EXISTS idx_transactions_sender_history RENAME TO idx_transactions_unpartitioned_sender_history;
+ALTER INDEX IF EXISTS idx_transactions_receiver_history RENAME TO idx_transactions_unpartitioned_receiver_history;
+
+ALTER TABLE transaction_notifications RENAME TO transaction_notifications_unpartitioned;
+ALTER TABLE transaction_notifications_unpartitioned RENAME CONSTRAINT transaction_notifications_pkey TO transaction_notifications_unpartitioned_pkey;
+
+CREATE FUNCTION create_monthly_partitions(parent TEXT, first_day DATE, months_ahead INT) RETURNS INT LANGUAGE plpgsql AS '
+DECLARE
+    month_start DATE := date_trunc(''month'', first_day);
+    last_month DATE := date_trunc(''month'', CURRENT_DATE) + make_interval(months => months_ahead);
+    partition_name TEXT;
+    created INT := 0;
+BEGIN
+    WHILE month_start <= last_month LOOP
+        partition_name := parent || ''_p'' || to_char(month_start, ''YYYYMM'');
+        IF to_regclass(partition_name) IS NULL THEN
+            EXECUTE format(''CREATE TABLE %I PARTITION OF %I FOR VALUES FROM (%L) TO (%L)'',
+                           partition_name, parent, month_start, month_start + interval ''1 month'');
+            created := created + 1;
+        END IF;
+        month_start := month_start + interval ''1 month'';
+    END LOOP;
+    RETURN created;
+END';
+
+CREATE TABLE transactions (
+                              id INT NOT NULL DEFAULT nextval('transactions_id_seq'),
+                              sender_account_id INT NOT NULL REFERENCES accounts(id) ON DELETE CASCADE,
+                              receiver_account_id INT NOT NULL REFERENCES accounts(id) ON DELETE CASCADE,
+                              amount DECIMAL(15, 2) NOT NULL CHECK (amount > 0),
+                              credited_amount DECIMAL(15, 2) CHECK (credited_amount > 0),
+                              exchange_rate DECIMAL(19, 10),
+                              status VARCHAR(20) CHECK (status IN ('PENDING', 'COMPLETED', 'FAILED')) NOT NULL DEFAULT 'PENDING',
+                              failure_reason VARCHAR(255),
+                              created_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+                              PRIMARY KEY (id, created_at)
+) PARTITION BY RANGE (created_at);
+ALTER SEQUENCE transactions_id_seq OWNED BY transactions.id;
+
+CREATE INDEX idx_transactions_pending ON transactions (id) WHERE status = 'PENDING';
+CREATE INDEX idx_transactions_sender_history ON transactions (sender_account_id, created_at, id)
+    INCLUDE (receiver_account_id, amount, credited_amount, exchange_rate, status, failure_reason);
+CREATE INDEX idx_transactions_receiver_history ON transactions (receiver_account_id, created_at, id)
+    INCLUDE (sender_account_id, amount, credited_amount, exchange_rate, status, failure_reason);
+
+CREATE TABLE transaction_notifications (
+                                           id INT NOT NULL DEFAULT nextval('transaction_notifications_id_seq'),
+                                           transaction_id INT NOT NULL,
+                                           recipient_email VARCHAR(100) NOT NULL,
+                                           message TEXT NOT NULL,
+                                           sent_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+                                           PRIMARY KEY (id, sent_at)
+) PARTITION BY RANGE (sent_at);
+ALTER SEQUENCE transaction_notifications_id_seq OWNED BY transaction_notifications.id;
+
+SELECT create_monthly_partitions('transactions',
+                                 COALESCE((SELECT MIN(created_at) FROM transactions_unpartitioned), CURRENT_TIMESTAMP)::date, 3);
+SELECT create_monthly_partitions('transaction_notifications',
+                                 COALESCE((SELECT MIN(sent_at) FROM transaction_notifications_unpartitioned), CURRENT_TIMESTAMP)::date, 3);
+
+INSERT INTO transactions (id, sender_account_id, receiver_account_id, amount, credited_amount, exchange_rate,
+                          status, failure_reason, created_at)
+SELECT id, sender_account_id, receiver_account_id, amount, credited_amount, exchange_rate,
+       status, failure_reason, COALESCE(created_at, CURRENT_TIMESTAMP)
+FROM transactions_unpartitioned;
+
+INSERT INTO transaction_notifications (id, transaction_id, recipient_email, message, sent_at)
+SELECT id, transaction_id, recipient_email, message, COALESCE(sent_at, CURRENT_TIMESTAMP)
+FROM transaction_notifications_unpartitioned;
+
+COMMIT;
+
+ANALYZE transactions;
+ANALYZE transaction_notifications;
@@ -0,0 +1,20 @@
+-- Migrates an existing database to the pooled id generation used by the entities.
+-- The SERIAL sequences are kept, but each nextval now reserves a block of 50 ids, and the
+-- sequences are moved past the highest existing id so the first block cannot collide.
+-- Run once, with the application stopped.
+
+BEGIN;
+
+ALTER SEQUENCE users_id_seq INCREMENT BY 50;
+SELECT setval('users_id_seq', COALESCE((SELECT MAX(id) FROM users), 0) + 1, false);
+
+ALTER SEQUENCE accounts_id_seq INCREMENT BY 50;
+SELECT setval('accounts_id_seq', COALESCE((SELECT MAX(id) FROM accounts), 0) + 1, false);
+
+ALTER SEQUENCE transactions_id_seq INCREMENT BY 50;
+SELECT setval('transactions_id_seq', COALESCE((SELECT MAX(id) FROM transactions), 0) + 1, false);
+
+ALTER SEQUENCE transaction_notifications_id_seq INCREMENT BY 50;
+SELECT setval('transaction_notifications_id_seq', COALESCE((SELECT MAX(id) FROM transaction_notifications), 0) + 1, false);
+
+COMMIT;
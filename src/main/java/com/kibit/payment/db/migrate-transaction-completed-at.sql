@@ -0,0 +1,15 @@
+-- Adds the completion time of transactions, which the reconciliation of missing transaction notifications
+-- looks for instead of their creation time, to an existing database.
+-- Only transactions created within the reconciliation lookback (payment.notifications.reconcile-lookback-hours)
+-- are backfilled; older ones are never reconciled again. Their completion time is approximated by
+-- their creation time. Stop the application while this runs, so that no transaction completes without
+-- recording it.
+
+ALTER TABLE transactions ADD COLUMN IF NOT EXISTS completed_at TIMESTAMP;
+
+UPDATE transactions SET completed_at = created_at
+WHERE status = 'COMPLETED' AND completed_at IS NULL AND created_at >= CURRENT_TIMESTAMP - INTERVAL '24 hours';
+
+CREATE INDEX IF NOT EXISTS idx_transactions_completed_at ON transactions USING brin (completed_at);
+
+DROP INDEX IF EXISTS idx_transactions_created_at;
@@ -0,0 +1,9 @@
+-- Adds the indexes behind GET /api/accounts/{id}/transactions to an existing database.
+-- CONCURRENTLY builds them without blocking transfers, so this can run while the application is up.
+-- It cannot run inside a transaction block; run each statement on its own.
+
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_transactions_sender_history ON transactions (sender_account_id, created_at, id)
+    INCLUDE (receiver_account_id, amount, credited_amount, exchange_rate, status, failure_reason);
+
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_transactions_receiver_history ON transactions (receiver_account_id, created_at, id)
+    INCLUDE (sender_account_id, amount, credited_amount, exchange_rate, status, failure_reason);
@@ -0,0 +1,21 @@
+package com.kibit.payment.dto;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * Transfer aggregates of an account between {@code from} and {@code to}, in the account's currency:
+ * the totals over the range and the non-empty windows they are made of, oldest first.
+ */
+public record AccountActivityResponse(Long accountId,
+                                      Instant from,
+                                      Instant to,
+                                      long count,
+                                      BigDecimal volume,
+                                      BigDecimal netFlow,
+                                      List<Window> windows) {
+
+    public record Window(Instant start, Instant end, long count, BigDecimal volume, BigDecimal netFlow) {
+    }
+}
@@ -0,0 +1,26 @@
+package com.kibit.payment.dto;
+
+import com.kibit.payment.entity.Account;
+
+import java.math.BigDecimal;
+import java.util.Date;
+
+/**
+ * An account as returned by the API. The balance is the account's total balance, which for
+ * accounts with balance buckets or with the in-memory ledger engine is not the one stored on the
+ * account row.
+ */
+public record AccountResponse(Long id,
+                              Long userId,
+                              BigDecimal balance,
+                              String currency,
+                              Date createdAt) {
+
+    public static AccountResponse from(Account account, BigDecimal balance) {
+        return new AccountResponse(account.getId(),
+                account.getUser().getId(),
+                balance,
+                account.getCurrency(),
+                account.getCreatedAt());
+    }
+}
@@ -0,0 +1,15 @@
+package com.kibit.payment.dto;
+
+/**
+ * Controls how a batch of transfers reacts to individual transfers that cannot be executed.
+ */
+public enum BatchMode {
+    /**
+     * Either every transfer of the batch is applied or none of them is.
+     */
+    ALL_OR_NOTHING,
+    /**
+     * Every transfer that can be executed is applied; the others are reported as failed.
+     */
+    BEST_EFFORT
+}
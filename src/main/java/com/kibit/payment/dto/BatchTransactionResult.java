@@ -0,0 +1,34 @@
+package com.kibit.payment.dto;
+
+import com.kibit.payment.entity.TransactionStatus;
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * The outcome of a single transfer of a batch. The {@code index} refers to the position of the
+ * transfer in the submitted list.
+ */
+@Setter
+@Getter
+public class BatchTransactionResult {
+    private int index;
+    private TransactionStatus status;
+    private Long transactionId;
+    private String message;
+
+    public static BatchTransactionResult completed(int index, Long transactionId) {
+        BatchTransactionResult result = new BatchTransactionResult();
+        result.setIndex(index);
+        result.setStatus(TransactionStatus.COMPLETED);
+        result.setTransactionId(transactionId);
+        return result;
+    }
+
+    public static BatchTransactionResult failed(int index, String message) {
+        BatchTransactionResult result = new BatchTransactionResult();
+        result.setIndex(index);
+        result.setStatus(TransactionStatus.FAILED);
+        result.setMessage(message);
+        return result;
+    }
+}
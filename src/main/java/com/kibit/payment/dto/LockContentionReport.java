@@ -0,0 +1,30 @@
+package com.kibit.payment.dto;
+
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * The accounts whose row locks were waited for the longest between {@code from} and {@code to}, most
+ * first. Waits are the time the locking queries took, in milliseconds; {@code waitErrorMs} is how much
+ * an account's {@code waitMs} may be overestimated by, as it is only tracked approximately.
+ */
+public record LockContentionReport(Instant from,
+                                   Instant to,
+                                   int trackedAccounts,
+                                   List<HotAccount> accounts) {
+
+    public record HotAccount(Long accountId,
+                             long locks,
+                             double waitMs,
+                             double waitErrorMs,
+                             double maxWaitMs,
+                             List<Bucket> waits) {
+    }
+
+    /**
+     * Number of single waits shorter than {@code lessThanMicros} and at least as long as the previous
+     * bucket's bound; the bound of the last bucket is null.
+     */
+    public record Bucket(Long lessThanMicros, long count) {
+    }
+}
@@ -0,0 +1,19 @@
+package com.kibit.payment.dto;
+
+/**
+ * Which transfers of an account a transaction history lists.
+ */
+public enum TransactionDirection {
+    /**
+     * Transfers the account sent.
+     */
+    SENT,
+    /**
+     * Transfers the account received.
+     */
+    RECEIVED,
+    /**
+     * Transfers the account sent or received.
+     */
+    ALL
+}
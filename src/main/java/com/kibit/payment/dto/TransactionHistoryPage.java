@@ -0,0 +1,10 @@
+package com.kibit.payment.dto;
+
+import java.util.List;
+
+/**
+ * One page of an account's transactions, newest first. {@code nextCursor} is passed as
+ * {@code cursor} to fetch the next page and is null on the last page.
+ */
+public record TransactionHistoryPage(List<TransactionResponse> transactions, String nextCursor) {
+}
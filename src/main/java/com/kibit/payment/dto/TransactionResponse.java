@@ -0,0 +1,34 @@
+package com.kibit.payment.dto;
+
+import com.kibit.payment.entity.Transaction;
+import com.kibit.payment.entity.TransactionStatus;
+
+import java.math.BigDecimal;
+import java.util.Date;
+
+/**
+ * A transaction as returned by the API. Accounts are referenced by id only, so building one never
+ * loads the accounts or their owners.
+ */
+public record TransactionResponse(Long id,
+                                  Long senderAccountId,
+                                  Long receiverAccountId,
+                                  BigDecimal amount,
+                                  BigDecimal creditedAmount,
+                                  BigDecimal exchangeRate,
+                                  TransactionStatus status,
+                                  String failureReason,
+                                  Date createdAt) {
+
+    public static TransactionResponse from(Transaction transaction) {
+        return new TransactionResponse(transaction.getId(),
+                transaction.getSenderAccount().getId(),
+                transaction.getReceiverAccount().getId(),
+                transaction.getAmount(),
+                transaction.getCreditedAmount(),
+                transaction.getExchangeRate(),
+                transaction.getStatus(),
+                transaction.getFailureReason(),
+                transaction.getCreatedAt());
+    }
+}
@@ -0,0 +1,10 @@
+package com.kibit.payment.dto;
+
+import java.util.List;
+
+/**
+ * One page of users ordered by id. {@code nextCursor} is passed as {@code after} to fetch the next
+ * page and is null on the last page.
+ */
+public record UserPage(List<UserResponse> users, Long nextCursor) {
+}
@@ -0,0 +1,18 @@
+package com.kibit.payment.dto;
+
+import com.kibit.payment.entity.User;
+
+import java.util.Date;
+
+/**
+ * A user as returned by the API.
+ */
+public record UserResponse(Long id,
+                           String name,
+                           String email,
+                           Date createdAt) {
+
+    public static UserResponse from(User user) {
+        return new UserResponse(user.getId(), user.getName(), user.getEmail(), user.getCreatedAt());
+    }
+}
@@ -1,19 +1,26 @@
 package com.kibit.payment.entity;
 
+import com.kibit.payment.money.MinorUnitsConverter;
+import com.kibit.payment.money.Money;
 import jakarta.persistence.Column;
+import jakarta.persistence.Convert;
 import jakarta.persistence.Entity;
+import jakarta.persistence.FetchType;
 import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
 import jakarta.persistence.JoinColumn;
 import jakarta.persistence.ManyToOne;
+import jakarta.persistence.SequenceGenerator;
 import jakarta.persistence.Table;
 import jakarta.persistence.Temporal;
 import jakarta.persistence.TemporalType;
+import jakarta.persistence.Transient;
+import lombok.AccessLevel;
 import lombok.Getter;
 import lombok.Setter;
 
-import java.math.BigDecimal;
+import java.util.Currency;
 import java.util.Date;
 
 @Setter
@@ -23,21 +30,84 @@ import java.util.Date;
 public class Account {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "accounts_id_seq")
+    @SequenceGenerator(name = "accounts_id_seq", sequenceName = "accounts_id_seq", allocationSize = 50)
     private Long id;
 
-    @ManyToOne
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "user_id", nullable = false)
     private User user;
 
+    /**
+     * The balance in minor units of the account's currency, see {@link #getBalance()}.
+     */
     @Column(nullable = false)
-    private BigDecimal balance;
+    @Convert(converter = MinorUnitsConverter.class)
+    private long balance;
 
     @Column(nullable = false, length = 3)
     private String currency = "EUR";
 
+    // Resolved from the columns on first use, so the transfer path does not look up the currency
+    // or allocate a Money for every balance read.
+    @Transient
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    private Currency currencyUnit;
+
+    @Transient
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    private Money balanceMoney;
+
+    /**
+     * Number of balance buckets the balance is split into; 0 if buckets are not enabled.
+     */
+    @Column(nullable = false)
+    private int balanceBuckets = 0;
+
     @Column(nullable = false, updatable = false)
     @Temporal(TemporalType.TIMESTAMP)
     private Date createdAt = new Date();
 
+    public Money getBalance() {
+        Money money = balanceMoney;
+        // Hibernate writes the column fields directly, e.g. on refresh, so the cached value is checked.
+        if (money == null || money.minorUnits() != balance) {
+            money = new Money(balance, getCurrencyUnit());
+            balanceMoney = money;
+        }
+        return money;
+    }
+
+    /**
+     * @throws IllegalArgumentException if the balance is not in the account's currency
+     */
+    public void setBalance(Money balance) {
+        if (!balance.currency().equals(getCurrencyUnit())) {
+            throw new IllegalArgumentException("Balance of a " + currency + " account cannot be set in "
+                    + balance.currency().getCurrencyCode());
+        }
+        this.balance = balance.minorUnits();
+        this.balanceMoney = balance;
+    }
+
+    public void setCurrency(String currency) {
+        this.currency = currency;
+        this.currencyUnit = null;
+        this.balanceMoney = null;
+    }
+
+    /**
+     * Returns the account's currency as a {@link Currency}.
+     */
+    public Currency getCurrencyUnit() {
+        Currency unit = currencyUnit;
+        if (unit == null) {
+            unit = Money.currency(currency);
+            currencyUnit = unit;
+        }
+        return unit;
+    }
+
 }
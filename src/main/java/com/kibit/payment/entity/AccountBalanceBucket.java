@@ -0,0 +1,34 @@
+package com.kibit.payment.entity;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.IdClass;
+import jakarta.persistence.Table;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.math.BigDecimal;
+
+/**
+ * One slice of the balance of an account that has balance buckets enabled.
+ * Credits go to a single bucket, so concurrent credits to a hot account only contend when they
+ * pick the same bucket instead of always queuing on the {@code accounts} row.
+ */
+@Setter
+@Getter
+@Entity
+@IdClass(AccountBalanceBucketId.class)
+@Table(name = "account_balance_buckets")
+public class AccountBalanceBucket {
+
+    @Id
+    private Long accountId;
+
+    @Id
+    private int bucket;
+
+    @Column(nullable = false)
+    private BigDecimal balance = BigDecimal.ZERO;
+
+}
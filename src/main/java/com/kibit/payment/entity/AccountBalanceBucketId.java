@@ -0,0 +1,15 @@
+package com.kibit.payment.entity;
+
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.io.Serializable;
+
+@Setter
+@Getter
+@EqualsAndHashCode
+public class AccountBalanceBucketId implements Serializable {
+    private Long accountId;
+    private int bucket;
+}
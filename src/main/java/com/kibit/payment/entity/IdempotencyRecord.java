@@ -0,0 +1,53 @@
+package com.kibit.payment.entity;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import jakarta.persistence.Temporal;
+import jakarta.persistence.TemporalType;
+import jakarta.persistence.Transient;
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.data.domain.Persistable;
+
+import java.util.Date;
+
+/**
+ * The stored outcome of a transaction request that carried an {@code Idempotency-Key} header.
+ * Written in the same database transaction as the transaction it points to.
+ */
+@Setter
+@Getter
+@Entity
+@Table(name = "idempotency_keys")
+public class IdempotencyRecord implements Persistable<String> {
+
+    @Id
+    @Column(length = 100)
+    private String idempotencyKey;
+
+    @Column(nullable = false, length = 64)
+    private String requestHash;
+
+    @Column(nullable = false)
+    private Long transactionId;
+
+    @Column(nullable = false, updatable = false)
+    @Temporal(TemporalType.TIMESTAMP)
+    private Date createdAt = new Date();
+
+    @Override
+    public String getId() {
+        return idempotencyKey;
+    }
+
+    /**
+     * Records are only ever inserted, so saving one never needs to check for an existing row first.
+     */
+    @Override
+    @Transient
+    public boolean isNew() {
+        return true;
+    }
+}
@@ -5,16 +5,19 @@ import jakarta.persistence.Column;
 import jakarta.persistence.Entity;
 import jakarta.persistence.EnumType;
 import jakarta.persistence.Enumerated;
+import jakarta.persistence.FetchType;
 import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
 import jakarta.persistence.JoinColumn;
 import jakarta.persistence.ManyToOne;
+import jakarta.persistence.SequenceGenerator;
 import jakarta.persistence.Table;
 import jakarta.persistence.Temporal;
 import jakarta.persistence.TemporalType;
 import lombok.Getter;
 import lombok.Setter;
+import org.hibernate.annotations.PartitionKey;
 
 import java.math.BigDecimal;
 import java.util.Date;
@@ -26,24 +29,56 @@ import java.util.Date;
 public class Transaction {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "transactions_id_seq")
+    @SequenceGenerator(name = "transactions_id_seq", sequenceName = "transactions_id_seq", allocationSize = 50)
     private Long id;
 
-    @ManyToOne
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "sender_account_id", nullable = false)
     private Account senderAccount;
 
-    @ManyToOne
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "receiver_account_id", nullable = false)
     private Account receiverAccount;
 
+    /**
+     * The amount debited from the sender, in the sender's currency.
+     */
     @Column(nullable = false)
     private BigDecimal amount;
 
+    /**
+     * The amount credited to the receiver, in the receiver's currency; null while the transaction is pending.
+     */
+    private BigDecimal creditedAmount;
+
+    /**
+     * Units of the receiver's currency per unit of the sender's currency applied to the transfer.
+     */
+    @Column(precision = 19, scale = 10)
+    private BigDecimal exchangeRate;
+
     @Enumerated(EnumType.STRING)
     @Column(nullable = false)
     private TransactionStatus status = TransactionStatus.PENDING;
 
+    /**
+     * Why an asynchronously submitted transaction failed; null unless the status is FAILED.
+     */
+    private String failureReason;
+
+    /**
+     * When the transfer was applied; null unless the status is COMPLETED. Asynchronously submitted
+     * transactions complete some time after they were created.
+     */
+    @Temporal(TemporalType.TIMESTAMP)
+    private Date completedAt;
+
+    /**
+     * The partition key of {@code transactions}. Updates of a loaded transaction filter on it, so
+     * they only touch the partition that holds the row.
+     */
+    @PartitionKey
     @Column(nullable = false, updatable = false)
     @Temporal(TemporalType.TIMESTAMP)
     private Date createdAt = new Date();
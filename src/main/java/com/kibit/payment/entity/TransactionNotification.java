@@ -3,16 +3,19 @@ package com.kibit.payment.entity;
 
 import jakarta.persistence.Column;
 import jakarta.persistence.Entity;
+import jakarta.persistence.FetchType;
 import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
 import jakarta.persistence.JoinColumn;
 import jakarta.persistence.OneToOne;
+import jakarta.persistence.SequenceGenerator;
 import jakarta.persistence.Table;
 import jakarta.persistence.Temporal;
 import jakarta.persistence.TemporalType;
 import lombok.Getter;
 import lombok.Setter;
+import org.hibernate.annotations.PartitionKey;
 
 import java.util.Date;
 
@@ -23,10 +26,11 @@ import java.util.Date;
 public class TransactionNotification {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "transaction_notifications_id_seq")
+    @SequenceGenerator(name = "transaction_notifications_id_seq", sequenceName = "transaction_notifications_id_seq", allocationSize = 50)
     private Long id;
 
-    @OneToOne
+    @OneToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "transaction_id", nullable = false)
     private Transaction transaction;
 
@@ -36,6 +40,10 @@ public class TransactionNotification {
     @Column(nullable = false)
     private String message;
 
+    /**
+     * The partition key of {@code transaction_notifications}.
+     */
+    @PartitionKey
     @Column(nullable = false, updatable = false)
     @Temporal(TemporalType.TIMESTAMP)
     private Date sentAt = new Date();
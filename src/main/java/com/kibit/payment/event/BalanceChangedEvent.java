@@ -0,0 +1,31 @@
+package com.kibit.payment.event;
+
+import com.kibit.payment.entity.Account;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+
+/**
+ * Published to {@code account_notifications} when the balance of an account changes.
+ * Keyed by the account id, so all changes of one account are consumed in order.
+ */
+public record BalanceChangedEvent(int version,
+                                  Long accountId,
+                                  Long transactionId,
+                                  BigDecimal oldBalance,
+                                  BigDecimal newBalance,
+                                  String currency,
+                                  Instant timestamp) {
+
+    public static final int VERSION = 1;
+
+    public static BalanceChangedEvent from(Account account, BigDecimal oldBalance, BigDecimal newBalance, Long transactionId) {
+        return new BalanceChangedEvent(VERSION,
+                account.getId(),
+                transactionId,
+                oldBalance,
+                newBalance,
+                account.getCurrency(),
+                Instant.now());
+    }
+}
@@ -0,0 +1,38 @@
+package com.kibit.payment.event;
+
+import com.kibit.payment.entity.Transaction;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+
+/**
+ * Published to {@code currency_notifications} when a transaction converted between currencies.
+ * Keyed by the sender account id.
+ *
+ * Version 2 added {@code convertedAmount} and {@code exchangeRate}; {@code amount} is the amount
+ * debited in {@code fromCurrency}.
+ */
+public record CurrencyConversionEvent(int version,
+                                      Long transactionId,
+                                      Long senderAccountId,
+                                      String fromCurrency,
+                                      String toCurrency,
+                                      BigDecimal amount,
+                                      BigDecimal convertedAmount,
+                                      BigDecimal exchangeRate,
+                                      Instant timestamp) {
+
+    public static final int VERSION = 2;
+
+    public static CurrencyConversionEvent from(Transaction transaction, String fromCurrency, String toCurrency) {
+        return new CurrencyConversionEvent(VERSION,
+                transaction.getId(),
+                transaction.getSenderAccount().getId(),
+                fromCurrency,
+                toCurrency,
+                transaction.getAmount(),
+                transaction.getCreditedAmount(),
+                transaction.getExchangeRate(),
+                Instant.now());
+    }
+}
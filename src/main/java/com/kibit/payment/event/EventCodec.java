@@ -0,0 +1,39 @@
+package com.kibit.payment.event;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.stereotype.Component;
+
+/**
+ * Encodes and decodes the Kafka events of the payment service as JSON.
+ *
+ * Every event carries a {@code version} field. Decoding ignores unknown fields, so consumers keep
+ * working when later versions add fields to an event.
+ */
+@Component
+public class EventCodec {
+
+    private final ObjectMapper objectMapper;
+
+    public EventCodec(ObjectMapper objectMapper) {
+        this.objectMapper = objectMapper.copy()
+                .disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES);
+    }
+
+    public String encode(Object event) {
+        try {
+            return objectMapper.writeValueAsString(event);
+        } catch (JsonProcessingException ex) {
+            throw new IllegalArgumentException("Could not encode " + event.getClass().getSimpleName(), ex);
+        }
+    }
+
+    public <T> T decode(String payload, Class<T> eventType) {
+        try {
+            return objectMapper.readValue(payload, eventType);
+        } catch (JsonProcessingException ex) {
+            throw new IllegalArgumentException("Could not decode " + eventType.getSimpleName(), ex);
+        }
+    }
+}
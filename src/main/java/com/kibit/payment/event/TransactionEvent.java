@@ -0,0 +1,37 @@
+package com.kibit.payment.event;
+
+import com.kibit.payment.entity.Transaction;
+import com.kibit.payment.entity.TransactionStatus;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+
+/**
+ * Published to {@code transaction_notifications} when a transaction is created.
+ * Keyed by the sender account id.
+ *
+ * Version 2 added {@code creditedAmount}, the amount credited to the receiver in its currency;
+ * {@code amount} is the amount debited from the sender in its currency.
+ */
+public record TransactionEvent(int version,
+                               Long transactionId,
+                               Long senderAccountId,
+                               Long receiverAccountId,
+                               BigDecimal amount,
+                               BigDecimal creditedAmount,
+                               TransactionStatus status,
+                               Instant timestamp) {
+
+    public static final int VERSION = 2;
+
+    public static TransactionEvent from(Transaction transaction) {
+        return new TransactionEvent(VERSION,
+                transaction.getId(),
+                transaction.getSenderAccount().getId(),
+                transaction.getReceiverAccount().getId(),
+                transaction.getAmount(),
+                transaction.getCreditedAmount(),
+                transaction.getStatus(),
+                Instant.now());
+    }
+}
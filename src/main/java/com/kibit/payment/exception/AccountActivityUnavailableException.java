@@ -0,0 +1,11 @@
+package com.kibit.payment.exception;
+
+public class AccountActivityUnavailableException extends RuntimeException {
+    public AccountActivityUnavailableException(String message) {
+        super(message);
+    }
+
+    public AccountActivityUnavailableException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
@@ -0,0 +1,7 @@
+package com.kibit.payment.exception;
+
+public class ExchangeRateUnavailableException extends RuntimeException {
+    public ExchangeRateUnavailableException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,7 @@
+package com.kibit.payment.exception;
+
+public class TransactionNotFoundException extends RuntimeException {
+    public TransactionNotFoundException(String message) {
+        super(message);
+    }
+}
\ No newline at end of file
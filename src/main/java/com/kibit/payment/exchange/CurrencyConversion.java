@@ -0,0 +1,14 @@
+package com.kibit.payment.exchange;
+
+import com.kibit.payment.money.Money;
+
+import java.math.BigDecimal;
+
+/**
+ * The result of converting an amount between two currencies.
+ *
+ * @param rate units of the target currency per unit of the source currency
+ * @param convertedAmount the amount in the target currency, rounded to minor units
+ */
+public record CurrencyConversion(BigDecimal rate, Money convertedAmount) {
+}
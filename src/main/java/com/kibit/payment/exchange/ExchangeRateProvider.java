@@ -0,0 +1,135 @@
+package com.kibit.payment.exchange;
+
+import com.kibit.payment.exception.ExchangeRateUnavailableException;
+import com.kibit.payment.money.Money;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.TimeGauge;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Converts amounts between currencies using rates loaded from an {@link ExchangeRateSource}.
+ *
+ * The rates are refreshed periodically. Each refresh precomputes the rate of every currency pair
+ * and swaps the complete table in with a single volatile write, so a conversion is two map lookups
+ * on an immutable table and never waits for the source. If a refresh fails the previous table stays
+ * in use; once it is older than {@code payment.exchange-rates.max-age-ms} conversions are refused
+ * rather than priced with stale rates.
+ *
+ * Metrics:
+ * - {@code payment.exchange.rates.age}: time since the rates were last loaded successfully
+ * - {@code payment.exchange.rates.refresh.failures}: refreshes that failed
+ * - {@code payment.exchange.rates.pairs}: currency pairs in the current table
+ */
+@Service
+@Slf4j
+public class ExchangeRateProvider {
+
+    private static final int RATE_SCALE = 10;
+
+    private final ExchangeRateSource source;
+    private final Duration maxAge;
+    private final Counter refreshFailures;
+    private volatile RateSnapshot snapshot = RateSnapshot.EMPTY;
+
+    public ExchangeRateProvider(ExchangeRateSource source, MeterRegistry meterRegistry,
+                                @Value("${payment.exchange-rates.max-age-ms:3600000}") long maxAgeMs) {
+        this.source = source;
+        this.maxAge = Duration.ofMillis(maxAgeMs);
+        this.refreshFailures = meterRegistry.counter("payment.exchange.rates.refresh.failures");
+        TimeGauge.builder("payment.exchange.rates.age", this, TimeUnit.MILLISECONDS, ExchangeRateProvider::ageMillis)
+                .register(meterRegistry);
+        Gauge.builder("payment.exchange.rates.pairs", this, provider -> provider.snapshot.pairCount())
+                .register(meterRegistry);
+    }
+
+    @PostConstruct
+    @Scheduled(initialDelayString = "${payment.exchange-rates.refresh-interval-ms:60000}",
+            fixedDelayString = "${payment.exchange-rates.refresh-interval-ms:60000}")
+    public void refresh() {
+        try {
+            snapshot = RateSnapshot.of(source.load(), System.currentTimeMillis());
+        } catch (Exception ex) {
+            refreshFailures.increment();
+            log.error("Could not refresh exchange rates, keeping rates loaded {} ms ago", ageMillis(), ex);
+        }
+    }
+
+    /**
+     * Returns the units of {@code toCurrency} per unit of {@code fromCurrency}.
+     *
+     * @throws ExchangeRateUnavailableException if there is no rate for the pair or the rates are stale
+     */
+    public BigDecimal getRate(String fromCurrency, String toCurrency) {
+        String from = fromCurrency.toUpperCase(Locale.ROOT);
+        String to = toCurrency.toUpperCase(Locale.ROOT);
+        if (from.equals(to)) {
+            return BigDecimal.ONE;
+        }
+
+        RateSnapshot current = snapshot;
+        if (System.currentTimeMillis() - current.loadedAt() > maxAge.toMillis()) {
+            throw new ExchangeRateUnavailableException("Exchange rates are out of date");
+        }
+        Map<String, BigDecimal> fromRates = current.rates().get(from);
+        BigDecimal rate = fromRates == null ? null : fromRates.get(to);
+        if (rate == null) {
+            throw new ExchangeRateUnavailableException("No exchange rate from " + from + " to " + to);
+        }
+        return rate;
+    }
+
+    /**
+     * Converts an amount, rounding the result half-even to minor units.
+     */
+    public CurrencyConversion convert(Money amount, String toCurrency) {
+        BigDecimal rate = getRate(amount.currency().getCurrencyCode(), toCurrency);
+        return new CurrencyConversion(rate, amount.convert(rate, Money.currency(toCurrency), RoundingMode.HALF_EVEN));
+    }
+
+    private double ageMillis() {
+        long loadedAt = snapshot.loadedAt();
+        return loadedAt == 0 ? Double.NaN : System.currentTimeMillis() - loadedAt;
+    }
+
+    /**
+     * An immutable table of the rate between every pair of known currencies.
+     */
+    private record RateSnapshot(Map<String, Map<String, BigDecimal>> rates, long loadedAt) {
+
+        static final RateSnapshot EMPTY = new RateSnapshot(Map.of(), 0);
+
+        static RateSnapshot of(ExchangeRateSource.RateTable table, long loadedAt) {
+            Map<String, BigDecimal> perBase = new HashMap<>(table.rates());
+            perBase.put(table.baseCurrency(), BigDecimal.ONE);
+
+            Map<String, Map<String, BigDecimal>> crossRates = new HashMap<>();
+            perBase.forEach((from, fromRate) -> {
+                if (fromRate.signum() <= 0) {
+                    throw new IllegalArgumentException("Exchange rate of " + from + " must be positive");
+                }
+                Map<String, BigDecimal> toRates = new HashMap<>();
+                perBase.forEach((to, toRate) -> toRates.put(to, toRate.divide(fromRate, RATE_SCALE, RoundingMode.HALF_EVEN)));
+                crossRates.put(from, Map.copyOf(toRates));
+            });
+            return new RateSnapshot(Map.copyOf(crossRates), loadedAt);
+        }
+
+        int pairCount() {
+            return rates.values().stream().mapToInt(Map::size).sum();
+        }
+    }
+}
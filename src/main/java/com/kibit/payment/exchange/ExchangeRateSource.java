@@ -0,0 +1,31 @@
+package com.kibit.payment.exchange;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.Map;
+
+/**
+ * Where {@link ExchangeRateProvider} loads its exchange rates from.
+ *
+ * Implementations are only called from the provider's refresh, never on the transfer path, so
+ * they are free to do I/O.
+ */
+public interface ExchangeRateSource {
+
+    /**
+     * Loads the current rates.
+     *
+     * @return the rates quoted against a single base currency
+     * @throws IOException if the rates could not be read
+     */
+    RateTable load() throws IOException;
+
+    /**
+     * Exchange rates quoted against a base currency.
+     *
+     * @param baseCurrency the currency all rates are quoted against
+     * @param rates units of each currency per one unit of the base currency, keyed by currency code
+     */
+    record RateTable(String baseCurrency, Map<String, BigDecimal> rates) {
+    }
+}
@@ -0,0 +1,55 @@
+package com.kibit.payment.exchange;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.ResourceLoader;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+
+/**
+ * Reads exchange rates from a properties file, by default the one bundled on the classpath.
+ * Pointing {@code payment.exchange-rates.location} at a {@code file:} URL lets an external process
+ * publish new rates, which are picked up at the next refresh.
+ *
+ * The file holds a {@code base} entry naming the base currency and one entry per currency with the
+ * units of that currency per one unit of the base currency.
+ */
+@Component
+public class ResourceExchangeRateSource implements ExchangeRateSource {
+
+    private static final String BASE_KEY = "base";
+
+    private final Resource resource;
+
+    public ResourceExchangeRateSource(ResourceLoader resourceLoader,
+                                      @Value("${payment.exchange-rates.location:classpath:exchange-rates.properties}") String location) {
+        this.resource = resourceLoader.getResource(location);
+    }
+
+    @Override
+    public RateTable load() throws IOException {
+        Properties properties = new Properties();
+        try (InputStream input = resource.getInputStream()) {
+            properties.load(input);
+        }
+
+        String baseCurrency = properties.getProperty(BASE_KEY);
+        if (baseCurrency == null) {
+            throw new IOException("No base currency in " + resource.getDescription());
+        }
+        Map<String, BigDecimal> rates = new HashMap<>();
+        for (String currency : properties.stringPropertyNames()) {
+            if (!currency.equals(BASE_KEY)) {
+                rates.put(currency.toUpperCase(Locale.ROOT), new BigDecimal(properties.getProperty(currency).trim()));
+            }
+        }
+        return new RateTable(baseCurrency.toUpperCase(Locale.ROOT), rates);
+    }
+}
@@ -0,0 +1,166 @@
+package com.kibit.payment.ledger;
+
+import com.kibit.payment.entity.Account;
+import com.kibit.payment.exception.InsufficientBalanceException;
+import com.kibit.payment.repository.LedgerEntryRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.TreeSet;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Append-only, double-entry balance store used by {@code AccountService} when
+ * {@code payment.ledger.engine} is set to {@code double-entry}.
+ *
+ * A transfer inserts a debit entry for the sender and a credit entry for the receiver into
+ * {@code ledger_entries}; neither the {@code accounts} rows nor earlier entries are ever updated. The
+ * balance of an account is its row in {@code account_checkpoints}, or its {@code accounts} balance
+ * while it has none, plus the entries written since. Every entry records the database transaction
+ * that wrote it and every checkpoint the snapshot it was computed from, so "since" means exactly the
+ * entries that snapshot could not see, including those of transactions still in flight at the time.
+ *
+ * Debits of an account are serialized by a transaction-scoped advisory lock on its id, so a balance
+ * check and the debit that relies on it cannot interleave with another debit. Credits take no lock
+ * at all, and a hot receiving account is no longer a point of contention.
+ *
+ * A periodic checkpoint rolls forward the checkpoints of the accounts that have new entries, finding
+ * them among the entries written since the previous checkpoint of this instance. The first checkpoint
+ * after startup, and {@link #rebuildBalances()}, roll every account forward from its latest checkpoint
+ * instead, in parallel over account id ranges. Checkpoints of all instances are serialized by an
+ * advisory lock; an instance that finds it held skips its turn.
+ *
+ * All instances sharing a database must run in the same engine mode. Switching back to the
+ * {@code database} engine requires writing the current balances to the {@code accounts} table first.
+ */
+@Component
+@ConditionalOnProperty(name = "payment.ledger.engine", havingValue = "double-entry")
+@Slf4j
+public class DoubleEntryLedger {
+
+    private final LedgerEntryRepository ledgerEntryRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final int rebuildParallelism;
+    // Oldest database transaction that was in flight when this instance's last checkpoint started; null
+    // until one has completed. Every entry a checkpoint does not cover was written by it or a later one.
+    private volatile String checkpointedXid;
+
+    public DoubleEntryLedger(LedgerEntryRepository ledgerEntryRepository,
+                             TransactionTemplate transactionTemplate,
+                             @Value("${payment.ledger.rebuild-parallelism:4}") int rebuildParallelism) {
+        this.ledgerEntryRepository = ledgerEntryRepository;
+        this.transactionTemplate = transactionTemplate;
+        this.rebuildParallelism = rebuildParallelism;
+    }
+
+    /**
+     * Returns the balance of an account, including the entries of the current transaction.
+     */
+    public BigDecimal getBalance(Long accountId) {
+        return ledgerEntryRepository.findBalance(accountId);
+    }
+
+    /**
+     * Blocks debits of the given accounts by other transactions until the current transaction ends.
+     * Locks are taken in ascending id order, so callers locking several accounts cannot deadlock.
+     */
+    public void lockForDebit(Collection<Long> accountIds) {
+        for (Long accountId : new TreeSet<>(accountIds)) {
+            ledgerEntryRepository.lockForDebit(accountId);
+        }
+    }
+
+    /**
+     * Locks the sender for debit, checks its balance and appends both entries of the transfer.
+     *
+     * @param debitAmount the amount taken from the sender, in the sender's currency
+     * @param creditAmount the amount given to the receiver, in the receiver's currency
+     * @throws InsufficientBalanceException if the sender's balance is less than the debit amount
+     */
+    public LedgerEngine.TransferResult transfer(Long transactionId, Account sender, Account receiver,
+                                                BigDecimal debitAmount, BigDecimal creditAmount) {
+        ledgerEntryRepository.lockForDebit(sender.getId());
+        BigDecimal senderBalance = getBalance(sender.getId());
+        if (senderBalance.compareTo(debitAmount) < 0) {
+            throw new InsufficientBalanceException("Sender balance is less than the requested amount");
+        }
+        BigDecimal receiverBalance = getBalance(receiver.getId());
+        ledgerEntryRepository.appendTransfer(transactionId, sender.getId(), debitAmount, receiver.getId(), creditAmount);
+        return new LedgerEngine.TransferResult(senderBalance, senderBalance.subtract(debitAmount),
+                receiverBalance, receiverBalance.add(creditAmount));
+    }
+
+    /**
+     * Rolls forward the checkpoints of the accounts with entries written since the previous
+     * checkpoint, or of all accounts if this instance has not completed one yet.
+     */
+    @Scheduled(fixedDelayString = "${payment.ledger.checkpoint-interval-ms:5000}")
+    public void checkpoint() {
+        String fromXid = checkpointedXid;
+        if (fromXid == null) {
+            rebuildBalances();
+            return;
+        }
+        runExclusively(() -> {
+            String nextXid = ledgerEntryRepository.findOldestActiveXid();
+            int checkpoints = ledgerEntryRepository.checkpointChangedAccounts(fromXid);
+            checkpointedXid = nextXid;
+            log.debug("Checkpointed {} ledger balances", checkpoints);
+        });
+    }
+
+    /**
+     * Rolls every account forward from its latest checkpoint, splitting the accounts into
+     * {@code payment.ledger.rebuild-parallelism} id ranges that are checkpointed concurrently, each in
+     * its own transaction.
+     */
+    public void rebuildBalances() {
+        runExclusively(() -> {
+            String nextXid = ledgerEntryRepository.findOldestActiveXid();
+            long maxAccountId = ledgerEntryRepository.findMaxAccountId();
+            long rangeSize = Math.max(1, (maxAccountId + rebuildParallelism - 1) / rebuildParallelism);
+
+            int checkpoints = 0;
+            try (ExecutorService executor = Executors.newFixedThreadPool(rebuildParallelism)) {
+                List<Future<Integer>> ranges = new ArrayList<>();
+                for (long first = 1; first <= maxAccountId; first += rangeSize) {
+                    long firstAccountId = first;
+                    long lastAccountId = Math.min(first + rangeSize - 1, maxAccountId);
+                    ranges.add(executor.submit(() -> transactionTemplate.execute(
+                            status -> ledgerEntryRepository.checkpointAccountRange(firstAccountId, lastAccountId))));
+                }
+                for (Future<Integer> range : ranges) {
+                    checkpoints += range.get();
+                }
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while rebuilding ledger balances", ex);
+            } catch (ExecutionException ex) {
+                throw new IllegalStateException("Rebuilding ledger balances failed", ex.getCause());
+            }
+            checkpointedXid = nextXid;
+            log.info("Rebuilt {} ledger balances in {} ranges", checkpoints, rebuildParallelism);
+        });
+    }
+
+    // The checkpoint lock is held by a transaction of its own for as long as the work runs, also while
+    // parallel ranges are written by other transactions.
+    private void runExclusively(Runnable work) {
+        transactionTemplate.executeWithoutResult(status -> {
+            if (ledgerEntryRepository.tryLockCheckpoints()) {
+                work.run();
+            }
+        });
+    }
+}
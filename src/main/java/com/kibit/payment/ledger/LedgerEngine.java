@@ -0,0 +1,448 @@
+package com.kibit.payment.ledger;
+
+import com.kibit.payment.entity.Account;
+import com.kibit.payment.entity.LedgerCheckpoint;
+import com.kibit.payment.entity.TransactionStatus;
+import com.kibit.payment.exception.InsufficientBalanceException;
+import com.kibit.payment.repository.AccountRepository;
+import com.kibit.payment.repository.LedgerCheckpointRepository;
+import com.kibit.payment.repository.TransactionRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * In-memory, sharded balance engine used by {@code AccountService} when
+ * {@code payment.ledger.engine} is set to {@code in-memory}.
+ *
+ * Balances are partitioned by account id into shards. Each shard applies its changes sequentially
+ * on a single writer thread, so transfers never take database row locks. A transfer is executed
+ * in two steps, so a receiver can never spend money whose database transaction might still roll
+ * back:
+ * <ol>
+ *     <li>Inside the database transaction, the sender's shard checks and debits the available
+ *     balance and journals the debit, and the receiver's shard records the credit amount, which
+ *     is in the receiver's currency, as a pending credit. The caller waits until the debit is durable in the journal.</li>
+ *     <li>After the database transaction completes, the pending credit becomes available on
+ *     commit, or the debit is returned to the sender on rollback. Both outcomes are journaled.</li>
+ * </ol>
+ * Sender and receiver may live on different shards; each step only ever touches one shard at a
+ * time, so no cross-shard coordination beyond this ordering is needed.
+ *
+ * The journal is group-committed to local segment files. A periodic checkpoint briefly parks all
+ * shards, writes the balances changed since the last checkpoint to the {@code accounts} table and
+ * starts a new journal segment. On startup the segments written after the last checkpoint are
+ * replayed onto the {@code accounts} table; transfers without a journaled outcome are settled by
+ * checking whether their transaction row was committed.
+ *
+ * All instances sharing a database must run in the same engine mode.
+ */
+@Component
+@ConditionalOnProperty(name = "payment.ledger.engine", havingValue = "in-memory")
+@Slf4j
+public class LedgerEngine {
+
+    private static final String DEBIT = "D";
+    private static final String OPEN = "O";
+    private static final String COMMIT = "C";
+    private static final String ABORT = "A";
+
+    private final AccountRepository accountRepository;
+    private final TransactionRepository transactionRepository;
+    private final LedgerCheckpointRepository ledgerCheckpointRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final LedgerShard[] shards;
+    private final Path journalDirectory;
+    private final int journalBatchSize;
+    private final Map<Long, OpenTransfer> openTransfers = new ConcurrentHashMap<>();
+    private final Object checkpointLock = new Object();
+    private LedgerJournal journal;
+
+    public LedgerEngine(AccountRepository accountRepository,
+                        TransactionRepository transactionRepository,
+                        LedgerCheckpointRepository ledgerCheckpointRepository,
+                        TransactionTemplate transactionTemplate,
+                        @Value("${payment.ledger.shards:8}") int shardCount,
+                        @Value("${payment.ledger.journal-dir:ledger-journal}") String journalDirectory,
+                        @Value("${payment.ledger.journal-batch-size:1024}") int journalBatchSize) {
+        this.accountRepository = accountRepository;
+        this.transactionRepository = transactionRepository;
+        this.ledgerCheckpointRepository = ledgerCheckpointRepository;
+        this.transactionTemplate = transactionTemplate;
+        this.shards = new LedgerShard[shardCount];
+        for (int i = 0; i < shardCount; i++) {
+            shards[i] = new LedgerShard(i);
+        }
+        this.journalDirectory = Path.of(journalDirectory);
+        this.journalBatchSize = journalBatchSize;
+    }
+
+    @PostConstruct
+    void start() {
+        long nextSegment = recover();
+        journal = new LedgerJournal(journalDirectory, nextSegment, journalBatchSize);
+        log.info("In-memory ledger engine started with {} shards, journal segment {}", shards.length, nextSegment);
+    }
+
+    @PreDestroy
+    void stop() {
+        checkpoint();
+        for (LedgerShard shard : shards) {
+            shard.shutdown();
+        }
+        journal.close();
+    }
+
+    /**
+     * Returns the committed, spendable balance of an account.
+     */
+    public BigDecimal getAvailableBalance(Account account) {
+        LedgerShard shard = shardFor(account.getId());
+        return await(shard.submit(() -> shard.balanceOf(account).available));
+    }
+
+    /**
+     * Executes the first step of a transfer and schedules the second for the end of the current
+     * database transaction; without an active transaction both steps run immediately.
+     *
+     * @param debitAmount the amount taken from the sender, in the sender's currency
+     * @param creditAmount the amount given to the receiver, in the receiver's currency
+     * @throws InsufficientBalanceException if the sender's available balance is less than the debit amount
+     */
+    public TransferResult transfer(Long transactionId, Account sender, Account receiver, BigDecimal debitAmount, BigDecimal creditAmount) {
+        LedgerShard senderShard = shardFor(sender.getId());
+        LedgerShard receiverShard = shardFor(receiver.getId());
+        OpenTransfer transfer = new OpenTransfer(transactionId, sender.getId(), receiver.getId(), debitAmount, creditAmount);
+
+        Debit debit = await(senderShard.submit(() -> {
+            LedgerShard.Balance balance = senderShard.balanceOf(sender);
+            if (balance.available.compareTo(debitAmount) < 0) {
+                throw new InsufficientBalanceException("Sender balance is less than the requested amount");
+            }
+            BigDecimal oldBalance = balance.ledgerBalance();
+            balance.available = balance.available.subtract(debitAmount);
+            senderShard.markDirty(sender.getId());
+            openTransfers.put(transactionId, transfer);
+            CompletableFuture<Void> journaled = journal.append(transfer.record(DEBIT));
+            return new Debit(oldBalance, balance.ledgerBalance(), journaled);
+        }));
+
+        boolean synchronizedWithTransaction = TransactionSynchronizationManager.isSynchronizationActive();
+        if (synchronizedWithTransaction) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    complete(transfer, status);
+                }
+            });
+        }
+
+        try {
+            BigDecimal[] credit = await(receiverShard.submit(() -> {
+                LedgerShard.Balance balance = receiverShard.balanceOf(receiver);
+                BigDecimal oldBalance = balance.ledgerBalance();
+                balance.pendingCredit = balance.pendingCredit.add(creditAmount);
+                transfer.creditPending = true;
+                return new BigDecimal[]{oldBalance, balance.ledgerBalance()};
+            }));
+            await(debit.journaled());
+
+            if (!synchronizedWithTransaction) {
+                commit(transfer);
+            }
+            return new TransferResult(debit.oldBalance(), debit.newBalance(), credit[0], credit[1]);
+        } catch (RuntimeException ex) {
+            if (!synchronizedWithTransaction) {
+                abort(transfer);
+            }
+            throw ex;
+        }
+    }
+
+    /**
+     * Writes the balances changed since the previous checkpoint to the {@code accounts} table and
+     * drops the journal segments they cover.
+     */
+    @Scheduled(fixedDelayString = "${payment.ledger.checkpoint-interval-ms:5000}")
+    public void checkpoint() {
+        synchronized (checkpointLock) {
+            Map<Long, BigDecimal> dirtyBalances = new HashMap<>();
+            CompletableFuture<Long> rotated = null;
+
+            CountDownLatch parked = new CountDownLatch(shards.length);
+            CountDownLatch resume = new CountDownLatch(1);
+            for (LedgerShard shard : shards) {
+                shard.submit(() -> {
+                    parked.countDown();
+                    awaitUninterruptibly(resume);
+                    return null;
+                });
+            }
+            try {
+                awaitUninterruptibly(parked);
+                for (LedgerShard shard : shards) {
+                    dirtyBalances.putAll(shard.drainDirtyBalances());
+                }
+                if (!dirtyBalances.isEmpty()) {
+                    List<String> openingRecords = openTransfers.values().stream()
+                            .map(transfer -> transfer.record(OPEN))
+                            .toList();
+                    rotated = journal.rotate(openingRecords);
+                }
+            } finally {
+                resume.countDown();
+            }
+            if (rotated == null) {
+                return;
+            }
+
+            try {
+                long closedSegment = await(rotated);
+                transactionTemplate.executeWithoutResult(status -> {
+                    dirtyBalances.forEach(accountRepository::setBalance);
+                    saveCheckpoint(closedSegment);
+                });
+                LedgerJournal.deleteSegmentsUpTo(journalDirectory, closedSegment);
+                log.debug("Ledger checkpoint wrote {} balances through journal segment {}", dirtyBalances.size(), closedSegment);
+            } catch (RuntimeException | IOException ex) {
+                log.error("Ledger checkpoint failed, changed balances will be written by the next checkpoint", ex);
+                dirtyBalances.keySet().forEach(accountId -> {
+                    LedgerShard shard = shardFor(accountId);
+                    shard.submit(() -> {
+                        shard.markDirty(accountId);
+                        return null;
+                    });
+                });
+            }
+        }
+    }
+
+    private void complete(OpenTransfer transfer, int status) {
+        if (status == TransactionSynchronization.STATUS_COMMITTED) {
+            commit(transfer);
+        } else if (status == TransactionSynchronization.STATUS_ROLLED_BACK) {
+            abort(transfer);
+        } else if (isCommitted(transfer)) {
+            commit(transfer);
+        } else {
+            abort(transfer);
+        }
+    }
+
+    /**
+     * Returns whether the transaction of a transfer whose outcome is unknown was committed, which is
+     * when its row is COMPLETED: asynchronously submitted transactions have a PENDING row before
+     * they are executed. Read in a read-write transaction, so on the primary rather than a read pool
+     * that may be behind.
+     */
+    private boolean isCommitted(OpenTransfer transfer) {
+        return Boolean.TRUE.equals(transactionTemplate.execute(status ->
+                transactionRepository.existsByIdAndStatus(transfer.transactionId, TransactionStatus.COMPLETED)));
+    }
+
+    private void commit(OpenTransfer transfer) {
+        LedgerShard receiverShard = shardFor(transfer.receiverAccountId);
+        receiverShard.submit(() -> {
+            LedgerShard.Balance balance = receiverShard.balanceOf(transfer.receiverAccountId);
+            balance.pendingCredit = balance.pendingCredit.subtract(transfer.creditAmount);
+            balance.available = balance.available.add(transfer.creditAmount);
+            receiverShard.markDirty(transfer.receiverAccountId);
+            openTransfers.remove(transfer.transactionId);
+            return journal.append(transfer.record(COMMIT));
+        });
+    }
+
+    private void abort(OpenTransfer transfer) {
+        LedgerShard senderShard = shardFor(transfer.senderAccountId);
+        senderShard.submit(() -> {
+            LedgerShard.Balance balance = senderShard.balanceOf(transfer.senderAccountId);
+            balance.available = balance.available.add(transfer.debitAmount);
+            senderShard.markDirty(transfer.senderAccountId);
+            openTransfers.remove(transfer.transactionId);
+            return journal.append(transfer.record(ABORT));
+        });
+        if (transfer.creditPending) {
+            LedgerShard receiverShard = shardFor(transfer.receiverAccountId);
+            receiverShard.submit(() -> {
+                LedgerShard.Balance balance = receiverShard.balanceOf(transfer.receiverAccountId);
+                balance.pendingCredit = balance.pendingCredit.subtract(transfer.creditAmount);
+                return null;
+            });
+        }
+    }
+
+    /**
+     * Replays the journal segments written after the last checkpoint onto the {@code accounts} table.
+     *
+     * @return the number of the segment to continue the journal with
+     */
+    private long recover() {
+        try {
+            long checkpointedSegment = ledgerCheckpointRepository.findTopByOrderByIdDesc()
+                    .map(LedgerCheckpoint::getJournalSegment)
+                    .orElse(0L);
+            List<Long> segments = LedgerJournal.listSegments(journalDirectory);
+
+            Map<Long, BigDecimal> deltas = new HashMap<>();
+            Map<Long, OpenTransfer> open = new HashMap<>();
+            long replayedSegment = checkpointedSegment;
+            for (long segment : segments) {
+                if (segment > checkpointedSegment) {
+                    for (String record : LedgerJournal.readSegment(journalDirectory, segment)) {
+                        replay(record, deltas, open);
+                    }
+                    replayedSegment = segment;
+                }
+            }
+            for (OpenTransfer transfer : open.values()) {
+                if (isCommitted(transfer)) {
+                    deltas.merge(transfer.receiverAccountId, transfer.creditAmount, BigDecimal::add);
+                } else {
+                    deltas.merge(transfer.senderAccountId, transfer.debitAmount, BigDecimal::add);
+                }
+            }
+
+            if (replayedSegment > checkpointedSegment) {
+                long coveredSegment = replayedSegment;
+                transactionTemplate.executeWithoutResult(status -> {
+                    deltas.forEach(accountRepository::adjustBalance);
+                    saveCheckpoint(coveredSegment);
+                });
+                log.info("Recovered {} account balances from ledger journal segments up to {}", deltas.size(), coveredSegment);
+            }
+            LedgerJournal.deleteSegmentsUpTo(journalDirectory, replayedSegment);
+
+            long lastSegment = segments.isEmpty() ? 0L : segments.getLast();
+            return Math.max(replayedSegment, lastSegment) + 1;
+        } catch (IOException ex) {
+            throw new UncheckedIOException("Could not recover ledger journal from " + journalDirectory, ex);
+        }
+    }
+
+    private static void replay(String record, Map<Long, BigDecimal> deltas, Map<Long, OpenTransfer> open) {
+        String[] fields = record.split(",");
+        long transactionId = Long.parseLong(fields[1]);
+        switch (fields[0]) {
+            case DEBIT -> {
+                OpenTransfer transfer = OpenTransfer.parse(fields);
+                deltas.merge(transfer.senderAccountId, transfer.debitAmount.negate(), BigDecimal::add);
+                open.put(transactionId, transfer);
+            }
+            // Restates a transfer opened before the checkpoint; its debit is already in the accounts table.
+            case OPEN -> open.putIfAbsent(transactionId, OpenTransfer.parse(fields));
+            case COMMIT -> {
+                OpenTransfer transfer = open.remove(transactionId);
+                if (transfer != null) {
+                    deltas.merge(transfer.receiverAccountId, transfer.creditAmount, BigDecimal::add);
+                }
+            }
+            case ABORT -> {
+                OpenTransfer transfer = open.remove(transactionId);
+                if (transfer != null) {
+                    deltas.merge(transfer.senderAccountId, transfer.debitAmount, BigDecimal::add);
+                }
+            }
+            default -> log.warn("Skipping unknown ledger journal record {}", record);
+        }
+    }
+
+    private void saveCheckpoint(long journalSegment) {
+        LedgerCheckpoint checkpoint = new LedgerCheckpoint();
+        checkpoint.setJournalSegment(journalSegment);
+        ledgerCheckpointRepository.save(checkpoint);
+    }
+
+    private LedgerShard shardFor(Long accountId) {
+        return shards[Math.floorMod(accountId.hashCode(), shards.length)];
+    }
+
+    private static <T> T await(CompletableFuture<T> future) {
+        try {
+            return future.join();
+        } catch (CompletionException ex) {
+            if (ex.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw ex;
+        }
+    }
+
+    private static void awaitUninterruptibly(CountDownLatch latch) {
+        boolean interrupted = false;
+        while (true) {
+            try {
+                latch.await();
+                break;
+            } catch (InterruptedException ex) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Balances before and after a transfer, as the sum of available balance and pending credits.
+     */
+    public record TransferResult(BigDecimal senderOldBalance,
+                                 BigDecimal senderNewBalance,
+                                 BigDecimal receiverOldBalance,
+                                 BigDecimal receiverNewBalance) {
+    }
+
+    private record Debit(BigDecimal oldBalance, BigDecimal newBalance, CompletableFuture<Void> journaled) {
+    }
+
+    private static final class OpenTransfer {
+        final long transactionId;
+        final long senderAccountId;
+        final long receiverAccountId;
+        final BigDecimal debitAmount;
+        final BigDecimal creditAmount;
+        volatile boolean creditPending;
+
+        OpenTransfer(long transactionId, long senderAccountId, long receiverAccountId, BigDecimal debitAmount, BigDecimal creditAmount) {
+            this.transactionId = transactionId;
+            this.senderAccountId = senderAccountId;
+            this.receiverAccountId = receiverAccountId;
+            this.debitAmount = debitAmount;
+            this.creditAmount = creditAmount;
+        }
+
+        /**
+         * Parses a DEBIT or OPEN record.
+         */
+        static OpenTransfer parse(String[] fields) {
+            return new OpenTransfer(Long.parseLong(fields[1]), Long.parseLong(fields[2]),
+                    Long.parseLong(fields[3]), new BigDecimal(fields[4]), new BigDecimal(fields[5]));
+        }
+
+        String record(String type) {
+            if (type.equals(COMMIT) || type.equals(ABORT)) {
+                return type + "," + transactionId;
+            }
+            return type + "," + transactionId + "," + senderAccountId + "," + receiverAccountId + ","
+                    + debitAmount.toPlainString() + "," + creditAmount.toPlainString();
+        }
+    }
+}
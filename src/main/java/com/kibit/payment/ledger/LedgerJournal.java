@@ -0,0 +1,201 @@
+package com.kibit.payment.ledger;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.BufferedWriter;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Append-only journal of the in-memory ledger engine, split into numbered segment files.
+ *
+ * Records are handed to a dedicated writer thread, which drains everything queued since its last
+ * write, appends it to the current segment and forces it to disk once for the whole group. The
+ * future returned by {@link #append(String)} completes after that force, so callers can wait for
+ * durability without paying one fsync per record.
+ */
+@Slf4j
+class LedgerJournal {
+
+    private static final String SEGMENT_PREFIX = "journal-";
+    private static final String SEGMENT_SUFFIX = ".log";
+
+    private final Path directory;
+    private final int maxBatchSize;
+    private final BlockingQueue<Command> queue = new LinkedBlockingQueue<>();
+    private final Thread writerThread;
+    private volatile boolean running = true;
+
+    private long currentSegment;
+    private FileOutputStream output;
+    private BufferedWriter writer;
+
+    LedgerJournal(Path directory, long firstSegment, int maxBatchSize) {
+        this.directory = directory;
+        this.maxBatchSize = maxBatchSize;
+        try {
+            Files.createDirectories(directory);
+            openSegment(firstSegment);
+        } catch (IOException ex) {
+            throw new UncheckedIOException("Could not open ledger journal in " + directory, ex);
+        }
+        this.writerThread = Thread.ofPlatform().name("ledger-journal").start(this::run);
+    }
+
+    /**
+     * Returns the numbers of the segment files in the journal directory, in ascending order.
+     */
+    static List<Long> listSegments(Path directory) throws IOException {
+        if (!Files.isDirectory(directory)) {
+            return List.of();
+        }
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.map(file -> file.getFileName().toString())
+                    .filter(name -> name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX))
+                    .map(name -> Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length())))
+                    .sorted()
+                    .toList();
+        }
+    }
+
+    static List<String> readSegment(Path directory, long segment) throws IOException {
+        return Files.readAllLines(segmentPath(directory, segment), StandardCharsets.UTF_8);
+    }
+
+    static void deleteSegmentsUpTo(Path directory, long segment) throws IOException {
+        for (long existing : listSegments(directory)) {
+            if (existing <= segment) {
+                Files.deleteIfExists(segmentPath(directory, existing));
+            }
+        }
+    }
+
+    CompletableFuture<Void> append(String record) {
+        CompletableFuture<Void> written = new CompletableFuture<>();
+        queue.add(new Append(record, written));
+        return written;
+    }
+
+    /**
+     * Closes the current segment after every record queued so far and starts a new one that
+     * begins with the given records.
+     *
+     * @return the number of the closed segment
+     */
+    CompletableFuture<Long> rotate(List<String> openingRecords) {
+        CompletableFuture<Long> rotated = new CompletableFuture<>();
+        queue.add(new Rotate(openingRecords, rotated));
+        return rotated;
+    }
+
+    Path getDirectory() {
+        return directory;
+    }
+
+    void close() {
+        running = false;
+        try {
+            writerThread.join(TimeUnit.SECONDS.toMillis(10));
+            writer.close();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        } catch (IOException ex) {
+            log.warn("Could not close ledger journal segment {}", currentSegment, ex);
+        }
+    }
+
+    private void run() {
+        List<Command> batch = new ArrayList<>(maxBatchSize);
+        while (running || !queue.isEmpty()) {
+            try {
+                Command first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                queue.drainTo(batch, maxBatchSize - 1);
+                writeBatch(batch);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                return;
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private void writeBatch(List<Command> batch) {
+        List<Runnable> completions = new ArrayList<>(batch.size());
+        try {
+            for (Command command : batch) {
+                if (command instanceof Append append) {
+                    writer.write(append.record());
+                    writer.newLine();
+                    completions.add(() -> append.written().complete(null));
+                } else if (command instanceof Rotate rotate) {
+                    long closed = currentSegment;
+                    force();
+                    writer.close();
+                    openSegment(closed + 1);
+                    for (String record : rotate.openingRecords()) {
+                        writer.write(record);
+                        writer.newLine();
+                    }
+                    completions.add(() -> rotate.rotated().complete(closed));
+                }
+            }
+            force();
+            completions.forEach(Runnable::run);
+        } catch (IOException ex) {
+            log.error("Could not write to ledger journal segment {}", currentSegment, ex);
+            for (Command command : batch) {
+                command.future().completeExceptionally(ex);
+            }
+        }
+    }
+
+    private void force() throws IOException {
+        writer.flush();
+        output.getChannel().force(false);
+    }
+
+    private void openSegment(long segment) throws IOException {
+        currentSegment = segment;
+        output = new FileOutputStream(segmentPath(directory, segment).toFile(), true);
+        writer = new BufferedWriter(new OutputStreamWriter(output, StandardCharsets.UTF_8));
+    }
+
+    private static Path segmentPath(Path directory, long segment) {
+        return directory.resolve(String.format("%s%020d%s", SEGMENT_PREFIX, segment, SEGMENT_SUFFIX));
+    }
+
+    private sealed interface Command permits Append, Rotate {
+        CompletableFuture<?> future();
+    }
+
+    private record Append(String record, CompletableFuture<Void> written) implements Command {
+        @Override
+        public CompletableFuture<?> future() {
+            return written;
+        }
+    }
+
+    private record Rotate(List<String> openingRecords, CompletableFuture<Long> rotated) implements Command {
+        @Override
+        public CompletableFuture<?> future() {
+            return rotated;
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package com.kibit.payment.ledger;
+
+import com.kibit.payment.entity.Account;
+
+import java.math.BigDecimal;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Supplier;
+
+/**
+ * One partition of the in-memory ledger. All balances of the shard are owned by a single writer
+ * thread: every read or change is submitted as a task and runs sequentially on that thread, so the
+ * state below needs no locking.
+ */
+class LedgerShard {
+
+    private final ExecutorService executor;
+    private final Map<Long, Balance> balances = new HashMap<>();
+    private final Set<Long> dirtyAccountIds = new HashSet<>();
+
+    LedgerShard(int index) {
+        this.executor = Executors.newSingleThreadExecutor(Thread.ofPlatform().name("ledger-shard-" + index).factory());
+    }
+
+    <T> CompletableFuture<T> submit(Supplier<T> task) {
+        return CompletableFuture.supplyAsync(task, executor);
+    }
+
+    /**
+     * Returns the balance of an account, seeding it from the account's stored balance the first
+     * time the shard sees it. Must only be called on the shard thread.
+     */
+    Balance balanceOf(Account account) {
+        return balances.computeIfAbsent(account.getId(), id -> new Balance(account.getBalance().toBigDecimal()));
+    }
+
+    Balance balanceOf(Long accountId) {
+        return balances.get(accountId);
+    }
+
+    void markDirty(Long accountId) {
+        dirtyAccountIds.add(accountId);
+    }
+
+    /**
+     * Returns the available balance of every account changed since the previous call and clears
+     * the dirty set. Must only be called on the shard thread or while the shard thread is parked.
+     */
+    Map<Long, BigDecimal> drainDirtyBalances() {
+        Map<Long, BigDecimal> dirty = new HashMap<>();
+        for (Long accountId : dirtyAccountIds) {
+            dirty.put(accountId, balances.get(accountId).available);
+        }
+        dirtyAccountIds.clear();
+        return dirty;
+    }
+
+    void shutdown() {
+        executor.close();
+    }
+
+    /**
+     * The in-memory balance of one account. {@code available} is the committed balance that can be
+     * spent; {@code pendingCredit} holds credits of transfers whose database transaction has not
+     * finished yet.
+     */
+    static final class Balance {
+        BigDecimal available;
+        BigDecimal pendingCredit = BigDecimal.ZERO;
+
+        Balance(BigDecimal available) {
+            this.available = available;
+        }
+
+        BigDecimal ledgerBalance() {
+            return available.add(pendingCredit);
+        }
+    }
+}
@@ -0,0 +1,25 @@
+package com.kibit.payment.money;
+
+import jakarta.persistence.AttributeConverter;
+import jakarta.persistence.Converter;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * Maps an amount in minor units, as held by {@link Money}, onto a {@code DECIMAL(15, 2)} column.
+ * A column value with more than {@value Money#SCALE} decimals is rejected rather than rounded.
+ */
+@Converter
+public class MinorUnitsConverter implements AttributeConverter<Long, BigDecimal> {
+
+    @Override
+    public BigDecimal convertToDatabaseColumn(Long minorUnits) {
+        return minorUnits == null ? null : BigDecimal.valueOf(minorUnits, Money.SCALE);
+    }
+
+    @Override
+    public Long convertToEntityAttribute(BigDecimal amount) {
+        return amount == null ? null : amount.setScale(Money.SCALE, RoundingMode.UNNECESSARY).movePointRight(Money.SCALE).longValueExact();
+    }
+}
@@ -0,0 +1,133 @@
+package com.kibit.payment.money;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.Currency;
+import java.util.Locale;
+
+/**
+ * An amount of money as a whole number of minor units of a currency.
+ *
+ * Amounts are stored with {@value #SCALE} decimals in every currency, so a minor unit is a
+ * hundredth of the currency's major unit regardless of its ISO minor unit. Arithmetic is exact and
+ * fails with an {@link ArithmeticException} on overflow instead of wrapping; amounts of different
+ * currencies cannot be combined. The only operation that rounds is {@link #convert}, with the
+ * rounding mode passed in; it is also the only one that goes through {@link BigDecimal}.
+ */
+public record Money(long minorUnits, Currency currency) implements Comparable<Money> {
+
+    public static final int SCALE = 2;
+
+    public Money {
+        if (currency == null) {
+            throw new IllegalArgumentException("Currency cannot be null");
+        }
+    }
+
+    /**
+     * Returns an amount given in major units.
+     *
+     * @throws IllegalArgumentException if the amount has more than {@value #SCALE} decimals or does not fit
+     */
+    public static Money of(BigDecimal amount, String currencyCode) {
+        return of(amount, currency(currencyCode));
+    }
+
+    /**
+     * Returns an amount given in major units.
+     *
+     * @throws IllegalArgumentException if the amount has more than {@value #SCALE} decimals or does not fit
+     */
+    public static Money of(BigDecimal amount, Currency currency) {
+        try {
+            return new Money(amount.setScale(SCALE, RoundingMode.UNNECESSARY).movePointRight(SCALE).longValueExact(),
+                    currency);
+        } catch (ArithmeticException ex) {
+            throw new IllegalArgumentException("Amount " + amount.toPlainString() + " cannot have more than "
+                    + SCALE + " decimals or exceed the supported range", ex);
+        }
+    }
+
+    public static Money ofMinor(long minorUnits, String currencyCode) {
+        return new Money(minorUnits, currency(currencyCode));
+    }
+
+    public static Money zero(String currencyCode) {
+        return new Money(0, currency(currencyCode));
+    }
+
+    /**
+     * Looks up a currency by its ISO 4217 code, in any case.
+     */
+    public static Currency currency(String currencyCode) {
+        return Currency.getInstance(currencyCode.toUpperCase(Locale.ROOT));
+    }
+
+    /**
+     * Returns whether {@code amount} has at most {@value #SCALE} decimals, not counting trailing zeros.
+     */
+    public static boolean isRepresentable(BigDecimal amount) {
+        return amount.stripTrailingZeros().scale() <= SCALE;
+    }
+
+    public Money plus(Money other) {
+        requireSameCurrency(other);
+        return new Money(Math.addExact(minorUnits, other.minorUnits), currency);
+    }
+
+    public Money minus(Money other) {
+        requireSameCurrency(other);
+        return new Money(Math.subtractExact(minorUnits, other.minorUnits), currency);
+    }
+
+    public Money negate() {
+        return new Money(Math.negateExact(minorUnits), currency);
+    }
+
+    public int signum() {
+        return Long.signum(minorUnits);
+    }
+
+    public boolean isLessThan(Money other) {
+        return compareTo(other) < 0;
+    }
+
+    /**
+     * Converts the amount into another currency.
+     *
+     * @param rate units of {@code target} per unit of this amount's currency
+     * @param rounding how the converted amount is rounded to minor units
+     */
+    public Money convert(BigDecimal rate, Currency target, RoundingMode rounding) {
+        if (target.equals(currency) && rate.compareTo(BigDecimal.ONE) == 0) {
+            return this;
+        }
+        BigDecimal converted = BigDecimal.valueOf(minorUnits).multiply(rate).setScale(0, rounding);
+        return new Money(converted.longValueExact(), target);
+    }
+
+    /**
+     * Returns the amount in major units with {@value #SCALE} decimals.
+     */
+    public BigDecimal toBigDecimal() {
+        return BigDecimal.valueOf(minorUnits, SCALE);
+    }
+
+    @Override
+    public int compareTo(Money other) {
+        requireSameCurrency(other);
+        return Long.compare(minorUnits, other.minorUnits);
+    }
+
+    @Override
+    public String toString() {
+        return toBigDecimal().toPlainString() + " " + currency.getCurrencyCode();
+    }
+
+    private void requireSameCurrency(Money other) {
+        if (!currency.equals(other.currency)) {
+            throw new IllegalArgumentException("Cannot combine " + currency.getCurrencyCode() + " and "
+                    + other.currency.getCurrencyCode() + " amounts");
+        }
+    }
+}
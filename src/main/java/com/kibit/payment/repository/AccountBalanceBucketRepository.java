@@ -0,0 +1,40 @@
+package com.kibit.payment.repository;
+
+import com.kibit.payment.entity.AccountBalanceBucket;
+import com.kibit.payment.entity.AccountBalanceBucketId;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface AccountBalanceBucketRepository extends JpaRepository<AccountBalanceBucket, AccountBalanceBucketId> {
+
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT b FROM AccountBalanceBucket b WHERE b.accountId = :accountId AND b.bucket = :bucket")
+    Optional<AccountBalanceBucket> findByIdForUpdate(@Param("accountId") Long accountId, @Param("bucket") int bucket);
+
+    /**
+     * Locks all buckets of an account in bucket order.
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT b FROM AccountBalanceBucket b WHERE b.accountId = :accountId ORDER BY b.bucket")
+    List<AccountBalanceBucket> findAllByAccountIdForUpdate(@Param("accountId") Long accountId);
+
+    @Query("SELECT COALESCE(SUM(b.balance), 0) FROM AccountBalanceBucket b WHERE b.accountId = :accountId")
+    BigDecimal sumBalances(@Param("accountId") Long accountId);
+
+    /**
+     * Returns the balance left on the account row plus the balance of all its buckets, read in a
+     * single statement so the result is one consistent snapshot.
+     */
+    @Query(value = "SELECT a.balance + COALESCE((SELECT SUM(b.balance) FROM account_balance_buckets b WHERE b.account_id = a.id), 0) " +
+            "FROM accounts a WHERE a.id = :accountId", nativeQuery = true)
+    BigDecimal findTotalBalance(@Param("accountId") Long accountId);
+}
@@ -4,10 +4,14 @@ import com.kibit.payment.entity.Account;
 import jakarta.persistence.LockModeType;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.math.BigDecimal;
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 @Repository
@@ -16,4 +20,25 @@ public interface AccountRepository extends JpaRepository<Account, Long> {
     @Lock(LockModeType.PESSIMISTIC_WRITE)
     @Query("SELECT a FROM Account a WHERE a.id = :accountId")
     Optional<Account> findByIdForUpdate(@Param("accountId") Long accountId);
+
+    /**
+     * Locks every given account with a single SELECT ... FOR UPDATE. Rows are returned and
+     * locked in ascending id order, so concurrent callers always acquire locks in the same
+     * order and cannot deadlock on each other.
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT a FROM Account a WHERE a.id IN :accountIds ORDER BY a.id")
+    List<Account> findAllByIdForUpdate(@Param("accountIds") Collection<Long> accountIds);
+
+    @Query("SELECT a.id FROM Account a WHERE a.balanceBuckets > 0")
+    List<Long> findBucketedAccountIds();
+
+    // Native, as the balance attribute is mapped in minor units while these take decimal amounts.
+    @Modifying
+    @Query(value = "UPDATE accounts SET balance = :balance WHERE id = :accountId", nativeQuery = true)
+    int setBalance(@Param("accountId") Long accountId, @Param("balance") BigDecimal balance);
+
+    @Modifying
+    @Query(value = "UPDATE accounts SET balance = balance + :delta WHERE id = :accountId", nativeQuery = true)
+    int adjustBalance(@Param("accountId") Long accountId, @Param("delta") BigDecimal delta);
 }
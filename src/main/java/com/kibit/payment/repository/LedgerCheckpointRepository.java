@@ -0,0 +1,13 @@
+package com.kibit.payment.repository;
+
+import com.kibit.payment.entity.LedgerCheckpoint;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.Optional;
+
+@Repository
+public interface LedgerCheckpointRepository extends JpaRepository<LedgerCheckpoint, Long> {
+
+    Optional<LedgerCheckpoint> findTopByOrderByIdDesc();
+}
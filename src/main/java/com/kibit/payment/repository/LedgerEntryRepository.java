@@ -0,0 +1,94 @@
+package com.kibit.payment.repository;
+
+import com.kibit.payment.entity.LedgerEntry;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.math.BigDecimal;
+
+@Repository
+public interface LedgerEntryRepository extends JpaRepository<LedgerEntry, Long> {
+
+    // The sum of an account's entries that its checkpoint's snapshot could not see, read with one index
+    // range scan of idx_ledger_entries_account starting at the oldest transaction in flight at the checkpoint.
+    String UNCOVERED_ENTRIES = "LEFT JOIN account_checkpoints c ON c.account_id = a.id " +
+            "CROSS JOIN LATERAL (SELECT SUM(e.amount) AS delta FROM ledger_entries e WHERE e.account_id = a.id " +
+            "AND e.xid >= COALESCE(pg_snapshot_xmin(c.snapshot), CAST('0' AS xid8)) " +
+            "AND (c.snapshot IS NULL OR NOT pg_visible_in_snapshot(e.xid, c.snapshot))) d ";
+    String CHECKPOINT_INSERT = "INSERT INTO account_checkpoints (account_id, balance, snapshot, created_at) " +
+            "SELECT a.id, COALESCE(c.balance, a.balance) + d.delta, pg_current_snapshot(), CURRENT_TIMESTAMP FROM accounts a ";
+    String CHECKPOINT_UPSERT = "AND d.delta IS NOT NULL ON CONFLICT (account_id) DO UPDATE " +
+            "SET balance = EXCLUDED.balance, snapshot = EXCLUDED.snapshot, created_at = EXCLUDED.created_at";
+
+    /**
+     * Inserts the debit and the credit entry of a transfer in one statement.
+     *
+     * @param debitAmount the amount taken from the sender, as a positive number
+     */
+    @Modifying
+    @Query(value = "INSERT INTO ledger_entries (account_id, transaction_id, amount) " +
+            "VALUES (:senderAccountId, :transactionId, -CAST(:debitAmount AS numeric)), (:receiverAccountId, :transactionId, :creditAmount)",
+            nativeQuery = true)
+    int appendTransfer(@Param("transactionId") Long transactionId,
+                       @Param("senderAccountId") Long senderAccountId, @Param("debitAmount") BigDecimal debitAmount,
+                       @Param("receiverAccountId") Long receiverAccountId, @Param("creditAmount") BigDecimal creditAmount);
+
+    /**
+     * Returns the balance of an account: its latest checkpoint, or its {@code accounts} balance if it
+     * has none, plus every entry written since.
+     */
+    @Query(value = "SELECT COALESCE(c.balance, a.balance) + COALESCE(d.delta, 0) FROM accounts a " + UNCOVERED_ENTRIES +
+            "WHERE a.id = :accountId", nativeQuery = true)
+    BigDecimal findBalance(@Param("accountId") Long accountId);
+
+    /**
+     * Blocks until no other transaction can debit the account and keeps it that way until the
+     * current transaction ends.
+     */
+    @Query(value = "SELECT 1 FROM pg_advisory_xact_lock(1, CAST(:accountId AS int))", nativeQuery = true)
+    Integer lockForDebit(@Param("accountId") Long accountId);
+
+    /**
+     * Tries to take the lock that serializes checkpoints of all instances, for the rest of the
+     * current transaction.
+     */
+    @Query(value = "SELECT pg_try_advisory_xact_lock(2, 0)", nativeQuery = true)
+    boolean tryLockCheckpoints();
+
+    /**
+     * Returns the id of the oldest database transaction still in flight. Every snapshot taken later
+     * sees all entries of older transactions that committed.
+     */
+    @Query(value = "SELECT CAST(pg_snapshot_xmin(pg_current_snapshot()) AS text)", nativeQuery = true)
+    String findOldestActiveXid();
+
+    @Query(value = "SELECT COALESCE(MAX(id), 0) FROM accounts", nativeQuery = true)
+    long findMaxAccountId();
+
+    /**
+     * Rolls forward the checkpoints of the accounts with entries written by database transaction
+     * {@code fromXid} or later.
+     *
+     * @return the number of checkpoints written
+     */
+    @Modifying
+    @Query(value = CHECKPOINT_INSERT + UNCOVERED_ENTRIES +
+            "WHERE a.id IN (SELECT account_id FROM ledger_entries WHERE xid >= CAST(:fromXid AS xid8)) " + CHECKPOINT_UPSERT,
+            nativeQuery = true)
+    int checkpointChangedAccounts(@Param("fromXid") String fromXid);
+
+    /**
+     * Rolls forward the checkpoints of every account in an id range that has entries its checkpoint
+     * does not cover.
+     *
+     * @return the number of checkpoints written
+     */
+    @Modifying
+    @Query(value = CHECKPOINT_INSERT + UNCOVERED_ENTRIES +
+            "WHERE a.id BETWEEN :firstAccountId AND :lastAccountId " + CHECKPOINT_UPSERT,
+            nativeQuery = true)
+    int checkpointAccountRange(@Param("firstAccountId") long firstAccountId, @Param("lastAccountId") long lastAccountId);
+}
@@ -2,8 +2,41 @@ package com.kibit.payment.repository;
 
 import com.kibit.payment.entity.TransactionNotification;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Date;
+
 @Repository
 public interface TransactionNotificationRepository extends JpaRepository<TransactionNotification, Long> {
+
+    /**
+     * Inserts the notification of every transaction completed in [{@code since}, {@code before})
+     * that has none. A notification is never written before its transaction completed, so only the
+     * partitions from {@code since} on are searched for it, and a transaction is never created
+     * after it completed, so neither are the transaction partitions from {@code before} on.
+     *
+     * @param sentAt the time recorded as the notifications' {@code sent_at}
+     * @return the number of notifications inserted
+     */
+    @Modifying
+    @Query(value = "INSERT INTO transaction_notifications (transaction_id, recipient_email, message, sent_at) " +
+            "SELECT t.id, u.email, 'Transaction ID: ' || t.id || ' has been completed', :sentAt " +
+            "FROM transactions t " +
+            "JOIN accounts a ON a.id = t.receiver_account_id " +
+            "JOIN users u ON u.id = a.user_id " +
+            "WHERE t.status = 'COMPLETED' AND t.completed_at >= :since AND t.completed_at < :before " +
+            "AND t.created_at < :before " +
+            "AND NOT EXISTS (SELECT 1 FROM transaction_notifications n WHERE n.transaction_id = t.id AND n.sent_at >= :since)",
+            nativeQuery = true)
+    int insertMissing(@Param("since") Date since, @Param("before") Date before, @Param("sentAt") Date sentAt);
+
+    /**
+     * Tries to take the lock that serializes reconciliations of all instances, for the rest of the
+     * current transaction.
+     */
+    @Query(value = "SELECT pg_try_advisory_xact_lock(3, 0)", nativeQuery = true)
+    boolean tryLockReconciliation();
 }
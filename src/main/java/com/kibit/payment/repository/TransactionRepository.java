@@ -1,12 +1,122 @@
 package com.kibit.payment.repository;
 
-import com.kibit.payment.entity.Account;
+import com.kibit.payment.dto.TransactionResponse;
 import com.kibit.payment.entity.Transaction;
+import com.kibit.payment.entity.TransactionStatus;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.Date;
 import java.util.List;
+import java.util.Optional;
 
 @Repository
 public interface TransactionRepository extends JpaRepository<Transaction, Long> {
+
+    String HISTORY_COLUMNS = "id AS \"id\", sender_account_id AS \"senderAccountId\", receiver_account_id AS \"receiverAccountId\", " +
+            "amount AS \"amount\", credited_amount AS \"creditedAmount\", exchange_rate AS \"exchangeRate\", status AS \"status\", " +
+            "failure_reason AS \"failureReason\", created_at AS \"createdAt\" FROM transactions ";
+    String HISTORY_RANGE = "AND created_at >= :from AND (created_at, id) < (:beforeCreatedAt, :beforeId) " +
+            "ORDER BY created_at DESC, id DESC LIMIT :limit";
+
+    /**
+     * Locks a transaction row and reads what is needed to execute it, without loading the
+     * accounts into the persistence context before they are locked.
+     */
+    @Query(value = "SELECT sender_account_id AS \"senderAccountId\", receiver_account_id AS \"receiverAccountId\", " +
+            "amount AS \"amount\", status AS \"status\" FROM transactions WHERE id = :transactionId FOR UPDATE",
+            nativeQuery = true)
+    Optional<TransferDetails> findTransferDetailsForUpdate(@Param("transactionId") Long transactionId);
+
+    /**
+     * Reads a transaction straight into its API representation, without loading the entity or
+     * joining the accounts. Lookups by id alone probe the primary key of every attached monthly
+     * partition, whose number archiving keeps bounded.
+     */
+    @Query("SELECT new com.kibit.payment.dto.TransactionResponse(t.id, t.senderAccount.id, t.receiverAccount.id, t.amount, " +
+            "t.creditedAmount, t.exchangeRate, t.status, t.failureReason, t.createdAt) FROM Transaction t WHERE t.id = :transactionId")
+    Optional<TransactionResponse> findResponseById(@Param("transactionId") Long transactionId);
+
+    @Modifying
+    @Query("UPDATE Transaction t SET t.status = com.kibit.payment.entity.TransactionStatus.FAILED, t.failureReason = :reason " +
+            "WHERE t.id = :transactionId AND t.status = com.kibit.payment.entity.TransactionStatus.PENDING")
+    int markPendingFailed(@Param("transactionId") Long transactionId, @Param("reason") String reason);
+
+    @Modifying
+    @Query("UPDATE Transaction t SET t.status = com.kibit.payment.entity.TransactionStatus.FAILED, t.failureReason = :reason " +
+            "WHERE t.status = com.kibit.payment.entity.TransactionStatus.PENDING AND t.createdAt < :createdBefore")
+    int markPendingFailedCreatedBefore(@Param("createdBefore") Date createdBefore, @Param("reason") String reason);
+
+    boolean existsByIdAndStatus(Long id, TransactionStatus status);
+
+    @Query("SELECT t.id FROM Transaction t WHERE t.status = com.kibit.payment.entity.TransactionStatus.PENDING " +
+            "AND t.createdAt < :createdBefore ORDER BY t.id")
+    List<Long> findPendingIdsCreatedBefore(@Param("createdBefore") Date createdBefore, Pageable pageable);
+
+    /**
+     * Reads the newest transfers sent by an account that are older than the cursor
+     * ({@code beforeCreatedAt}, {@code beforeId}) and not older than {@code from}.
+     * Served by a backward range scan of {@code idx_transactions_sender_history}.
+     */
+    @Query(value = "SELECT " + HISTORY_COLUMNS + "WHERE sender_account_id = :accountId " + HISTORY_RANGE, nativeQuery = true)
+    List<HistoryRow> findSentHistory(@Param("accountId") Long accountId, @Param("from") LocalDateTime from,
+                                     @Param("beforeCreatedAt") LocalDateTime beforeCreatedAt, @Param("beforeId") Long beforeId,
+                                     @Param("limit") int limit);
+
+    /**
+     * Like {@link #findSentHistory}, for the transfers received by an account.
+     */
+    @Query(value = "SELECT " + HISTORY_COLUMNS + "WHERE receiver_account_id = :accountId " + HISTORY_RANGE, nativeQuery = true)
+    List<HistoryRow> findReceivedHistory(@Param("accountId") Long accountId, @Param("from") LocalDateTime from,
+                                         @Param("beforeCreatedAt") LocalDateTime beforeCreatedAt, @Param("beforeId") Long beforeId,
+                                         @Param("limit") int limit);
+
+    /**
+     * Like {@link #findSentHistory}, for the transfers sent or received by an account. Each side is
+     * read by its own limited index scan and the two are merged, instead of filtering a single scan
+     * on either column, which could not return rows in index order.
+     */
+    @Query(value = "(SELECT " + HISTORY_COLUMNS + "WHERE sender_account_id = :accountId " + HISTORY_RANGE + ") " +
+            "UNION ALL (SELECT " + HISTORY_COLUMNS + "WHERE receiver_account_id = :accountId " + HISTORY_RANGE + ") " +
+            "ORDER BY \"createdAt\" DESC, \"id\" DESC LIMIT :limit", nativeQuery = true)
+    List<HistoryRow> findHistory(@Param("accountId") Long accountId, @Param("from") LocalDateTime from,
+                                 @Param("beforeCreatedAt") LocalDateTime beforeCreatedAt, @Param("beforeId") Long beforeId,
+                                 @Param("limit") int limit);
+
+    interface HistoryRow {
+        Long getId();
+
+        Long getSenderAccountId();
+
+        Long getReceiverAccountId();
+
+        BigDecimal getAmount();
+
+        BigDecimal getCreditedAmount();
+
+        BigDecimal getExchangeRate();
+
+        String getStatus();
+
+        String getFailureReason();
+
+        Timestamp getCreatedAt();
+    }
+
+    interface TransferDetails {
+        Long getSenderAccountId();
+
+        Long getReceiverAccountId();
+
+        BigDecimal getAmount();
+
+        String getStatus();
+    }
 }
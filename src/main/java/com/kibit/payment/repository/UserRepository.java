@@ -1,11 +1,37 @@
 package com.kibit.payment.repository;
 
+import com.kibit.payment.dto.UserResponse;
 import com.kibit.payment.entity.User;
+import jakarta.persistence.QueryHint;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
-import java.util.Optional;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.hibernate.jpa.HibernateHints.HINT_FETCH_SIZE;
+import static org.hibernate.jpa.HibernateHints.HINT_READ_ONLY;
 
 @Repository
 public interface UserRepository extends JpaRepository<User, Long> {
-}
\ No newline at end of file
+
+    /**
+     * Reads the users with an id greater than {@code afterId} in id order. Seeks through the
+     * primary key index, so every page costs the same however deep into the table it is.
+     */
+    @Query("SELECT new com.kibit.payment.dto.UserResponse(u.id, u.name, u.email, u.createdAt) " +
+            "FROM User u WHERE u.id > :afterId ORDER BY u.id")
+    List<UserResponse> findPageAfter(@Param("afterId") Long afterId, Pageable pageable);
+
+    /**
+     * Streams all users in id order through a forward-only cursor that fetches 500 rows at a time.
+     * Must be consumed and closed inside a transaction.
+     */
+    @QueryHints({@QueryHint(name = HINT_FETCH_SIZE, value = "500"), @QueryHint(name = HINT_READ_ONLY, value = "true")})
+    @Query("SELECT new com.kibit.payment.dto.UserResponse(u.id, u.name, u.email, u.createdAt) FROM User u ORDER BY u.id")
+    Stream<UserResponse> streamAll();
+}
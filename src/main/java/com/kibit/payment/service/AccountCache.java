@@ -0,0 +1,100 @@
+package com.kibit.payment.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.kibit.payment.dto.AccountResponse;
+import com.kibit.payment.event.BalanceChangedEvent;
+import com.kibit.payment.event.EventCodec;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.function.Function;
+
+/**
+ * Bounded cache of account reads for {@code GET /api/accounts/{id}}.
+ *
+ * Entries are immutable responses and expire {@code payment.account-cache.max-staleness-ms} after they
+ * were loaded, which bounds how stale a read can be when an invalidation is missed. Balance changes
+ * made by this instance invalidate the entry right away and again once the database transaction
+ * has completed, so a read that raced with the change cannot keep the old balance. Changes made by
+ * other instances are picked up from {@code account_notifications}; every instance consumes the
+ * topic in its own consumer group, starting at the latest offset.
+ *
+ * Metrics: the {@code cache.*} meters of the {@code accounts} cache, including hits and misses in
+ * {@code cache.gets}, and {@code payment.account.cache.invalidations} tagged by source.
+ */
+@Service
+@Slf4j
+public class AccountCache {
+
+    private static final String CACHE_NAME = "accounts";
+
+    private final EventCodec eventCodec;
+    private final Cache<Long, AccountResponse> accounts;
+    private final Counter localInvalidations;
+    private final Counter remoteInvalidations;
+
+    public AccountCache(EventCodec eventCodec, MeterRegistry meterRegistry,
+                        @Value("${payment.account-cache.maximum-size:100000}") long maximumSize,
+                        @Value("${payment.account-cache.max-staleness-ms:5000}") long maxStalenessMs) {
+        this.eventCodec = eventCodec;
+        this.accounts = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(Duration.ofMillis(maxStalenessMs))
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, accounts, CACHE_NAME);
+        this.localInvalidations = meterRegistry.counter("payment.account.cache.invalidations", "source", "local");
+        this.remoteInvalidations = meterRegistry.counter("payment.account.cache.invalidations", "source", "kafka");
+    }
+
+    /**
+     * Returns the cached account, loading it on a miss. A concurrent invalidation of the same
+     * account waits for the load and then removes its result.
+     *
+     * @param loader loads the account
+     */
+    public AccountResponse get(Long accountId, Function<Long, AccountResponse> loader) {
+        return accounts.get(accountId, loader);
+    }
+
+    /**
+     * Drops the cached account now and, inside a transaction, again after it has completed.
+     */
+    public void invalidate(Long accountId) {
+        accounts.invalidate(accountId);
+        localInvalidations.increment();
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    accounts.invalidate(accountId);
+                }
+            });
+        }
+    }
+
+    @KafkaListener(topics = "account_notifications",
+            groupId = "payment-account-cache-${random.uuid}",
+            properties = "auto.offset.reset=latest",
+            autoStartup = "${payment.account-cache.kafka-invalidation:true}")
+    public void onBalanceChanged(String payload) {
+        BalanceChangedEvent event;
+        try {
+            event = eventCodec.decode(payload, BalanceChangedEvent.class);
+        } catch (IllegalArgumentException ex) {
+            log.warn("Skipping undecodable account notification", ex);
+            return;
+        }
+        accounts.invalidate(event.accountId());
+        remoteInvalidations.increment();
+    }
+}
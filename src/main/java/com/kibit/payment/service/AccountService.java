@@ -1,43 +1,275 @@
 package com.kibit.payment.service;
 
+import com.kibit.payment.contention.LockContentionProfiler;
+import com.kibit.payment.dto.AccountResponse;
 import com.kibit.payment.entity.Account;
 import com.kibit.payment.exception.AccountNotFoundException;
+import com.kibit.payment.ledger.DoubleEntryLedger;
+import com.kibit.payment.ledger.LedgerEngine;
+import com.kibit.payment.money.Money;
 import com.kibit.payment.repository.AccountRepository;
 import jakarta.transaction.Transactional;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
 
-import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.TreeSet;
 
+/**
+ * Reads accounts and moves balances between them.
+ *
+ * By default balances live in the {@code accounts} table and transfers lock the account rows.
+ * When {@code payment.ledger.engine} is set to {@code in-memory}, balances are owned by the
+ * {@link LedgerEngine} instead: accounts are read without row locks and transfers are applied by
+ * the engine's shard threads. When it is set to {@code double-entry}, transfers append entries to the
+ * {@link DoubleEntryLedger} and only debits are serialized, by a lock taken with
+ * {@link #lockForTransfers(Map, Collection)}; the {@code accounts} rows are never locked or updated.
+ *
+ * Single account reads are served from {@link AccountCache}; every balance change made here
+ * invalidates the cached account. The time spent locking account rows is reported to the
+ * {@link LockContentionProfiler}.
+ */
 @Service
 @Transactional
 public class AccountService {
 
     private final AccountRepository accountRepository;
     private final KafkaProducerService kafkaProducerService;
+    private final BalanceBucketService balanceBucketService;
+    private final LedgerEngine ledgerEngine;
+    private final DoubleEntryLedger doubleEntryLedger;
+    private final AccountCache accountCache;
+    private final LockContentionProfiler lockContentionProfiler;
+    private final TransactionTemplate transactionTemplate;
 
-    public AccountService(AccountRepository accountRepository, KafkaProducerService kafkaProducerService) {
+    public AccountService(AccountRepository accountRepository, KafkaProducerService kafkaProducerService,
+                          BalanceBucketService balanceBucketService, Optional<LedgerEngine> ledgerEngine,
+                          Optional<DoubleEntryLedger> doubleEntryLedger, AccountCache accountCache,
+                          LockContentionProfiler lockContentionProfiler, TransactionTemplate transactionTemplate) {
         this.accountRepository = accountRepository;
         this.kafkaProducerService = kafkaProducerService;
+        this.balanceBucketService = balanceBucketService;
+        this.ledgerEngine = ledgerEngine.orElse(null);
+        this.doubleEntryLedger = doubleEntryLedger.orElse(null);
+        this.accountCache = accountCache;
+        this.lockContentionProfiler = lockContentionProfiler;
+        this.transactionTemplate = transactionTemplate;
     }
 
-    public Account getAccountById(Long accountId) {
-        return accountRepository.findById(accountId)
+    /**
+     * Returns an account from the cache, reading it on a miss. Runs without a transaction of its
+     * own, so cache hits do not take a database connection. Misses are read on the primary: a
+     * replica behind the primary could return a balance from before the transfer that invalidated
+     * the entry, which would then be cached for up to {@code payment.account-cache.max-staleness-ms}.
+     */
+    @Transactional(Transactional.TxType.SUPPORTS)
+    public AccountResponse getAccountById(Long accountId) {
+        return accountCache.get(accountId, this::loadAccount);
+    }
+
+    /**
+     * Reads the given accounts without locking them.
+     *
+     * @return the accounts keyed by id; ids that do not exist are absent from the map
+     */
+    public Map<Long, Account> findAccounts(Collection<Long> accountIds) {
+        Map<Long, Account> accounts = new HashMap<>();
+        accountRepository.findAllById(accountIds).forEach(account -> accounts.put(account.getId(), account));
+        return accounts;
+    }
+
+    /**
+     * Splits the balance of an account into the given number of buckets so that concurrent credits
+     * to it stop serializing on its row lock. Only supported with the database engine.
+     */
+    public AccountResponse enableBalanceBuckets(Long accountId, int bucketCount) {
+        if (ledgerEngine != null || doubleEntryLedger != null) {
+            throw new IllegalStateException("Balance buckets are only supported by the database ledger engine");
+        }
+        Account account = findByIdForUpdate(accountId)
                 .orElseThrow(() -> new AccountNotFoundException("Account not found"));
+        accountCache.invalidate(accountId);
+        return toResponse(balanceBucketService.enableBuckets(account, bucketCount));
+    }
+
+    /**
+     * Locks the given accounts for the rest of the current transaction in one round trip.
+     * Locks are always taken in ascending id order regardless of the order of the ids passed
+     * in, which keeps opposite-direction transfers between the same accounts deadlock-free.
+     * Accounts with balance buckets are only read, as their buckets are locked by
+     * {@link #lockForTransfers(Map, Collection)}. With the in-memory ledger engine no account is
+     * locked, as the engine serializes balance changes itself, and with the double-entry ledger only
+     * the senders passed to {@link #lockForTransfers(Map, Collection)} are.
+     *
+     * @param accountIds the ids of the accounts to lock
+     * @return the locked accounts keyed by id; ids that do not exist are absent from the map
+     */
+    public Map<Long, Account> lockAccounts(Collection<Long> accountIds) {
+        Map<Long, Account> accounts = new HashMap<>();
+        if (ledgerEngine != null || doubleEntryLedger != null) {
+            accountRepository.findAllById(accountIds).forEach(account -> accounts.put(account.getId(), account));
+            return accounts;
+        }
+
+        Set<Long> lockedIds = new TreeSet<>();
+        List<Long> bucketedIds = new ArrayList<>();
+        for (Long accountId : accountIds) {
+            if (balanceBucketService.isBucketed(accountId)) {
+                bucketedIds.add(accountId);
+            } else {
+                lockedIds.add(accountId);
+            }
+        }
+        if (!lockedIds.isEmpty()) {
+            long start = System.nanoTime();
+            accountRepository.findAllByIdForUpdate(lockedIds).forEach(account -> accounts.put(account.getId(), account));
+            lockContentionProfiler.record(lockedIds, System.nanoTime() - start);
+        }
+        if (!bucketedIds.isEmpty()) {
+            accountRepository.findAllById(bucketedIds).forEach(account -> accounts.put(account.getId(), account));
+        }
+        return accounts;
     }
 
+    /**
+     * Takes the locks, beyond the account rows, that transfers between accounts returned by
+     * {@link #lockAccounts(Collection)} need, so a balance read afterwards with
+     * {@link #getAvailableBalance(Account)} stays spendable until the current transaction ends. With
+     * the double-entry ledger these are the senders' debit locks; with balance buckets, the bucket
+     * rows the transfers will change, see {@link BalanceBucketService#lockBuckets(Map, Collection)}.
+     * The in-memory engine needs none.
+     *
+     * @param accounts the accounts returned by {@link #lockAccounts(Collection)}
+     * @param senderIds the ids of the accounts that will be debited
+     */
+    public void lockForTransfers(Map<Long, Account> accounts, Collection<Long> senderIds) {
+        if (doubleEntryLedger != null) {
+            doubleEntryLedger.lockForDebit(senderIds);
+        } else if (ledgerEngine == null) {
+            balanceBucketService.lockBuckets(accounts, senderIds);
+        }
+    }
 
+    /**
+     * Returns the balance that can currently be spent from an account returned by
+     * {@link #lockAccounts(Collection)}.
+     */
+    public Money getAvailableBalance(Account account) {
+        if (ledgerEngine != null) {
+            return Money.of(ledgerEngine.getAvailableBalance(account), account.getCurrencyUnit());
+        }
+        if (doubleEntryLedger != null) {
+            return Money.of(doubleEntryLedger.getBalance(account.getId()), account.getCurrencyUnit());
+        }
+        if (account.getBalanceBuckets() > 0) {
+            return Money.of(balanceBucketService.getAvailableBalance(account), account.getCurrencyUnit());
+        }
+        return account.getBalance();
+    }
 
-    public Account updateBalance(Long accountId, BigDecimal balance, Long transactionId) {
-        Optional<Account> account = accountRepository.findByIdForUpdate(accountId);
+    /**
+     * Debits the sender and credits the receiver and publishes a balance notification for both.
+     * The amounts differ when the accounts hold different currencies.
+     * Both accounts must have been returned by {@link #lockAccounts(Collection)} and passed to
+     * {@link #lockForTransfers(Map, Collection)} in the current transaction.
+     *
+     * @param debitAmount the amount taken from the sender, in the sender's currency
+     * @param creditAmount the amount given to the receiver, in the receiver's currency
+     */
+    public void transfer(Account sender, Account receiver, Money debitAmount, Money creditAmount, Long transactionId) {
+        if (ledgerEngine == null && doubleEntryLedger == null) {
+            // Bucket rows are normally locked up front by lockForTransfers. Any that were not are
+            // locked here, after all account rows and in ascending account id order.
+            if (sender.getId() < receiver.getId()) {
+                debit(sender, debitAmount, transactionId);
+                credit(receiver, creditAmount, transactionId);
+            } else {
+                credit(receiver, creditAmount, transactionId);
+                debit(sender, debitAmount, transactionId);
+            }
+            return;
+        }
+        LedgerEngine.TransferResult result = ledgerEngine != null
+                ? ledgerEngine.transfer(transactionId, sender, receiver, debitAmount.toBigDecimal(), creditAmount.toBigDecimal())
+                : doubleEntryLedger.transfer(transactionId, sender, receiver, debitAmount.toBigDecimal(), creditAmount.toBigDecimal());
+        accountCache.invalidate(sender.getId());
+        accountCache.invalidate(receiver.getId());
+        kafkaProducerService.modifyBalanceNotification(sender, result.senderOldBalance(), result.senderNewBalance(), transactionId);
+        kafkaProducerService.modifyBalanceNotification(receiver, result.receiverOldBalance(), result.receiverNewBalance(), transactionId);
+    }
+
+    public Account updateBalance(Long accountId, Money balance, Long transactionId) {
+        Optional<Account> account = findByIdForUpdate(accountId);
         if (account.isPresent()) {
-            BigDecimal oldBalance = account.get().getBalance();
-            account.get().setBalance(balance);
-            kafkaProducerService.modifyBalanceNotification(account.get(), oldBalance, transactionId);
-            return accountRepository.save(account.get());
+            return updateBalance(account.get(), balance, transactionId);
         } else {
             throw new AccountNotFoundException("Account not found");
         }
     }
 
-}
\ No newline at end of file
+    /**
+     * Updates the balance of an account that is already locked by the current transaction,
+     * e.g. one returned by {@link #lockAccounts(Collection)}, without reading it again.
+     */
+    public Account updateBalance(Account account, Money balance, Long transactionId) {
+        Money oldBalance = account.getBalance();
+        account.setBalance(balance);
+        accountCache.invalidate(account.getId());
+        kafkaProducerService.modifyBalanceNotification(account, oldBalance.toBigDecimal(), transactionId);
+        return accountRepository.save(account);
+    }
+
+    private void debit(Account account, Money amount, Long transactionId) {
+        if (account.getBalanceBuckets() == 0) {
+            updateBalance(account, account.getBalance().minus(amount), transactionId);
+            return;
+        }
+        Money newBalance = account.getBalance()
+                .plus(Money.of(balanceBucketService.debit(account, amount.toBigDecimal()), account.getCurrencyUnit()));
+        accountCache.invalidate(account.getId());
+        kafkaProducerService.modifyBalanceNotification(account, newBalance.plus(amount).toBigDecimal(), newBalance.toBigDecimal(), transactionId);
+    }
+
+    private void credit(Account account, Money amount, Long transactionId) {
+        if (account.getBalanceBuckets() == 0) {
+            updateBalance(account, account.getBalance().plus(amount), transactionId);
+            return;
+        }
+        Money newBalance = account.getBalance()
+                .plus(Money.of(balanceBucketService.credit(account, amount.toBigDecimal()), account.getCurrencyUnit()));
+        accountCache.invalidate(account.getId());
+        kafkaProducerService.modifyBalanceNotification(account, newBalance.minus(amount).toBigDecimal(), newBalance.toBigDecimal(), transactionId);
+    }
+
+    private Optional<Account> findByIdForUpdate(Long accountId) {
+        long start = System.nanoTime();
+        Optional<Account> account = accountRepository.findByIdForUpdate(accountId);
+        lockContentionProfiler.record(accountId, System.nanoTime() - start);
+        return account;
+    }
+
+    private AccountResponse loadAccount(Long accountId) {
+        return transactionTemplate.execute(status -> toResponse(accountRepository.findById(accountId)
+                .orElseThrow(() -> new AccountNotFoundException("Account not found"))));
+    }
+
+    private AccountResponse toResponse(Account account) {
+        if (ledgerEngine != null) {
+            return AccountResponse.from(account, ledgerEngine.getAvailableBalance(account));
+        }
+        if (doubleEntryLedger != null) {
+            return AccountResponse.from(account, doubleEntryLedger.getBalance(account.getId()));
+        }
+        if (account.getBalanceBuckets() > 0) {
+            return AccountResponse.from(account, balanceBucketService.getTotalBalance(account));
+        }
+        return AccountResponse.from(account, account.getBalance().toBigDecimal());
+    }
+
+}
@@ -0,0 +1,148 @@
+package com.kibit.payment.service;
+
+import com.kibit.payment.dto.TransactionRequest;
+import com.kibit.payment.entity.Transaction;
+import com.kibit.payment.exception.AccountNotFoundException;
+import com.kibit.payment.exception.InsufficientBalanceException;
+import com.kibit.payment.repository.TransactionRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.Date;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Executes asynchronously submitted transfers.
+ *
+ * {@link #submit(TransactionRequest)} stores the transfer as pending and hands its id to a fixed
+ * pool of workers through a bounded queue, so bursts are drained at the rate the database can
+ * sustain instead of holding HTTP connections open. A transfer that does not fit into the queue,
+ * or was still pending when the application stopped, stays pending in the database and is picked
+ * up by {@link #recoverPending()}.
+ *
+ * Transfers that fail because an account does not exist, the balance is too low or the amount is
+ * invalid are marked FAILED. Any other error leaves the transfer pending, so it is retried by the
+ * recovery until it has been pending for {@code payment.async.max-pending-age-ms}; then it is
+ * marked FAILED as well.
+ */
+@Service
+@Slf4j
+public class AsyncTransactionProcessor {
+
+    private final TransactionService transactionService;
+    private final TransactionRepository transactionRepository;
+    private final ThreadPoolExecutor workers;
+    private final Set<Long> queuedIds = ConcurrentHashMap.newKeySet();
+    private final Duration recoveryAge;
+    private final int recoveryBatchSize;
+    private final Duration maxPendingAge;
+    private final Timer completedTimer;
+    private final Timer failedTimer;
+    private final Counter overflowCounter;
+
+    public AsyncTransactionProcessor(TransactionService transactionService,
+                                     TransactionRepository transactionRepository,
+                                     MeterRegistry meterRegistry,
+                                     @Value("${payment.async.workers:4}") int workerCount,
+                                     @Value("${payment.async.queue-capacity:10000}") int queueCapacity,
+                                     @Value("${payment.async.recovery-age-ms:5000}") long recoveryAgeMs,
+                                     @Value("${payment.async.recovery-batch-size:500}") int recoveryBatchSize,
+                                     @Value("${payment.async.max-pending-age-ms:3600000}") long maxPendingAgeMs) {
+        this.transactionService = transactionService;
+        this.transactionRepository = transactionRepository;
+        this.workers = new ThreadPoolExecutor(workerCount, workerCount, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), Thread.ofPlatform().name("async-transfer-", 0).factory());
+        this.recoveryAge = Duration.ofMillis(recoveryAgeMs);
+        this.recoveryBatchSize = recoveryBatchSize;
+        this.maxPendingAge = Duration.ofMillis(maxPendingAgeMs);
+        this.completedTimer = meterRegistry.timer("payment.async.execution", "outcome", "completed");
+        this.failedTimer = meterRegistry.timer("payment.async.execution", "outcome", "failed");
+        this.overflowCounter = meterRegistry.counter("payment.async.queue.overflow");
+        Gauge.builder("payment.async.queue.size", workers, executor -> executor.getQueue().size())
+                .register(meterRegistry);
+    }
+
+    /**
+     * Stores a transfer as pending and queues it for execution.
+     *
+     * @return the pending transaction
+     */
+    public Transaction submit(TransactionRequest request) {
+        Transaction transaction = transactionService.submitTransaction(request);
+        dispatch(transaction.getId());
+        return transaction;
+    }
+
+    /**
+     * Queues transfers that have been pending for longer than the recovery age, e.g. because the
+     * queue was full or the application restarted before executing them. Transfers pending for
+     * longer than the maximum pending age are marked FAILED instead.
+     */
+    @Scheduled(fixedDelayString = "${payment.async.recovery-interval-ms:5000}")
+    public void recoverPending() {
+        Date expiredBefore = new Date(System.currentTimeMillis() - maxPendingAge.toMillis());
+        int expired = transactionService.failPendingTransactionsCreatedBefore(expiredBefore, "Not executed within " + maxPendingAge.toMillis() + " ms");
+        if (expired > 0) {
+            log.warn("Marked {} transactions pending for longer than {} ms as failed", expired, maxPendingAge.toMillis());
+        }
+
+        Date createdBefore = new Date(System.currentTimeMillis() - recoveryAge.toMillis());
+        List<Long> pendingIds = transactionRepository.findPendingIdsCreatedBefore(createdBefore, PageRequest.ofSize(recoveryBatchSize));
+        if (!pendingIds.isEmpty()) {
+            log.info("Recovering {} pending transactions", pendingIds.size());
+            pendingIds.forEach(this::dispatch);
+        }
+    }
+
+    @PreDestroy
+    public void stop() {
+        workers.shutdown();
+    }
+
+    void dispatch(Long transactionId) {
+        if (!queuedIds.add(transactionId)) {
+            return;
+        }
+        try {
+            workers.execute(() -> {
+                try {
+                    execute(transactionId);
+                } finally {
+                    queuedIds.remove(transactionId);
+                }
+            });
+        } catch (RejectedExecutionException ex) {
+            queuedIds.remove(transactionId);
+            overflowCounter.increment();
+            log.warn("Async transfer queue is full, transaction {} is left for recovery", transactionId);
+        }
+    }
+
+    void execute(Long transactionId) {
+        long start = System.nanoTime();
+        try {
+            transactionService.executePendingTransaction(transactionId);
+            completedTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        } catch (AccountNotFoundException | InsufficientBalanceException | IllegalArgumentException | ArithmeticException ex) {
+            transactionService.failPendingTransaction(transactionId, ex.getMessage());
+            failedTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        } catch (RuntimeException ex) {
+            log.error("Failed to execute pending transaction {}, it is left for recovery", transactionId, ex);
+        }
+    }
+}
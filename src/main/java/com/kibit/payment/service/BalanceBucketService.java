@@ -0,0 +1,209 @@
+package com.kibit.payment.service;
+
+import com.kibit.payment.entity.Account;
+import com.kibit.payment.entity.AccountBalanceBucket;
+import com.kibit.payment.exception.InsufficientBalanceException;
+import com.kibit.payment.money.Money;
+import com.kibit.payment.repository.AccountBalanceBucketRepository;
+import com.kibit.payment.repository.AccountRepository;
+import jakarta.transaction.Transactional;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Manages the balance buckets of hot accounts.
+ *
+ * An account with buckets enabled keeps its balance in {@code account_balance_buckets} rows
+ * instead of the {@code accounts} row. Credits lock one randomly chosen bucket, so concurrent
+ * credits no longer serialize on a single row lock. Debits lock all buckets of the account in
+ * bucket order and borrow across them. The balance of such an account is the sum of its buckets
+ * plus whatever is left on the {@code accounts} row.
+ *
+ * Transfers lock their bucket rows up front with {@link #lockBuckets(Map, Collection)}, in one
+ * global order, and {@link #debit} and {@link #credit} then change the rows already locked by the
+ * current transaction.
+ *
+ * The ids of bucketed accounts are cached and refreshed periodically so transfers can skip locking
+ * their {@code accounts} rows. A stale cache only costs an unnecessary row lock.
+ */
+@Service
+@Transactional
+@Slf4j
+public class BalanceBucketService {
+
+    private static final int MAX_BUCKETS = 64;
+
+    private final AccountRepository accountRepository;
+    private final AccountBalanceBucketRepository accountBalanceBucketRepository;
+    private volatile Set<Long> bucketedAccountIds = Set.of();
+
+    public BalanceBucketService(AccountRepository accountRepository, AccountBalanceBucketRepository accountBalanceBucketRepository) {
+        this.accountRepository = accountRepository;
+        this.accountBalanceBucketRepository = accountBalanceBucketRepository;
+    }
+
+    public boolean isBucketed(Long accountId) {
+        return bucketedAccountIds.contains(accountId);
+    }
+
+    @Scheduled(fixedDelayString = "${payment.balance-buckets.refresh-interval-ms:10000}")
+    public void refreshBucketedAccounts() {
+        bucketedAccountIds = Set.copyOf(accountRepository.findBucketedAccountIds());
+    }
+
+    /**
+     * Splits the balance of a locked account into the given number of buckets, or adds buckets to an
+     * account that already has fewer. Any balance left on the account row is moved into bucket 0.
+     */
+    public Account enableBuckets(Account account, int bucketCount) {
+        if (bucketCount < 2 || bucketCount > MAX_BUCKETS) {
+            throw new IllegalArgumentException("Bucket count must be between 2 and " + MAX_BUCKETS);
+        }
+        if (bucketCount < account.getBalanceBuckets()) {
+            throw new IllegalArgumentException("Bucket count cannot be decreased");
+        }
+
+        List<AccountBalanceBucket> buckets = new ArrayList<>(accountBalanceBucketRepository.findAllByAccountIdForUpdate(account.getId()));
+        for (int bucket = buckets.size(); bucket < bucketCount; bucket++) {
+            AccountBalanceBucket created = new AccountBalanceBucket();
+            created.setAccountId(account.getId());
+            created.setBucket(bucket);
+            buckets.add(created);
+        }
+        AccountBalanceBucket first = buckets.getFirst();
+        first.setBalance(first.getBalance().add(account.getBalance().toBigDecimal()));
+        account.setBalance(new Money(0, account.getCurrencyUnit()));
+        account.setBalanceBuckets(bucketCount);
+        accountBalanceBucketRepository.saveAll(buckets);
+
+        Set<Long> updated = new HashSet<>(bucketedAccountIds);
+        updated.add(account.getId());
+        bucketedAccountIds = Set.copyOf(updated);
+        log.info("Enabled {} balance buckets for account {}", bucketCount, account.getId());
+        return accountRepository.save(account);
+    }
+
+    /**
+     * Locks the bucket rows that transfers of the current transaction will change: all buckets of
+     * every debited account and one randomly chosen bucket of every account that is only credited.
+     * The rows are locked in ascending (account id, bucket) order, so transactions locking buckets
+     * of several accounts cannot deadlock on them, and the balance of a debited account cannot
+     * change until the transaction ends. Accounts without buckets are ignored.
+     *
+     * @param accounts the accounts of the transfers, locked or read in the current transaction
+     * @param debitedIds the ids of the accounts that will be debited
+     */
+    public void lockBuckets(Map<Long, Account> accounts, Collection<Long> debitedIds) {
+        Map<Long, List<AccountBalanceBucket>> locked = lockedBuckets();
+        for (Account account : new TreeMap<>(accounts).values()) {
+            Long accountId = account.getId();
+            if (account.getBalanceBuckets() == 0 || locked.containsKey(accountId)) {
+                continue;
+            }
+            if (debitedIds.contains(accountId)) {
+                locked.put(accountId, accountBalanceBucketRepository.findAllByAccountIdForUpdate(accountId));
+            } else {
+                locked.put(accountId, List.of(lockRandomBucket(account)));
+            }
+        }
+    }
+
+    /**
+     * Returns the spendable balance of a bucketed account, i.e. the sum of its buckets.
+     */
+    public BigDecimal getAvailableBalance(Account account) {
+        return accountBalanceBucketRepository.sumBalances(account.getId());
+    }
+
+    public BigDecimal getTotalBalance(Account account) {
+        return accountBalanceBucketRepository.findTotalBalance(account.getId());
+    }
+
+    /**
+     * Debits a bucketed account, starting at a random bucket and borrowing from the following ones.
+     *
+     * @return the sum of the account's buckets after the debit
+     */
+    public BigDecimal debit(Account account, BigDecimal amount) {
+        List<AccountBalanceBucket> buckets = lockedBuckets().get(account.getId());
+        if (buckets == null || buckets.size() < account.getBalanceBuckets()) {
+            buckets = accountBalanceBucketRepository.findAllByAccountIdForUpdate(account.getId());
+        }
+        BigDecimal available = buckets.stream()
+                .map(AccountBalanceBucket::getBalance)
+                .reduce(BigDecimal.ZERO, BigDecimal::add);
+        if (available.compareTo(amount) < 0) {
+            log.error("Sender balance is less than the requested amount");
+            throw new InsufficientBalanceException("Sender balance is less than the requested amount");
+        }
+
+        BigDecimal remaining = amount;
+        int start = ThreadLocalRandom.current().nextInt(buckets.size());
+        for (int i = 0; i < buckets.size() && remaining.signum() > 0; i++) {
+            AccountBalanceBucket bucket = buckets.get((start + i) % buckets.size());
+            BigDecimal taken = bucket.getBalance().min(remaining);
+            bucket.setBalance(bucket.getBalance().subtract(taken));
+            remaining = remaining.subtract(taken);
+        }
+        return available.subtract(amount);
+    }
+
+    /**
+     * Credits a randomly chosen bucket of a bucketed account, among the buckets locked by
+     * {@link #lockBuckets(Map, Collection)} if there are any.
+     *
+     * @return the sum of the account's buckets after the credit
+     */
+    public BigDecimal credit(Account account, BigDecimal amount) {
+        List<AccountBalanceBucket> locked = lockedBuckets().get(account.getId());
+        AccountBalanceBucket bucket = locked == null
+                ? lockRandomBucket(account)
+                : locked.get(ThreadLocalRandom.current().nextInt(locked.size()));
+        bucket.setBalance(bucket.getBalance().add(amount));
+        return accountBalanceBucketRepository.sumBalances(account.getId());
+    }
+
+    private AccountBalanceBucket lockRandomBucket(Account account) {
+        int bucketNumber = ThreadLocalRandom.current().nextInt(account.getBalanceBuckets());
+        return accountBalanceBucketRepository.findByIdForUpdate(account.getId(), bucketNumber)
+                .orElseThrow(() -> new IllegalStateException("Balance bucket " + bucketNumber + " of account " + account.getId() + " does not exist"));
+    }
+
+    /**
+     * Returns the buckets locked by the current transaction, keyed by account id. Outside of a
+     * transaction nothing stays locked, so an empty map is returned that is not kept.
+     */
+    @SuppressWarnings("unchecked")
+    private Map<Long, List<AccountBalanceBucket>> lockedBuckets() {
+        Map<Long, List<AccountBalanceBucket>> locked =
+                (Map<Long, List<AccountBalanceBucket>>) TransactionSynchronizationManager.getResource(this);
+        if (locked != null) {
+            return locked;
+        }
+        locked = new HashMap<>();
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.bindResource(this, locked);
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    TransactionSynchronizationManager.unbindResourceIfPossible(BalanceBucketService.this);
+                }
+            });
+        }
+        return locked;
+    }
+}
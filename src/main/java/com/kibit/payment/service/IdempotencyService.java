@@ -0,0 +1,183 @@
+package com.kibit.payment.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.kibit.payment.dto.TransactionRequest;
+import com.kibit.payment.entity.IdempotencyRecord;
+import com.kibit.payment.entity.Transaction;
+import com.kibit.payment.exception.IdempotencyKeyConflictException;
+import com.kibit.payment.repository.IdempotencyRecordRepository;
+import com.kibit.payment.repository.TransactionRepository;
+import jakarta.transaction.Transactional;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.Date;
+import java.util.HexFormat;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Makes transaction requests that carry an {@code Idempotency-Key} header safe to retry.
+ *
+ * The first request for a key is processed normally and its result is stored in the
+ * {@code idempotency_keys} table in the same database transaction as the transfer. Repeated
+ * requests are answered from a bounded, expiring in-memory cache, or from the stored record once
+ * the cache entry is gone, without processing the transfer again. Concurrent duplicates within one
+ * instance wait for the first request to finish; duplicates racing on another instance are stopped
+ * by the primary key of the stored record and answered from it.
+ *
+ * Reusing a key for a request with a different sender, receiver or amount is rejected.
+ */
+@Service
+@Slf4j
+public class IdempotencyService {
+
+    private final TransactionService transactionService;
+    private final TransactionRepository transactionRepository;
+    private final IdempotencyRecordRepository idempotencyRecordRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final Cache<String, StoredResponse> responses;
+    private final ConcurrentMap<String, CompletableFuture<StoredResponse>> inFlight = new ConcurrentHashMap<>();
+    private final Duration waitTimeout;
+    private final Duration retention;
+
+    public IdempotencyService(TransactionService transactionService,
+                              TransactionRepository transactionRepository,
+                              IdempotencyRecordRepository idempotencyRecordRepository,
+                              TransactionTemplate transactionTemplate,
+                              @Value("${payment.idempotency.cache-size:100000}") long cacheSize,
+                              @Value("${payment.idempotency.cache-ttl-minutes:10}") long cacheTtlMinutes,
+                              @Value("${payment.idempotency.wait-timeout-ms:30000}") long waitTimeoutMs,
+                              @Value("${payment.idempotency.retention-hours:24}") long retentionHours) {
+        this.transactionService = transactionService;
+        this.transactionRepository = transactionRepository;
+        this.idempotencyRecordRepository = idempotencyRecordRepository;
+        this.transactionTemplate = transactionTemplate;
+        this.responses = Caffeine.newBuilder()
+                .maximumSize(cacheSize)
+                .expireAfterWrite(Duration.ofMinutes(cacheTtlMinutes))
+                .build();
+        this.waitTimeout = Duration.ofMillis(waitTimeoutMs);
+        this.retention = Duration.ofHours(retentionHours);
+    }
+
+    public Transaction processTransaction(String idempotencyKey, TransactionRequest request) {
+        if (idempotencyKey.isBlank() || idempotencyKey.length() > 100) {
+            throw new IllegalArgumentException("Idempotency key must be between 1 and 100 characters");
+        }
+        String requestHash = hash(request);
+
+        StoredResponse cached = responses.getIfPresent(idempotencyKey);
+        if (cached != null) {
+            return cached.transactionFor(requestHash);
+        }
+
+        CompletableFuture<StoredResponse> pending = new CompletableFuture<>();
+        CompletableFuture<StoredResponse> existing = inFlight.putIfAbsent(idempotencyKey, pending);
+        if (existing != null) {
+            return awaitInFlight(existing).transactionFor(requestHash);
+        }
+
+        try {
+            StoredResponse response = findStored(idempotencyKey)
+                    .orElseGet(() -> execute(idempotencyKey, requestHash, request));
+            responses.put(idempotencyKey, response);
+            pending.complete(response);
+            return response.transactionFor(requestHash);
+        } catch (RuntimeException ex) {
+            pending.completeExceptionally(ex);
+            throw ex;
+        } finally {
+            inFlight.remove(idempotencyKey, pending);
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${payment.idempotency.cleanup-interval-ms:3600000}")
+    @Transactional
+    public void purgeExpired() {
+        int deleted = idempotencyRecordRepository.deleteCreatedBefore(new Date(System.currentTimeMillis() - retention.toMillis()));
+        if (deleted > 0) {
+            log.info("Deleted {} expired idempotency keys", deleted);
+        }
+    }
+
+    private StoredResponse execute(String idempotencyKey, String requestHash, TransactionRequest request) {
+        try {
+            Transaction transaction = transactionTemplate.execute(status -> {
+                Transaction processed = transactionService.processTransaction(request);
+
+                IdempotencyRecord record = new IdempotencyRecord();
+                record.setIdempotencyKey(idempotencyKey);
+                record.setRequestHash(requestHash);
+                record.setTransactionId(processed.getId());
+                idempotencyRecordRepository.saveAndFlush(record);
+                return processed;
+            });
+            return new StoredResponse(requestHash, transaction);
+        } catch (DataIntegrityViolationException ex) {
+            // Another instance stored a result for this key first; its transfer stands and ours was rolled back.
+            return findStored(idempotencyKey).orElseThrow(() -> ex);
+        }
+    }
+
+    private Optional<StoredResponse> findStored(String idempotencyKey) {
+        // Read on the primary: a response stored a moment ago may not have reached the read pool yet.
+        return transactionTemplate.execute(status -> idempotencyRecordRepository.findById(idempotencyKey)
+                .flatMap(record -> transactionRepository.findById(record.getTransactionId())
+                        .map(transaction -> new StoredResponse(record.getRequestHash(), transaction))));
+    }
+
+    private StoredResponse awaitInFlight(CompletableFuture<StoredResponse> inFlightRequest) {
+        try {
+            return inFlightRequest.get(waitTimeout.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (ExecutionException ex) {
+            if (ex.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw new IllegalStateException(ex.getCause());
+        } catch (TimeoutException ex) {
+            throw new IdempotencyKeyConflictException("A request with the same idempotency key is still being processed");
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IdempotencyKeyConflictException("A request with the same idempotency key is still being processed");
+        }
+    }
+
+    private static String hash(TransactionRequest request) {
+        if (request == null || request.getAmount() == null) {
+            return "";
+        }
+        String canonical = request.getSenderAccountId() + "|" + request.getReceiverAccountId() + "|"
+                + request.getAmount().stripTrailingZeros().toPlainString();
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(canonical.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    private record StoredResponse(String requestHash, Transaction transaction) {
+
+        Transaction transactionFor(String requestHash) {
+            if (!this.requestHash.equals(requestHash)) {
+                throw new IdempotencyKeyConflictException("Idempotency key was already used for a different request");
+            }
+            return transaction;
+        }
+    }
+}
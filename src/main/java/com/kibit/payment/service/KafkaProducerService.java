@@ -1,41 +1,115 @@
 package com.kibit.payment.service;
 
 import com.kibit.payment.entity.Account;
+import com.kibit.payment.entity.OutboxEvent;
 import com.kibit.payment.entity.Transaction;
+import com.kibit.payment.event.BalanceChangedEvent;
+import com.kibit.payment.event.CurrencyConversionEvent;
+import com.kibit.payment.event.EventCodec;
+import com.kibit.payment.event.TransactionEvent;
+import com.kibit.payment.repository.OutboxEventRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.support.SendResult;
 import org.springframework.stereotype.Service;
 
 import java.math.BigDecimal;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 
+/**
+ * Produces the Kafka notifications of the payment service.
+ *
+ * Notifications are not sent to Kafka directly: they are stored in the outbox table as part of
+ * the caller's database transaction, so they are only published if that transaction commits and
+ * broker latency never extends the time account rows stay locked. {@link OutboxRelay} publishes
+ * the stored events through {@link #publish(OutboxEvent)}.
+ *
+ * Events are versioned JSON documents encoded by {@link EventCodec} and keyed by account id, so
+ * all events of one account land on the same partition in order. The time it takes to write an
+ * event to the outbox, within the caller's transaction, is recorded per topic in the
+ * {@code payment.kafka.enqueue} timer.
+ */
 @Service
+@Slf4j
 public class KafkaProducerService {
 
-    private static final String TRANSACTION_TOPIC = "transaction_notifications";
+    public static final String TRANSACTION_TOPIC = "transaction_notifications";
     private static final String ACCOUNT_TOPIC = "account_notifications";
     public static final String CURRENCY_TOPIC = "currency_notifications";
 
 
     private final KafkaTemplate<String, String> kafkaTemplate;
+    private final OutboxEventRepository outboxEventRepository;
+    private final EventCodec eventCodec;
+    private final MeterRegistry meterRegistry;
+    private final Map<String, Timer> enqueueTimers = new HashMap<>();
+    // Success and failure timer of each topic, registered on first use.
+    private final Map<String, Timer[]> sendTimers = new ConcurrentHashMap<>();
 
-    public KafkaProducerService(KafkaTemplate<String, String> kafkaTemplate) {
+    public KafkaProducerService(KafkaTemplate<String, String> kafkaTemplate, OutboxEventRepository outboxEventRepository,
+                                EventCodec eventCodec, MeterRegistry meterRegistry) {
         this.kafkaTemplate = kafkaTemplate;
+        this.outboxEventRepository = outboxEventRepository;
+        this.eventCodec = eventCodec;
+        this.meterRegistry = meterRegistry;
+        for (String topic : List.of(TRANSACTION_TOPIC, ACCOUNT_TOPIC, CURRENCY_TOPIC)) {
+            enqueueTimers.put(topic, Timer.builder("payment.kafka.enqueue").tag("topic", topic).register(meterRegistry));
+        }
     }
 
     public void sendTransactionNotification(Transaction transaction) {
-        String message = "Transaction ID: " + transaction.getId() +
-                ", Amount: " + transaction.getAmount() +
-                ", Status: " + transaction.getStatus();
-
-        kafkaTemplate.send(TRANSACTION_TOPIC, message);
+        enqueue(TRANSACTION_TOPIC, transaction.getSenderAccount().getId(), TransactionEvent.from(transaction));
     }
 
     public void modifyBalanceNotification(Account account, BigDecimal oldBalance, Long transactionId) {
-        String message = transactionId + ": Account balance changed to: " + account.getBalance() +
-                ", Old balance: " + oldBalance;
-        kafkaTemplate.send(ACCOUNT_TOPIC, message);
+        modifyBalanceNotification(account, oldBalance, account.getBalance().toBigDecimal(), transactionId);
+    }
+
+    public void modifyBalanceNotification(Account account, BigDecimal oldBalance, BigDecimal newBalance, Long transactionId) {
+        enqueue(ACCOUNT_TOPIC, account.getId(), BalanceChangedEvent.from(account, oldBalance, newBalance, transactionId));
+    }
+
+    public void modifyCurrencyNotification(Transaction transaction, String fromCurrency, String toCurrency) {
+        enqueue(CURRENCY_TOPIC, transaction.getSenderAccount().getId(),
+                CurrencyConversionEvent.from(transaction, fromCurrency, toCurrency));
+    }
+
+    /**
+     * Sends a stored outbox event to Kafka without waiting for the broker's acknowledgement.
+     * The send latency and outcome are recorded in the {@code payment.kafka.send} timer once the
+     * broker acknowledges or rejects the record.
+     */
+    public CompletableFuture<SendResult<String, String>> publish(OutboxEvent event) {
+        long start = System.nanoTime();
+        return kafkaTemplate.send(event.getTopic(), event.getMessageKey(), event.getPayload())
+                .whenComplete((result, ex) -> {
+                    if (ex != null) {
+                        log.warn("Kafka send of outbox event {} to {} failed", event.getId(), event.getTopic(), ex);
+                    }
+                    sendTimers(event.getTopic())[ex == null ? 0 : 1].record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                });
+    }
+
+    private void enqueue(String topic, Long accountId, Object event) {
+        long start = System.nanoTime();
+        OutboxEvent outboxEvent = new OutboxEvent();
+        outboxEvent.setTopic(topic);
+        outboxEvent.setMessageKey(String.valueOf(accountId));
+        outboxEvent.setPayload(eventCodec.encode(event));
+        outboxEventRepository.save(outboxEvent);
+        enqueueTimers.get(topic).record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
     }
 
-    public void modifyCurrencyNotification(String message) {
-        kafkaTemplate.send(CURRENCY_TOPIC, message);
+    private Timer[] sendTimers(String topic) {
+        return sendTimers.computeIfAbsent(topic, key -> new Timer[]{
+                Timer.builder("payment.kafka.send").tag("topic", key).tag("outcome", "success").register(meterRegistry),
+                Timer.builder("payment.kafka.send").tag("topic", key).tag("outcome", "failure").register(meterRegistry)});
     }
 }
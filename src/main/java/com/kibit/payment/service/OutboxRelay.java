@@ -0,0 +1,129 @@
+package com.kibit.payment.service;
+
+import com.kibit.payment.entity.OutboxEvent;
+import com.kibit.payment.repository.OutboxEventRepository;
+import jakarta.transaction.Transactional;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.kafka.support.SendResult;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Background relay that publishes the events stored in the outbox table to Kafka.
+ *
+ * Each run takes unpublished events in batches, oldest first, sends the whole batch
+ * asynchronously, waits for the acknowledgements and marks the acknowledged events as published,
+ * one database transaction per batch. The transaction stays open while the acknowledgements are
+ * awaited, for up to {@code payment.outbox.send-timeout-ms}. Batches are drained back to back as
+ * long as they come back full.
+ *
+ * Runs of all instances are serialized by an advisory lock, so events of the same key are sent in
+ * the order they were written; an instance that finds the lock held skips its turn. Events that
+ * could not be sent stay unpublished and are retried on the next run, together with the later
+ * events of the same key, which are left unpublished as well so they are sent again after it.
+ */
+@Component
+@Slf4j
+public class OutboxRelay {
+
+    private final OutboxEventRepository outboxEventRepository;
+    private final KafkaProducerService kafkaProducerService;
+    private final TransactionTemplate transactionTemplate;
+    private final int batchSize;
+    private final Duration sendTimeout;
+    private final Duration retention;
+
+    public OutboxRelay(OutboxEventRepository outboxEventRepository,
+                       KafkaProducerService kafkaProducerService,
+                       TransactionTemplate transactionTemplate,
+                       @Value("${payment.outbox.batch-size:500}") int batchSize,
+                       @Value("${payment.outbox.send-timeout-ms:10000}") long sendTimeoutMs,
+                       @Value("${payment.outbox.retention-hours:24}") long retentionHours) {
+        this.outboxEventRepository = outboxEventRepository;
+        this.kafkaProducerService = kafkaProducerService;
+        this.transactionTemplate = transactionTemplate;
+        this.batchSize = batchSize;
+        this.sendTimeout = Duration.ofMillis(sendTimeoutMs);
+        this.retention = Duration.ofHours(retentionHours);
+    }
+
+    @Scheduled(fixedDelayString = "${payment.outbox.relay-interval-ms:100}")
+    public void relay() {
+        Integer published;
+        do {
+            published = transactionTemplate.execute(status -> relayBatch());
+        } while (published != null && published == batchSize);
+    }
+
+    /**
+     * Publishes one batch of outbox events.
+     *
+     * @return the number of events published, or 0 if any event of the batch failed or another
+     * instance is relaying, which stops the current drain so the failed events are retried after
+     * the relay interval
+     */
+    int relayBatch() {
+        if (!outboxEventRepository.tryLockRelay()) {
+            return 0;
+        }
+        List<OutboxEvent> events = outboxEventRepository.findUnpublished(batchSize);
+        if (events.isEmpty()) {
+            return 0;
+        }
+
+        List<CompletableFuture<SendResult<String, String>>> sends = new ArrayList<>(events.size());
+        for (OutboxEvent event : events) {
+            sends.add(kafkaProducerService.publish(event));
+        }
+
+        long deadline = System.nanoTime() + sendTimeout.toNanos();
+        List<Long> publishedIds = new ArrayList<>(events.size());
+        // Keys with an event that failed; their later events of the batch must be sent again after it.
+        Set<String> failedKeys = new HashSet<>();
+        for (int i = 0; i < events.size(); i++) {
+            OutboxEvent event = events.get(i);
+            if (event.getMessageKey() != null && failedKeys.contains(event.getMessageKey())) {
+                continue;
+            }
+            try {
+                sends.get(i).get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+                publishedIds.add(event.getId());
+            } catch (ExecutionException | TimeoutException ex) {
+                log.warn("Failed to publish outbox event {} to {}", event.getId(), event.getTopic(), ex);
+                if (event.getMessageKey() != null) {
+                    failedKeys.add(event.getMessageKey());
+                }
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+
+        if (!publishedIds.isEmpty()) {
+            outboxEventRepository.markPublished(publishedIds, new Date());
+        }
+        return publishedIds.size() == events.size() ? publishedIds.size() : 0;
+    }
+
+    @Scheduled(fixedDelayString = "${payment.outbox.cleanup-interval-ms:3600000}")
+    @Transactional
+    public void purgePublished() {
+        int deleted = outboxEventRepository.deletePublishedBefore(new Date(System.currentTimeMillis() - retention.toMillis()));
+        if (deleted > 0) {
+            log.info("Deleted {} published outbox events", deleted);
+        }
+    }
+}
@@ -0,0 +1,156 @@
+package com.kibit.payment.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.sql.PreparedStatement;
+import java.time.YearMonth;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Background job that maintains the monthly partitions of {@code transactions} and
+ * {@code transaction_notifications}.
+ *
+ * Each run creates the partitions for the next {@code payment.partitions.months-ahead} months, so
+ * inserts never find their partition missing. Partitions for months more than
+ * {@code payment.partitions.retention-months} back are detached, exported to
+ * {@code <archive-dir>/<partition>.ndjson.gz} with one JSON object per row, and dropped. The export
+ * is written to a temporary file, synced and renamed, and the partition is only dropped afterwards;
+ * a partition that was detached by a run that did not finish is picked up again by the next one.
+ */
+@Component
+@Slf4j
+public class PartitionMaintenance {
+
+    private static final List<String> PARTITIONED_TABLES = List.of("transactions", "transaction_notifications");
+    private static final DateTimeFormatter PARTITION_MONTH = DateTimeFormatter.ofPattern("yyyyMM");
+    private static final int EXPORT_FETCH_SIZE = 1000;
+    // Detaching locks the parent table; rather than queueing every query behind it, give up and retry on the next run.
+    private static final String DETACH_LOCK_TIMEOUT = "5s";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final int monthsAhead;
+    private final int retentionMonths;
+    private final Path archiveDirectory;
+
+    public PartitionMaintenance(JdbcTemplate jdbcTemplate,
+                                TransactionTemplate transactionTemplate,
+                                @Value("${payment.partitions.months-ahead:3}") int monthsAhead,
+                                @Value("${payment.partitions.retention-months:12}") int retentionMonths,
+                                @Value("${payment.partitions.archive-dir:partition-archive}") String archiveDirectory) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.monthsAhead = monthsAhead;
+        this.retentionMonths = retentionMonths;
+        this.archiveDirectory = Path.of(archiveDirectory);
+    }
+
+    @Scheduled(fixedDelayString = "${payment.partitions.maintenance-interval-ms:3600000}")
+    public void maintain() {
+        YearMonth oldestKept = YearMonth.now().minusMonths(retentionMonths);
+        for (String table : PARTITIONED_TABLES) {
+            try {
+                createFuturePartitions(table);
+                archiveExpiredPartitions(table, oldestKept);
+            } catch (RuntimeException | IOException ex) {
+                log.warn("Partition maintenance of {} failed, retrying on the next run", table, ex);
+            }
+        }
+    }
+
+    private void createFuturePartitions(String table) {
+        Integer created = jdbcTemplate.queryForObject("SELECT create_monthly_partitions(?, CURRENT_DATE, ?)",
+                Integer.class, table, monthsAhead);
+        if (created != null && created > 0) {
+            log.info("Created {} partitions of {}", created, table);
+        }
+    }
+
+    private void archiveExpiredPartitions(String table, YearMonth oldestKept) throws IOException {
+        List<Partition> partitions = jdbcTemplate.query(
+                "SELECT c.relname, i.inhparent IS NOT NULL FROM pg_class c LEFT JOIN pg_inherits i ON i.inhrelid = c.oid " +
+                        "WHERE c.relkind = 'r' AND c.relnamespace = CAST(current_schema() AS regnamespace) AND c.relname ~ ?",
+                (rs, rowNum) -> new Partition(rs.getString(1), rs.getBoolean(2),
+                        YearMonth.parse(rs.getString(1).substring(table.length() + 2), PARTITION_MONTH)),
+                "^" + table + "_p[0-9]{6}$");
+
+        for (Partition partition : partitions) {
+            if (partition.month().isBefore(oldestKept)) {
+                archive(table, partition);
+            }
+        }
+    }
+
+    private void archive(String table, Partition partition) throws IOException {
+        if (partition.attached()) {
+            transactionTemplate.executeWithoutResult(status -> {
+                jdbcTemplate.execute("SET LOCAL lock_timeout = '" + DETACH_LOCK_TIMEOUT + "'");
+                jdbcTemplate.execute("ALTER TABLE " + table + " DETACH PARTITION " + partition.name());
+            });
+        }
+        long rows = export(partition.name());
+        jdbcTemplate.execute("DROP TABLE " + partition.name());
+        log.info("Archived {} rows of partition {} to {}", rows, partition.name(), archiveDirectory);
+    }
+
+    /**
+     * Writes every row of a detached partition to its archive file.
+     *
+     * @return the number of rows written
+     */
+    private long export(String partition) throws IOException {
+        Files.createDirectories(archiveDirectory);
+        Path archive = archiveDirectory.resolve(partition + ".ndjson.gz");
+        Path partial = archiveDirectory.resolve(partition + ".ndjson.gz.partial");
+
+        long[] rows = {0};
+        try (FileOutputStream file = new FileOutputStream(partial.toFile());
+             BufferedOutputStream buffered = new BufferedOutputStream(file, 1 << 16);
+             GZIPOutputStream gzip = new GZIPOutputStream(buffered);
+             Writer writer = new OutputStreamWriter(gzip, StandardCharsets.UTF_8)) {
+            // Streamed with a cursor, which PostgreSQL only uses inside a transaction.
+            transactionTemplate.executeWithoutResult(status -> jdbcTemplate.query(connection -> {
+                PreparedStatement statement = connection.prepareStatement("SELECT CAST(row_to_json(p) AS text) FROM " + partition + " p");
+                statement.setFetchSize(EXPORT_FETCH_SIZE);
+                return statement;
+            }, (RowCallbackHandler) rs -> {
+                try {
+                    writer.write(rs.getString(1));
+                    writer.write('\n');
+                } catch (IOException ex) {
+                    throw new UncheckedIOException(ex);
+                }
+                rows[0]++;
+            }));
+            writer.flush();
+            gzip.finish();
+            buffered.flush();
+            file.getFD().sync();
+        } catch (UncheckedIOException ex) {
+            throw ex.getCause();
+        }
+        Files.move(partial, archive, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        return rows[0];
+    }
+
+    private record Partition(String name, boolean attached, YearMonth month) {
+    }
+}
@@ -0,0 +1,127 @@
+package com.kibit.payment.service;
+
+import com.kibit.payment.datasource.ReadOnlyTransactional;
+import com.kibit.payment.dto.TransactionDirection;
+import com.kibit.payment.dto.TransactionHistoryPage;
+import com.kibit.payment.dto.TransactionResponse;
+import com.kibit.payment.entity.TransactionStatus;
+import com.kibit.payment.exception.AccountNotFoundException;
+import com.kibit.payment.repository.TransactionRepository;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Lists the transfers of an account, newest first, with keyset pagination on
+ * ({@code created_at}, {@code id}).
+ *
+ * Each page continues directly after the last row of the previous one, which is encoded in an
+ * opaque cursor, so a page is a bounded index range scan no matter how deep into the history it
+ * is or how many transfers the account has. Offsets are deliberately not supported.
+ */
+@Service
+public class TransactionHistoryService {
+
+    static final int MAX_PAGE_SIZE = 500;
+
+    // Bounds used when no date range is given; both are within the range of a PostgreSQL timestamp.
+    private static final LocalDateTime EARLIEST = LocalDateTime.of(1970, 1, 1, 0, 0);
+    private static final LocalDateTime LATEST = LocalDateTime.of(9999, 12, 31, 0, 0);
+
+    private final TransactionRepository transactionRepository;
+    private final AccountService accountService;
+
+    public TransactionHistoryService(TransactionRepository transactionRepository, AccountService accountService) {
+        this.transactionRepository = transactionRepository;
+        this.accountService = accountService;
+    }
+
+    /**
+     * Returns one page of an account's transfers.
+     *
+     * @param direction whether sent, received or all transfers are listed
+     * @param from only transfers created at or after this instant are listed; null for no lower bound
+     * @param to only transfers created before this instant are listed; null for no upper bound
+     * @param cursor the {@code nextCursor} of the previous page, or null for the first page
+     * @param limit the page size, capped at {@value #MAX_PAGE_SIZE}
+     */
+    @ReadOnlyTransactional
+    public TransactionHistoryPage getAccountTransactions(Long accountId, TransactionDirection direction, Instant from,
+                                                         Instant to, String cursor, int limit) {
+        if (accountService.findAccounts(List.of(accountId)).isEmpty()) {
+            throw new AccountNotFoundException("Account not found");
+        }
+        int pageSize = Math.clamp(limit, 1, MAX_PAGE_SIZE);
+        LocalDateTime lowerBound = from == null ? EARLIEST : toLocal(from);
+        // Rows strictly before (to, Long.MIN_VALUE) are exactly the rows created before 'to'.
+        Position before = new Position(to == null ? LATEST : toLocal(to), Long.MIN_VALUE);
+        if (cursor != null) {
+            Position position = Position.decode(cursor);
+            if (position.createdAt().isBefore(before.createdAt())) {
+                before = position;
+            }
+        }
+
+        // One row more than requested tells whether there is a next page.
+        List<TransactionRepository.HistoryRow> rows = switch (direction) {
+            case SENT -> transactionRepository.findSentHistory(accountId, lowerBound, before.createdAt(), before.id(), pageSize + 1);
+            case RECEIVED -> transactionRepository.findReceivedHistory(accountId, lowerBound, before.createdAt(), before.id(), pageSize + 1);
+            case ALL -> transactionRepository.findHistory(accountId, lowerBound, before.createdAt(), before.id(), pageSize + 1);
+        };
+        boolean hasNext = rows.size() > pageSize;
+        List<TransactionRepository.HistoryRow> page = hasNext ? rows.subList(0, pageSize) : rows;
+
+        String nextCursor = null;
+        if (hasNext) {
+            TransactionRepository.HistoryRow last = page.getLast();
+            nextCursor = new Position(last.getCreatedAt().toLocalDateTime(), last.getId()).encode();
+        }
+        return new TransactionHistoryPage(page.stream().map(TransactionHistoryService::toResponse).toList(), nextCursor);
+    }
+
+    private static TransactionResponse toResponse(TransactionRepository.HistoryRow row) {
+        return new TransactionResponse(row.getId(),
+                row.getSenderAccountId(),
+                row.getReceiverAccountId(),
+                row.getAmount(),
+                row.getCreditedAmount(),
+                row.getExchangeRate(),
+                TransactionStatus.valueOf(row.getStatus()),
+                row.getFailureReason(),
+                new Date(row.getCreatedAt().getTime()));
+    }
+
+    // created_at is written from java.util.Date in the JVM's time zone, so it is compared in that zone too.
+    private static LocalDateTime toLocal(Instant instant) {
+        return LocalDateTime.ofInstant(instant, ZoneId.systemDefault());
+    }
+
+    /**
+     * A position in the (created_at, id) order. Encoded with the full precision of the column, so
+     * rows created within the same millisecond are neither skipped nor repeated.
+     */
+    private record Position(LocalDateTime createdAt, long id) {
+
+        String encode() {
+            String value = createdAt + "|" + id;
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(value.getBytes(StandardCharsets.UTF_8));
+        }
+
+        static Position decode(String cursor) {
+            try {
+                String value = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+                int separator = value.indexOf('|');
+                return new Position(LocalDateTime.parse(value.substring(0, separator)), Long.parseLong(value.substring(separator + 1)));
+            } catch (IllegalArgumentException | IndexOutOfBoundsException | DateTimeParseException ex) {
+                throw new IllegalArgumentException("Invalid cursor", ex);
+            }
+        }
+    }
+}
@@ -2,17 +2,213 @@ package com.kibit.payment.service;
 
 import com.kibit.payment.entity.TransactionNotification;
 import com.kibit.payment.repository.TransactionNotificationRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.transaction.Transactional;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Persists transaction notifications off the transfer's critical path.
+ *
+ * {@link #submit(TransactionNotification)} does not write anything inside the transfer's database
+ * transaction: once it commits, the notification is put on a bounded in-memory queue. A single writer
+ * thread drains the queue and inserts what it finds in batches of up to
+ * {@code payment.notifications.batch-size}, one database transaction per batch, waiting up to
+ * {@code linger-ms} for a batch to fill.
+ *
+ * Notifications that do not fit into the queue, whose batch fails to insert, or that were still
+ * queued when the application stopped, are restored by {@link #reconcile()} from the completed
+ * transactions that have no notification. A notification whose write was delayed by more than
+ * {@code reconcile-delay-ms} can therefore be written twice.
+ */
 @Service
+@Slf4j
 public class TransactionNotificationService {
+
+    // How long the idle writer waits for a notification before checking whether it is stopping.
+    private static final long IDLE_POLL_MS = 100;
+    private static final long STOP_TIMEOUT_SECONDS = 10;
+
     private final TransactionNotificationRepository transactionNotificationRepository;
+    private final BlockingQueue<TransactionNotification> queue;
+    private final int batchSize;
+    private final long lingerNanos;
+    private final Duration reconcileDelay;
+    private final Duration reconcileLookback;
+    private final Timer flushTimer;
+    private final Counter overflowCounter;
+    private final Counter failedCounter;
+    private final Counter reconciledCounter;
+    private final Thread writer;
+    private volatile boolean running = true;
+    // End of the range checked by the previous reconciliation; null until the first one after startup.
+    private Date reconciledUntil;
 
-    public TransactionNotificationService(TransactionNotificationRepository transactionNotificationRepository) {
+    public TransactionNotificationService(TransactionNotificationRepository transactionNotificationRepository,
+                                          MeterRegistry meterRegistry,
+                                          @Value("${payment.notifications.queue-capacity:10000}") int queueCapacity,
+                                          @Value("${payment.notifications.batch-size:500}") int batchSize,
+                                          @Value("${payment.notifications.linger-ms:5}") long lingerMs,
+                                          @Value("${payment.notifications.reconcile-delay-ms:60000}") long reconcileDelayMs,
+                                          @Value("${payment.notifications.reconcile-lookback-hours:24}") long reconcileLookbackHours) {
         this.transactionNotificationRepository = transactionNotificationRepository;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.batchSize = batchSize;
+        this.lingerNanos = TimeUnit.MILLISECONDS.toNanos(lingerMs);
+        this.reconcileDelay = Duration.ofMillis(reconcileDelayMs);
+        this.reconcileLookback = Duration.ofHours(reconcileLookbackHours);
+        this.flushTimer = meterRegistry.timer("payment.notifications.flush");
+        this.overflowCounter = meterRegistry.counter("payment.notifications.queue.overflow");
+        this.failedCounter = meterRegistry.counter("payment.notifications.write.failed");
+        this.reconciledCounter = meterRegistry.counter("payment.notifications.reconciled");
+        Gauge.builder("payment.notifications.queue.size", queue, BlockingQueue::size)
+                .register(meterRegistry);
+        this.writer = Thread.ofPlatform().name("notification-writer").daemon().unstarted(this::drain);
+    }
+
+    @PostConstruct
+    public void start() {
+        writer.start();
+    }
+
+    /**
+     * Stops the writer after it has written what is queued.
+     */
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        running = false;
+        writer.join(TimeUnit.SECONDS.toMillis(STOP_TIMEOUT_SECONDS));
+    }
+
+    /**
+     * Queues a notification to be written once the current transaction has committed, or right away
+     * outside of a transaction. Nothing is queued if the transaction rolls back.
+     */
+    public void submit(TransactionNotification transactionNotification) {
+        submitAll(List.of(transactionNotification));
+    }
+
+    /**
+     * Queues notifications like {@link #submit(TransactionNotification)}.
+     */
+    public void submitAll(List<TransactionNotification> transactionNotifications) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    enqueue(transactionNotifications);
+                }
+            });
+        } else {
+            enqueue(transactionNotifications);
+        }
+    }
+
+    /**
+     * Writes the notifications of completed transactions that have none, e.g. because the queue was
+     * full or the application stopped before writing them. Transactions are only considered once
+     * they completed longer than the reconcile delay ago, so notifications still on their way through
+     * the queue are not written twice; this holds for asynchronously submitted transactions too,
+     * which can complete long after they were created. The first run after startup goes back the full lookback; later runs
+     * continue where the previous one ended. Runs of all instances are serialized by an advisory
+     * lock; an instance that finds it held skips its turn.
+     */
+    @Scheduled(fixedDelayString = "${payment.notifications.reconcile-interval-ms:60000}")
+    @Transactional
+    public void reconcile() {
+        if (!transactionNotificationRepository.tryLockReconciliation()) {
+            return;
+        }
+        Date now = new Date();
+        Date before = new Date(now.getTime() - reconcileDelay.toMillis());
+        Date since = reconciledUntil == null
+                ? new Date(before.getTime() - reconcileLookback.toMillis())
+                // Transactions completed just before the previous run's bound may have committed after it.
+                : new Date(reconciledUntil.getTime() - reconcileDelay.toMillis());
+        int inserted = transactionNotificationRepository.insertMissing(since, before, now);
+        reconciledUntil = before;
+        if (inserted > 0) {
+            reconciledCounter.increment(inserted);
+            log.warn("Wrote {} missing transaction notifications", inserted);
+        }
+    }
+
+    private void enqueue(List<TransactionNotification> transactionNotifications) {
+        for (TransactionNotification transactionNotification : transactionNotifications) {
+            if (!queue.offer(transactionNotification)) {
+                overflowCounter.increment();
+                log.warn("Notification queue is full, the notification of transaction {} is left for reconciliation",
+                        transactionNotification.getTransaction().getId());
+            }
+        }
+    }
+
+    private void drain() {
+        while (running || !queue.isEmpty()) {
+            List<TransactionNotification> batch = new ArrayList<>(batchSize);
+            try {
+                fill(batch);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                running = false;
+            }
+            write(batch);
+        }
+    }
+
+    /**
+     * Waits briefly for a first notification, then takes more until the batch is full or the linger
+     * time has passed. Once stopping, only takes what is already queued.
+     */
+    private void fill(List<TransactionNotification> batch) throws InterruptedException {
+        TransactionNotification first = running ? queue.poll(IDLE_POLL_MS, TimeUnit.MILLISECONDS) : queue.poll();
+        if (first == null) {
+            return;
+        }
+        batch.add(first);
+        long deadline = System.nanoTime() + lingerNanos;
+        while (batch.size() < batchSize) {
+            queue.drainTo(batch, batchSize - batch.size());
+            long remaining = deadline - System.nanoTime();
+            if (batch.size() >= batchSize || remaining <= 0 || !running) {
+                break;
+            }
+            TransactionNotification next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+            if (next == null) {
+                break;
+            }
+            batch.add(next);
+        }
     }
 
-    public TransactionNotification save(TransactionNotification transactionNotification) {
-        return transactionNotificationRepository.save(transactionNotification);
+    private void write(List<TransactionNotification> batch) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        long start = System.nanoTime();
+        try {
+            transactionNotificationRepository.saveAll(batch);
+            flushTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        } catch (RuntimeException ex) {
+            failedCounter.increment(batch.size());
+            log.error("Failed to write {} transaction notifications, they are left for reconciliation", batch.size(), ex);
+        }
     }
 }
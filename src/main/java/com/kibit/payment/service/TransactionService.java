@@ -1,18 +1,35 @@
 package com.kibit.payment.service;
 
+import com.kibit.payment.datasource.ReadOnlyTransactional;
+import com.kibit.payment.dto.BatchMode;
+import com.kibit.payment.dto.BatchTransactionResult;
 import com.kibit.payment.dto.TransactionRequest;
+import com.kibit.payment.dto.TransactionResponse;
 import com.kibit.payment.entity.Account;
 import com.kibit.payment.entity.Transaction;
 import com.kibit.payment.entity.TransactionNotification;
 import com.kibit.payment.entity.TransactionStatus;
 import com.kibit.payment.exception.AccountNotFoundException;
+import com.kibit.payment.exception.ExchangeRateUnavailableException;
 import com.kibit.payment.exception.InsufficientBalanceException;
+import com.kibit.payment.exception.TransactionNotFoundException;
+import com.kibit.payment.exchange.CurrencyConversion;
+import com.kibit.payment.exchange.ExchangeRateProvider;
+import com.kibit.payment.money.Money;
 import com.kibit.payment.repository.TransactionRepository;
 import jakarta.transaction.Transactional;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 
 import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 
 /**
@@ -25,14 +42,21 @@ import java.math.BigDecimal;
  * - TransactionRepository for persisting and retrieving transaction data.
  * - AccountService for retrieving account information and updating account balances.
  * - KafkaProducerService for producing messages to Kafka topics.
- * - TransactionNotificationService for creating and saving transaction notifications.
+ * - TransactionNotificationService for writing transaction notifications after commit.
  *
  * Transaction processing steps include:
- * 1. Validating the transaction request.
- * 2. Ensuring sender has sufficient balance.
- * 3. Handling currency conversions if sender and receiver's account currencies differ.
+ * 1. Validating the transaction request. Amounts with more than {@link Money#SCALE} decimals are
+ *    rejected, and balances and amounts are compared and converted as {@link Money}.
+ * 2. Locking both accounts in ascending id order and ensuring sender has sufficient balance
+ *    on the locked, up-to-date rows.
+ * 3. Converting the amount into the receiver's currency if the account currencies differ. The sender
+ *    is debited the requested amount and the receiver is credited the converted amount.
  * 4. Creating and saving transaction records.
  * 5. Performing post-transaction actions such as updating account balances and producing notifications.
+ *
+ * Transfers can also be submitted asynchronously: {@link #submitTransaction(TransactionRequest)}
+ * stores them as pending, and {@link AsyncTransactionProcessor} later runs steps 2 to 5 through
+ * {@link #executePendingTransaction(Long)}.
  */
 @Service
 @Transactional
@@ -40,10 +64,14 @@ import java.math.BigDecimal;
 public class TransactionService {
 
 
+    private static final int MAX_BATCH_SIZE = 1000;
+
     private final TransactionRepository transactionRepository;
     private final AccountService accountService;
     private final KafkaProducerService kafkaProducerService;
     private final TransactionNotificationService transactionNotificationService;
+    private final ExchangeRateProvider exchangeRateProvider;
+    private final TransferMetrics transferMetrics;
 
 
 
@@ -54,40 +82,264 @@ public class TransactionService {
      * @param accountService the service for managing account operations
      * @param kafkaProducerService the service for producing Kafka messages
      * @param transactionNotificationService the service for managing transaction notifications
+     * @param exchangeRateProvider the provider of the rates used for cross-currency transfers
+     * @param transferMetrics the latency metrics of transfers and their stages
      */
-    public TransactionService(TransactionRepository transactionRepository, AccountService accountService, KafkaProducerService kafkaProducerService, TransactionNotificationService transactionNotificationService) {
+    public TransactionService(TransactionRepository transactionRepository, AccountService accountService, KafkaProducerService kafkaProducerService,
+                              TransactionNotificationService transactionNotificationService, ExchangeRateProvider exchangeRateProvider,
+                              TransferMetrics transferMetrics) {
         this.transactionRepository = transactionRepository;
         this.accountService = accountService;
         this.kafkaProducerService = kafkaProducerService;
         this.transactionNotificationService = transactionNotificationService;
+        this.exchangeRateProvider = exchangeRateProvider;
+        this.transferMetrics = transferMetrics;
     }
 
     public Transaction processTransaction(TransactionRequest request) {
+        long start = System.nanoTime();
+        try {
+            validateRequest(request);
+            Transaction transaction = executeTransfer(request, null, start);
+            transferMetrics.recordTransfer(start, null);
+            return transaction;
+        } catch (RuntimeException ex) {
+            transferMetrics.recordTransfer(start, ex);
+            throw ex;
+        }
+    }
+
+    @ReadOnlyTransactional
+    public TransactionResponse getTransactionById(Long transactionId) {
+        return transactionRepository.findResponseById(transactionId)
+                .orElseThrow(() -> new TransactionNotFoundException("Transaction not found"));
+    }
+
+    /**
+     * Validates a transfer and stores it as {@link TransactionStatus#PENDING} without touching any
+     * balance. The transfer is executed later by {@link #executePendingTransaction(Long)}.
+     * Requests that can already be seen to fail, because an account does not exist or the sender's
+     * current balance is too low, are rejected right away.
+     *
+     * @param request the transfer to submit
+     * @return the stored pending transaction
+     */
+    public Transaction submitTransaction(TransactionRequest request) {
         validateRequest(request);
 
-        Account sender = accountService.getAccountById(request.getSenderAccountId());
-        if (sender == null) {
-            log.error("Sender account does not exist");
-            throw new AccountNotFoundException("Sender account does not exist");
+        Map<Long, Account> accounts = accountService.findAccounts(
+                List.of(request.getSenderAccountId(), request.getReceiverAccountId()));
+        Account sender = getRequiredAccount(accounts, request.getSenderAccountId(), "Sender");
+        Account receiver = getRequiredAccount(accounts, request.getReceiverAccountId(), "Receiver");
+        Money amount = Money.of(request.getAmount(), sender.getCurrencyUnit());
+        validateSenderBalance(accountService.getAvailableBalance(sender), amount);
+
+        Transaction transaction = new Transaction();
+        transaction.setSenderAccount(sender);
+        transaction.setReceiverAccount(receiver);
+        transaction.setAmount(amount.toBigDecimal());
+        transaction.setStatus(TransactionStatus.PENDING);
+        return transactionRepository.save(transaction);
+    }
+
+    /**
+     * Executes a transfer stored by {@link #submitTransaction(TransactionRequest)} and marks it
+     * {@link TransactionStatus#COMPLETED}. The transaction row is locked first, so a transfer that
+     * is picked up more than once is only executed once; transactions that are no longer pending
+     * are skipped.
+     * If the transfer cannot be executed, the exception rolls back the current transaction and the
+     * caller records the failure with {@link #failPendingTransaction(Long, String)}.
+     *
+     * @param transactionId the id of the pending transaction
+     */
+    public void executePendingTransaction(Long transactionId) {
+        TransactionRepository.TransferDetails details = transactionRepository.findTransferDetailsForUpdate(transactionId).orElse(null);
+        if (details == null || !TransactionStatus.PENDING.name().equals(details.getStatus())) {
+            return;
         }
 
-        Account receiver = accountService.getAccountById(request.getReceiverAccountId());
-        if (receiver == null) {
-            log.error("Receiver account does not exist");
-            throw new AccountNotFoundException("Receiver account does not exist");
+        long start = System.nanoTime();
+        TransactionRequest request = new TransactionRequest();
+        request.setSenderAccountId(details.getSenderAccountId());
+        request.setReceiverAccountId(details.getReceiverAccountId());
+        request.setAmount(details.getAmount());
+        try {
+            executeTransfer(request, transactionId, start);
+            transferMetrics.recordTransfer(start, null);
+        } catch (RuntimeException ex) {
+            transferMetrics.recordTransfer(start, ex);
+            throw ex;
         }
+    }
 
+    /**
+     * Marks a pending transaction as {@link TransactionStatus#FAILED}.
+     */
+    public void failPendingTransaction(Long transactionId, String reason) {
+        transactionRepository.markPendingFailed(transactionId, reason);
+    }
+
+    /**
+     * Marks the transactions still pending that were submitted before the given time as
+     * {@link TransactionStatus#FAILED}.
+     *
+     * @return the number of transactions marked
+     */
+    public int failPendingTransactionsCreatedBefore(Date createdBefore, String reason) {
+        return transactionRepository.markPendingFailedCreatedBefore(createdBefore, reason);
+    }
+
+    /**
+     * Executes a validated transfer, recording the time spent in each {@link TransferMetrics.Stage}.
+     *
+     * @param stageStart when the first stage started, as returned by {@link System#nanoTime()}
+     */
+    private Transaction executeTransfer(TransactionRequest request, Long pendingTransactionId, long stageStart) {
+        transferMetrics.recordCommit();
+        Map<Long, Account> accounts = accountService.lockAccounts(
+                List.of(request.getSenderAccountId(), request.getReceiverAccountId()));
+        accountService.lockForTransfers(accounts, List.of(request.getSenderAccountId()));
+        // A pending transaction is only loaded now, so it references the locked, up-to-date accounts.
+        Transaction transaction = pendingTransactionId == null
+                ? new Transaction()
+                : transactionRepository.findById(pendingTransactionId)
+                        .orElseThrow(() -> new TransactionNotFoundException("Transaction not found"));
+
+        Account sender = getRequiredAccount(accounts, request.getSenderAccountId(), "Sender");
+        Account receiver = getRequiredAccount(accounts, request.getReceiverAccountId(), "Receiver");
+        stageStart = transferMetrics.record(TransferMetrics.Stage.LOCK, stageStart);
+
+        Money amount = Money.of(request.getAmount(), sender.getCurrencyUnit());
+        validateSenderBalance(accountService.getAvailableBalance(sender), amount);
+        stageStart = transferMetrics.record(TransferMetrics.Stage.BALANCE_CHECK, stageStart);
+
+        CurrencyConversion conversion = exchangeRateProvider.convert(amount, receiver.getCurrency());
+        stageStart = transferMetrics.record(TransferMetrics.Stage.CONVERSION, stageStart);
 
-        validateSenderBalance(sender, request.getAmount());
+        completeTransaction(transaction, sender, receiver, amount, conversion);
+        transaction = transactionRepository.save(transaction);
+        submitTransactionNotification(transaction, receiver.getUser().getEmail());
+        stageStart = transferMetrics.record(TransferMetrics.Stage.PERSIST, stageStart);
 
-        String currencyChanged = handleCurrencyConversion(sender, receiver, request);
+        accountService.transfer(sender, receiver, amount, conversion.convertedAmount(), transaction.getId());
+        stageStart = transferMetrics.record(TransferMetrics.Stage.BALANCE_UPDATE, stageStart);
 
-        Transaction transaction = createAndSaveTransaction(sender, receiver, request.getAmount());
-        handlePostTransactionActions(transaction, sender, receiver, request.getAmount(), currencyChanged);
+        publishTransferNotifications(transaction, sender, receiver);
+        transferMetrics.record(TransferMetrics.Stage.NOTIFICATION, stageStart);
 
         return transaction;
     }
 
+    /**
+     * Processes a batch of transfers inside a single database transaction.
+     * All requests are validated up front and every account involved is locked once, in
+     * ascending id order, followed by the balance buckets the transfers will change. The transfers are then planned in submission order against the
+     * running balances of the locked accounts, and the resulting transactions are written with
+     * batched inserts. Their notifications are written after commit.
+     *
+     * In {@link BatchMode#ALL_OR_NOTHING} mode nothing is written if any transfer fails.
+     * In {@link BatchMode#BEST_EFFORT} mode failed transfers are skipped and the rest are applied.
+     *
+     * @param requests the transfers to execute
+     * @param mode how failures of individual transfers affect the rest of the batch
+     * @return one result per request, in the order of the requests
+     */
+    public List<BatchTransactionResult> processBatch(List<TransactionRequest> requests, BatchMode mode) {
+        if (requests == null || requests.isEmpty()) {
+            log.error("Transaction batch cannot be empty");
+            throw new IllegalArgumentException("Transaction batch cannot be empty");
+        }
+        if (requests.size() > MAX_BATCH_SIZE) {
+            log.error("Transaction batch cannot contain more than {} transactions", MAX_BATCH_SIZE);
+            throw new IllegalArgumentException("Transaction batch cannot contain more than " + MAX_BATCH_SIZE + " transactions");
+        }
+
+        BatchTransactionResult[] results = new BatchTransactionResult[requests.size()];
+        Set<Long> accountIds = new HashSet<>();
+        Set<Long> senderIds = new HashSet<>();
+        for (int i = 0; i < requests.size(); i++) {
+            TransactionRequest request = requests.get(i);
+            try {
+                validateRequest(request);
+                accountIds.add(request.getSenderAccountId());
+                accountIds.add(request.getReceiverAccountId());
+                senderIds.add(request.getSenderAccountId());
+            } catch (IllegalArgumentException ex) {
+                results[i] = BatchTransactionResult.failed(i, ex.getMessage());
+            }
+        }
+
+        Map<Long, Account> accounts = accountIds.isEmpty() ? Map.of() : accountService.lockAccounts(accountIds);
+        accountService.lockForTransfers(accounts, senderIds);
+        Map<Long, Money> balances = new HashMap<>();
+        accounts.forEach((id, account) -> balances.put(id, accountService.getAvailableBalance(account)));
+
+        List<PlannedTransfer> planned = new ArrayList<>();
+        for (int i = 0; i < requests.size(); i++) {
+            if (results[i] != null) {
+                continue;
+            }
+            try {
+                planned.add(planTransfer(i, requests.get(i), accounts, balances));
+            } catch (AccountNotFoundException | InsufficientBalanceException | ExchangeRateUnavailableException ex) {
+                results[i] = BatchTransactionResult.failed(i, ex.getMessage());
+            }
+        }
+
+        if (mode == BatchMode.ALL_OR_NOTHING && planned.size() < requests.size()) {
+            for (PlannedTransfer transfer : planned) {
+                results[transfer.index()] = BatchTransactionResult.failed(transfer.index(), "Transaction not applied because another transaction of the batch failed");
+            }
+            return Arrays.asList(results);
+        }
+
+        List<Transaction> transactions = new ArrayList<>(planned.size());
+        for (PlannedTransfer transfer : planned) {
+            Transaction transaction = new Transaction();
+            completeTransaction(transaction, transfer.sender(), transfer.receiver(), transfer.amount(), transfer.conversion());
+            transactions.add(transaction);
+        }
+        transactions = transactionRepository.saveAll(transactions);
+
+        List<TransactionNotification> notifications = new ArrayList<>(planned.size());
+        for (int i = 0; i < planned.size(); i++) {
+            notifications.add(createTransactionNotification(transactions.get(i), planned.get(i).receiver().getUser().getEmail()));
+        }
+        transactionNotificationService.submitAll(notifications);
+
+        for (int i = 0; i < planned.size(); i++) {
+            PlannedTransfer transfer = planned.get(i);
+            Transaction transaction = transactions.get(i);
+            applyTransfer(transaction, transfer);
+            results[transfer.index()] = BatchTransactionResult.completed(transfer.index(), transaction.getId());
+        }
+
+        return Arrays.asList(results);
+    }
+
+    private PlannedTransfer planTransfer(int index, TransactionRequest request, Map<Long, Account> accounts, Map<Long, Money> balances) {
+        Account sender = getRequiredAccount(accounts, request.getSenderAccountId(), "Sender");
+        Account receiver = getRequiredAccount(accounts, request.getReceiverAccountId(), "Receiver");
+
+        Money amount = Money.of(request.getAmount(), sender.getCurrencyUnit());
+        validateSenderBalance(balances.get(sender.getId()), amount);
+
+        CurrencyConversion conversion = exchangeRateProvider.convert(amount, receiver.getCurrency());
+        balances.merge(sender.getId(), amount, Money::minus);
+        balances.merge(receiver.getId(), conversion.convertedAmount(), Money::plus);
+
+        return new PlannedTransfer(index, sender, receiver, amount, conversion);
+    }
+
+    private Account getRequiredAccount(Map<Long, Account> accounts, Long accountId, String role) {
+        Account account = accounts.get(accountId);
+        if (account == null) {
+            log.error("{} account does not exist", role);
+            throw new AccountNotFoundException(role + " account does not exist");
+        }
+        return account;
+    }
+
     private void validateRequest(TransactionRequest request) {
         if (request == null) {
             log.error("Transaction request cannot be null");
@@ -101,64 +353,59 @@ public class TransactionService {
             log.error("Transaction amount must be greater than zero");
             throw new IllegalArgumentException("Transaction amount must be greater than zero");
         }
+        if (!Money.isRepresentable(request.getAmount())) {
+            log.error("Transaction amount has more than {} decimals", Money.SCALE);
+            throw new IllegalArgumentException("Transaction amount cannot have more than " + Money.SCALE + " decimals");
+        }
         if (request.getSenderAccountId().equals(request.getReceiverAccountId())) {
             log.error("Sender and receiver cannot be the same");
             throw new IllegalArgumentException("Sender and receiver cannot be the same");
         }
     }
 
-    private void validateSenderBalance(Account sender, BigDecimal amount) {
-        if (sender.getBalance().compareTo(amount) < 0) {
+    private void validateSenderBalance(Money senderBalance, Money amount) {
+        if (senderBalance.isLessThan(amount)) {
             log.error("Sender balance is less than the requested amount");
             throw new InsufficientBalanceException("Sender balance is less than the requested amount");
         }
     }
 
-    private String handleCurrencyConversion(Account sender, Account receiver, TransactionRequest request) {
-        if (!sender.getCurrency().equalsIgnoreCase(receiver.getCurrency())) {
-            return convertCurrencies(request, sender.getCurrency(), receiver.getCurrency());
-        }
-        return "";
+    private void completeTransaction(Transaction transaction, Account sender, Account receiver, Money amount, CurrencyConversion conversion) {
+        transaction.setSenderAccount(sender);
+        transaction.setReceiverAccount(receiver);
+        transaction.setAmount(amount.toBigDecimal());
+        transaction.setCreditedAmount(conversion.convertedAmount().toBigDecimal());
+        transaction.setExchangeRate(conversion.rate());
+        transaction.setStatus(TransactionStatus.COMPLETED);
+        transaction.setCompletedAt(new Date());
     }
 
-    private Transaction createAndSaveTransaction(Account sender, Account receiver, BigDecimal amount) {
-        Transaction transaction = createTransaction(sender, receiver, amount);
-        return transactionRepository.save(transaction);
+    private void applyTransfer(Transaction transaction, PlannedTransfer transfer) {
+        accountService.transfer(transfer.sender(), transfer.receiver(), transfer.amount(), transfer.conversion().convertedAmount(),
+                transaction.getId());
+        publishTransferNotifications(transaction, transfer.sender(), transfer.receiver());
     }
 
-    private void handlePostTransactionActions(Transaction transaction, Account sender, Account receiver, BigDecimal amount, String currencyChanged) {
-        saveTransactionNotification(transaction, receiver.getUser().getEmail());
-
-        accountService.updateBalance(sender.getId(), sender.getBalance().subtract(amount), transaction.getId());
-        accountService.updateBalance(receiver.getId(), receiver.getBalance().add(amount), transaction.getId());
-
+    private void publishTransferNotifications(Transaction transaction, Account sender, Account receiver) {
         kafkaProducerService.sendTransactionNotification(transaction);
 
-        if (!currencyChanged.isEmpty()) {
-            kafkaProducerService.modifyCurrencyNotification(transaction.getId() + currencyChanged);
+        if (!sender.getCurrency().equalsIgnoreCase(receiver.getCurrency())) {
+            kafkaProducerService.modifyCurrencyNotification(transaction, sender.getCurrency(), receiver.getCurrency());
         }
     }
 
-
-    private Transaction createTransaction(Account sender, Account receiver, BigDecimal amount) {
-        Transaction transaction = new Transaction();
-        transaction.setSenderAccount(sender);
-        transaction.setReceiverAccount(receiver);
-        transaction.setAmount(amount);
-        transaction.setStatus(TransactionStatus.COMPLETED);
-        return transaction;
+    private void submitTransactionNotification(Transaction transaction, String receiverEmail) {
+        transactionNotificationService.submit(createTransactionNotification(transaction, receiverEmail));
     }
 
-    private void saveTransactionNotification(Transaction transaction, String receiverEmail) {
+    private TransactionNotification createTransactionNotification(Transaction transaction, String receiverEmail) {
         TransactionNotification transactionNotification = new TransactionNotification();
         transactionNotification.setTransaction(transaction);
         transactionNotification.setRecipientEmail(receiverEmail);
         transactionNotification.setMessage("Transaction ID: " + transaction.getId() + " has been completed");
-        transactionNotificationService.save(transactionNotification);
+        return transactionNotification;
     }
 
-    private String convertCurrencies(TransactionRequest request, String oldCurrency, String newCurrency) {
-        request.setAmount(request.getAmount().multiply(BigDecimal.valueOf(1.1)));
-        return ": Amount converted from " + oldCurrency + " to " + newCurrency;
+    private record PlannedTransfer(int index, Account sender, Account receiver, Money amount, CurrencyConversion conversion) {
     }
 }
@@ -0,0 +1,143 @@
+package com.kibit.payment.service;
+
+import com.kibit.payment.exception.AccountNotFoundException;
+import com.kibit.payment.exception.ExchangeRateUnavailableException;
+import com.kibit.payment.exception.InsufficientBalanceException;
+import com.kibit.payment.exception.TransactionNotFoundException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Latency of single transfers and of their stages.
+ *
+ * <ul>
+ *     <li>{@code payment.transfer}, tagged with the {@code outcome}: the whole transfer up to, not
+ *     including, the commit</li>
+ *     <li>{@code payment.transfer.stage}, tagged with the {@code stage}: the time spent in each
+ *     {@link Stage}</li>
+ *     <li>{@code payment.transfer.errors}, tagged with the {@code outcome}: transfers that failed</li>
+ * </ul>
+ *
+ * Every meter is registered up front, so recording on the transfer path is a clock read and a
+ * lookup by enum ordinal; stages are timed back to back, each ending where the next one starts.
+ */
+@Component
+public class TransferMetrics {
+
+    public enum Stage {
+        /** Locking and loading the accounts, waiting for other transfers of the same accounts. */
+        LOCK,
+        /** Reading the sender's spendable balance. */
+        BALANCE_CHECK,
+        /** Looking up the exchange rate. */
+        CONVERSION,
+        /** Persisting the transaction and queueing its notification; the rows are flushed on commit. */
+        PERSIST,
+        /** Changing the balances, including the balance notifications written to the outbox. */
+        BALANCE_UPDATE,
+        /** Writing the transaction notifications to the outbox. */
+        NOTIFICATION,
+        /** Flushing pending writes and committing the database transaction. */
+        COMMIT;
+
+        private final String tag = name().toLowerCase();
+    }
+
+    public enum Outcome {
+        COMPLETED, INVALID_REQUEST, ACCOUNT_NOT_FOUND, TRANSACTION_NOT_FOUND, INSUFFICIENT_BALANCE,
+        EXCHANGE_RATE_UNAVAILABLE, ERROR;
+
+        private final String tag = name().toLowerCase();
+
+        static Outcome of(Throwable failure) {
+            return switch (failure) {
+                case null -> COMPLETED;
+                case InsufficientBalanceException ex -> INSUFFICIENT_BALANCE;
+                case AccountNotFoundException ex -> ACCOUNT_NOT_FOUND;
+                case TransactionNotFoundException ex -> TRANSACTION_NOT_FOUND;
+                case ExchangeRateUnavailableException ex -> EXCHANGE_RATE_UNAVAILABLE;
+                case IllegalArgumentException ex -> INVALID_REQUEST;
+                default -> ERROR;
+            };
+        }
+    }
+
+    private final Map<Stage, Timer> stageTimers = new EnumMap<>(Stage.class);
+    private final Map<Outcome, Timer> transferTimers = new EnumMap<>(Outcome.class);
+    private final Map<Outcome, Counter> errorCounters = new EnumMap<>(Outcome.class);
+
+    public TransferMetrics(MeterRegistry meterRegistry) {
+        for (Stage stage : Stage.values()) {
+            stageTimers.put(stage, Timer.builder("payment.transfer.stage")
+                    .tag("stage", stage.tag)
+                    .register(meterRegistry));
+        }
+        for (Outcome outcome : Outcome.values()) {
+            transferTimers.put(outcome, Timer.builder("payment.transfer")
+                    .tag("outcome", outcome.tag)
+                    .register(meterRegistry));
+            if (outcome != Outcome.COMPLETED) {
+                errorCounters.put(outcome, meterRegistry.counter("payment.transfer.errors", "outcome", outcome.tag));
+            }
+        }
+    }
+
+    /**
+     * Records a stage that started at {@code startNanos} and ends now.
+     *
+     * @return now, as the start of the next stage
+     */
+    public long record(Stage stage, long startNanos) {
+        long now = System.nanoTime();
+        stageTimers.get(stage).record(now - startNanos, TimeUnit.NANOSECONDS);
+        return now;
+    }
+
+    /**
+     * Records a transfer that started at {@code startNanos} and ends now.
+     *
+     * @param failure the exception the transfer failed with, or null if it completed
+     */
+    public void recordTransfer(long startNanos, Throwable failure) {
+        Outcome outcome = Outcome.of(failure);
+        transferTimers.get(outcome).record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+        if (outcome != Outcome.COMPLETED) {
+            errorCounters.get(outcome).increment();
+        }
+    }
+
+    /**
+     * Records the {@link Stage#COMMIT} stage of the current transaction, from when it starts to
+     * commit until it has completed. Does nothing outside of a transaction.
+     */
+    public void recordCommit() {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            private boolean committing;
+            private long start;
+
+            @Override
+            public void beforeCommit(boolean readOnly) {
+                committing = true;
+                start = System.nanoTime();
+            }
+
+            @Override
+            public void afterCompletion(int status) {
+                if (committing) {
+                    record(Stage.COMMIT, start);
+                }
+            }
+        });
+    }
+}
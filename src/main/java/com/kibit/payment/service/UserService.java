@@ -1,16 +1,25 @@
 package com.kibit.payment.service;
 
+import com.kibit.payment.datasource.ReadOnlyTransactional;
+import com.kibit.payment.dto.UserPage;
+import com.kibit.payment.dto.UserResponse;
 import com.kibit.payment.entity.User;
 import com.kibit.payment.exception.UserNotFoundException;
 import com.kibit.payment.repository.UserRepository;
+import jakarta.transaction.Transactional;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
 
 import java.util.List;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
 @Service
 public class UserService {
 
 
+    static final int MAX_PAGE_SIZE = 1000;
+
     private final UserRepository userRepository;
 
     public UserService(UserRepository userRepository) {
@@ -24,6 +33,7 @@ public class UserService {
         return userRepository.save(user);
     }
 
+    @Transactional
     public User updateUser(Long id, String name, String email) {
         User user = userRepository.findById(id)
                 .orElseThrow(() -> new UserNotFoundException("User not found"));
@@ -33,11 +43,39 @@ public class UserService {
         return userRepository.save(user);
     }
 
-    public User getUserById(Long id) {
-        return userRepository.getReferenceById(id);
+    @ReadOnlyTransactional
+    public UserResponse getUserById(Long id) {
+        return userRepository.findById(id)
+                .map(UserResponse::from)
+                .orElseThrow(() -> new UserNotFoundException("User not found"));
+    }
+
+    /**
+     * Returns up to {@code limit} users with an id greater than {@code afterId}, in id order.
+     *
+     * @param afterId the {@code nextCursor} of the previous page, or null for the first page
+     * @param limit the page size, capped at {@value #MAX_PAGE_SIZE}
+     */
+    @ReadOnlyTransactional
+    public UserPage getUsers(Long afterId, int limit) {
+        int pageSize = Math.clamp(limit, 1, MAX_PAGE_SIZE);
+        // One row more than requested tells whether there is a next page.
+        List<UserResponse> users = userRepository.findPageAfter(afterId == null ? 0L : afterId, PageRequest.ofSize(pageSize + 1));
+        if (users.size() <= pageSize) {
+            return new UserPage(users, null);
+        }
+        List<UserResponse> page = users.subList(0, pageSize);
+        return new UserPage(List.copyOf(page), page.getLast().id());
     }
 
-    public List<User> getAllUSers() {
-        return userRepository.findAll();
+    /**
+     * Passes every user to {@code consumer} in id order, holding only one fetch of rows in memory
+     * at a time. The read runs in a single transaction, so the consumer sees a consistent snapshot.
+     */
+    @ReadOnlyTransactional
+    public void streamUsers(Consumer<UserResponse> consumer) {
+        try (Stream<UserResponse> users = userRepository.streamAll()) {
+            users.forEach(consumer);
+        }
     }
 }
@@ -0,0 +1,27 @@
+package com.kibit.payment.streams;
+
+import java.math.BigDecimal;
+
+/**
+ * Transfers of one account within a time window, in the account's currency.
+ *
+ * @param count the number of transfers the account sent or received
+ * @param volume the total amount sent and received
+ * @param netFlow the amount received minus the amount sent
+ */
+public record AccountActivity(long count, BigDecimal volume, BigDecimal netFlow) {
+
+    public static final AccountActivity NONE = new AccountActivity(0, BigDecimal.ZERO, BigDecimal.ZERO);
+
+    public static AccountActivity sent(BigDecimal amount) {
+        return new AccountActivity(1, amount, amount.negate());
+    }
+
+    public static AccountActivity received(BigDecimal amount) {
+        return new AccountActivity(1, amount, amount);
+    }
+
+    public AccountActivity plus(AccountActivity other) {
+        return new AccountActivity(count + other.count, volume.add(other.volume), netFlow.add(other.netFlow));
+    }
+}
@@ -0,0 +1,112 @@
+package com.kibit.payment.streams;
+
+import com.kibit.payment.dto.AccountActivityResponse;
+import com.kibit.payment.exception.AccountActivityUnavailableException;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.common.serialization.Serdes;
+import org.apache.kafka.streams.KeyValue;
+import org.apache.kafka.streams.errors.InvalidStateStoreException;
+import org.apache.kafka.streams.state.HostInfo;
+import org.apache.kafka.streams.state.QueryableStoreTypes;
+import org.apache.kafka.streams.state.ReadOnlyWindowStore;
+import org.apache.kafka.streams.state.WindowStoreIterator;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.kafka.streams.KafkaStreamsInteractiveQueryService;
+import org.springframework.stereotype.Service;
+import org.springframework.web.client.RestClient;
+import org.springframework.web.client.RestClientException;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Answers account activity queries from the window store of {@link AccountActivityTopology}.
+ *
+ * Each instance only holds the aggregates of the accounts on the partitions assigned to it. When
+ * {@code spring.kafka.streams.properties.application.server} advertises this instance's API address,
+ * a query for an account held elsewhere is forwarded to the instance that holds it; without it,
+ * every query is answered locally, which is only complete while a single instance is running.
+ */
+@Service
+@ConditionalOnProperty(name = "payment.account-activity.enabled", havingValue = "true", matchIfMissing = true)
+@Slf4j
+public class AccountActivityService {
+
+    private final KafkaStreamsInteractiveQueryService queries;
+    private final long windowSizeMs;
+    private final boolean advertised;
+    private final RestClient restClient;
+
+    public AccountActivityService(KafkaStreamsInteractiveQueryService queries,
+                                  AccountActivityTopology topology,
+                                  RestClient.Builder restClientBuilder,
+                                  @Value("${spring.kafka.streams.properties.application.server:}") String applicationServer) {
+        this.queries = queries;
+        this.windowSizeMs = topology.getWindowSize().toMillis();
+        this.advertised = !applicationServer.isBlank();
+        this.restClient = restClientBuilder.build();
+    }
+
+    /**
+     * Returns the aggregates of the windows that overlap [{@code from}, {@code to}). An account
+     * without transfers in the range, or without an account at all, has no windows and zero totals.
+     *
+     * @param local answer from this instance's store even if the account is held by another one
+     * @throws AccountActivityUnavailableException if the store cannot be queried, e.g. during a rebalance
+     */
+    public AccountActivityResponse getActivity(Long accountId, Instant from, Instant to, boolean local) {
+        if (!from.isBefore(to)) {
+            throw new IllegalArgumentException("from must be before to");
+        }
+        String key = accountId.toString();
+        try {
+            if (!local && advertised) {
+                HostInfo owner = queries.getKafkaStreamsApplicationHostInfo(AccountActivityTopology.STORE, key,
+                        Serdes.String().serializer());
+                if (owner != null && !owner.equals(queries.getCurrentKafkaStreamsApplicationHostInfo())) {
+                    return forward(owner, accountId, from, to);
+                }
+            }
+            return fetch(accountId, key, from, to);
+        } catch (InvalidStateStoreException | IllegalStateException ex) {
+            log.warn("Account activity store is not queryable", ex);
+            throw new AccountActivityUnavailableException("Account activity is not available right now, please retry", ex);
+        }
+    }
+
+    private AccountActivityResponse fetch(Long accountId, String key, Instant from, Instant to) {
+        ReadOnlyWindowStore<String, AccountActivity> store =
+                queries.retrieveQueryableStore(AccountActivityTopology.STORE, QueryableStoreTypes.windowStore());
+        // The store is searched by window start, so the window containing from starts before it.
+        long firstStart = from.toEpochMilli() - Math.floorMod(from.toEpochMilli(), windowSizeMs);
+        List<AccountActivityResponse.Window> windows = new ArrayList<>();
+        AccountActivity total = AccountActivity.NONE;
+        try (WindowStoreIterator<AccountActivity> iterator =
+                     store.fetch(key, Instant.ofEpochMilli(firstStart), to.minusMillis(1))) {
+            while (iterator.hasNext()) {
+                KeyValue<Long, AccountActivity> window = iterator.next();
+                AccountActivity activity = window.value;
+                windows.add(new AccountActivityResponse.Window(Instant.ofEpochMilli(window.key),
+                        Instant.ofEpochMilli(window.key + windowSizeMs),
+                        activity.count(), activity.volume(), activity.netFlow()));
+                total = total.plus(activity);
+            }
+        }
+        return new AccountActivityResponse(accountId, from, to, total.count(), total.volume(), total.netFlow(), windows);
+    }
+
+    private AccountActivityResponse forward(HostInfo owner, Long accountId, Instant from, Instant to) {
+        try {
+            return restClient.get()
+                    .uri("http://{host}:{port}/api/accounts/{id}/activity?from={from}&to={to}&local=true",
+                            owner.host(), owner.port(), accountId, from, to)
+                    .retrieve()
+                    .body(AccountActivityResponse.class);
+        } catch (RestClientException ex) {
+            log.warn("Forwarding the account activity query to {}:{} failed", owner.host(), owner.port(), ex);
+            throw new AccountActivityUnavailableException("Account activity is not available right now, please retry", ex);
+        }
+    }
+}
@@ -0,0 +1,136 @@
+package com.kibit.payment.streams;
+
+import com.kibit.payment.entity.TransactionStatus;
+import com.kibit.payment.event.EventCodec;
+import com.kibit.payment.event.TransactionEvent;
+import com.kibit.payment.service.KafkaProducerService;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.common.serialization.Serde;
+import org.apache.kafka.common.serialization.Serdes;
+import org.apache.kafka.common.utils.Bytes;
+import org.apache.kafka.streams.StreamsBuilder;
+import org.apache.kafka.streams.kstream.Consumed;
+import org.apache.kafka.streams.kstream.Grouped;
+import org.apache.kafka.streams.kstream.KTable;
+import org.apache.kafka.streams.kstream.Materialized;
+import org.apache.kafka.streams.kstream.TimeWindows;
+import org.apache.kafka.streams.kstream.Windowed;
+import org.apache.kafka.streams.processor.api.Processor;
+import org.apache.kafka.streams.processor.api.ProcessorContext;
+import org.apache.kafka.streams.processor.api.Record;
+import org.apache.kafka.streams.state.WindowStore;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.kafka.annotation.EnableKafkaStreams;
+import org.springframework.kafka.config.StreamsBuilderFactoryBean;
+import org.springframework.kafka.streams.KafkaStreamsInteractiveQueryService;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+
+/**
+ * Kafka Streams topology that keeps per-account transfer aggregates in a local window store,
+ * queried through {@link AccountActivityService}.
+ *
+ * Every completed transfer on {@code transaction_notifications} counts for both accounts: as an
+ * outgoing amount for the sender, in the sender's currency, and as an incoming amount for the
+ * receiver, in the receiver's currency. The records are re-keyed by account id and summed into
+ * tumbling windows of {@code payment.account-activity.window-size-ms}. Windows are placed by the
+ * time the transfer completed, taken from the event rather than from when the outbox relay sent it,
+ * and accept transfers arriving up to {@code grace-ms} late; later ones are dropped.
+ *
+ * The notifications are delivered at least once, so after a crash of the relay or of this
+ * topology a transfer can be counted twice. The aggregates are meant for dashboards and soft
+ * limits, not as a source of balances.
+ */
+@Configuration
+@EnableKafkaStreams
+@ConditionalOnProperty(name = "payment.account-activity.enabled", havingValue = "true", matchIfMissing = true)
+@Slf4j
+public class AccountActivityTopology {
+
+    public static final String STORE = "account-activity";
+
+    private final EventCodec eventCodec;
+    private final Duration windowSize;
+    private final Duration grace;
+    private final Duration retention;
+
+    public AccountActivityTopology(EventCodec eventCodec,
+                                   @Value("${payment.account-activity.window-size-ms:60000}") long windowSizeMs,
+                                   @Value("${payment.account-activity.grace-ms:900000}") long graceMs,
+                                   @Value("${payment.account-activity.retention-hours:24}") long retentionHours) {
+        this.eventCodec = eventCodec;
+        this.windowSize = Duration.ofMillis(windowSizeMs);
+        this.grace = Duration.ofMillis(graceMs);
+        this.retention = Duration.ofHours(retentionHours);
+    }
+
+    @Bean
+    public KTable<Windowed<String>, AccountActivity> accountActivity(StreamsBuilder streamsBuilder) {
+        Serde<AccountActivity> activitySerde = activitySerde();
+        return streamsBuilder.stream(KafkaProducerService.TRANSACTION_TOPIC, Consumed.with(Serdes.String(), Serdes.String()))
+                .process(TransferFlows::new)
+                .groupByKey(Grouped.with(STORE, Serdes.String(), activitySerde))
+                .windowedBy(TimeWindows.ofSizeAndGrace(windowSize, grace))
+                .reduce(AccountActivity::plus, Materialized.<String, AccountActivity, WindowStore<Bytes, byte[]>>as(STORE)
+                        .withKeySerde(Serdes.String())
+                        .withValueSerde(activitySerde)
+                        .withRetention(retention));
+    }
+
+    @Bean
+    public KafkaStreamsInteractiveQueryService accountActivityQueries(StreamsBuilderFactoryBean streamsBuilderFactoryBean) {
+        return new KafkaStreamsInteractiveQueryService(streamsBuilderFactoryBean);
+    }
+
+    Duration getWindowSize() {
+        return windowSize;
+    }
+
+    private Serde<AccountActivity> activitySerde() {
+        return Serdes.serdeFrom(
+                (topic, activity) -> activity == null ? null : eventCodec.encode(activity).getBytes(StandardCharsets.UTF_8),
+                (topic, bytes) -> bytes == null ? null : eventCodec.decode(new String(bytes, StandardCharsets.UTF_8), AccountActivity.class));
+    }
+
+    /**
+     * Turns a transfer notification into one record for the sender and one for the receiver,
+     * stamped with the time of the transfer.
+     */
+    private class TransferFlows implements Processor<String, String, String, AccountActivity> {
+
+        private ProcessorContext<String, AccountActivity> context;
+
+        @Override
+        public void init(ProcessorContext<String, AccountActivity> context) {
+            this.context = context;
+        }
+
+        @Override
+        public void process(Record<String, String> record) {
+            TransactionEvent event;
+            try {
+                event = eventCodec.decode(record.value(), TransactionEvent.class);
+            } catch (IllegalArgumentException ex) {
+                log.warn("Skipping undecodable transaction notification", ex);
+                return;
+            }
+            if (event.status() != TransactionStatus.COMPLETED) {
+                return;
+            }
+            long timestamp = event.timestamp() == null ? record.timestamp() : event.timestamp().toEpochMilli();
+            // Version 1 events carry no credited amount; the debited amount is the closest there is.
+            BigDecimal creditedAmount = event.creditedAmount() == null ? event.amount() : event.creditedAmount();
+            context.forward(record.withKey(event.senderAccountId().toString())
+                    .withValue(AccountActivity.sent(event.amount()))
+                    .withTimestamp(timestamp));
+            context.forward(record.withKey(event.receiverAccountId().toString())
+                    .withValue(AccountActivity.received(creditedAmount))
+                    .withTimestamp(timestamp));
+        }
+    }
+}
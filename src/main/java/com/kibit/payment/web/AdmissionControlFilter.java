@@ -0,0 +1,153 @@
+package com.kibit.payment.web;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Admission gates in front of the API, sized to the database connection pools.
+ *
+ * Every API request needs a database connection for its whole duration, so admitting more
+ * requests than there are connections only moves the queue into Hikari, where waiters hold a
+ * request thread and fail after the pool's connection timeout. Reads ({@code GET} and
+ * {@code HEAD}) are served from the read pool and everything else from the primary pool, so each
+ * has its own gate: at most {@code read-permits} reads and {@code permits} other requests are let
+ * in at a time, and the rest queue in FIFO order. Unless set, {@code permits} is the size of the
+ * primary pool less the connections kept for work outside API requests: one per async transfer
+ * worker, one per scheduler thread, which runs jobs such as the outbox relay and the ledger
+ * checkpoints, and one for the notification writer. Long reads such as exports therefore cannot keep
+ * transfers waiting. A request that is not admitted within {@code max-wait-ms} gets a 503 with a
+ * {@code Retry-After} header.
+ *
+ * With virtual threads enabled ({@code spring.threads.virtual.enabled}) queued requests cost
+ * almost nothing, as a parked virtual thread releases its carrier thread. The metrics carry a
+ * {@code threads} tag of {@code virtual} or {@code platform} so both modes can be compared
+ * under the same load, and a {@code gate} tag of {@code read} or {@code write}:
+ * - {@code payment.admission.wait}: time spent waiting for a permit, by outcome
+ * - {@code payment.admission.active}: time a request holds its permit
+ * - {@code payment.admission.in.flight} and {@code payment.admission.queued}: current gate state
+ */
+@Component
+@ConditionalOnProperty(name = "payment.admission.enabled", havingValue = "true", matchIfMissing = true)
+@Slf4j
+public class AdmissionControlFilter extends OncePerRequestFilter {
+
+    private static final String API_PREFIX = "/api/";
+
+    private final Gate writeGate;
+    private final Gate readGate;
+    private final long maxWaitNanos;
+
+    public AdmissionControlFilter(MeterRegistry meterRegistry,
+                                  @Value("${payment.admission.permits:0}") int maxPermits,
+                                  @Value("${spring.datasource.hikari.maximum-pool-size:10}") int primaryPoolSize,
+                                  @Value("${payment.async.workers:4}") int asyncWorkers,
+                                  @Value("${spring.task.scheduling.pool.size:1}") int schedulingPoolSize,
+                                  @Value("${payment.admission.read-permits:${payment.datasource.read.maximum-pool-size:5}}") int maxReadPermits,
+                                  @Value("${payment.admission.max-wait-ms:2000}") long maxWaitMs,
+                                  @Value("${spring.threads.virtual.enabled:false}") boolean virtualThreads) {
+        String threads = virtualThreads ? "virtual" : "platform";
+        if (maxPermits <= 0) {
+            int reservedConnections = asyncWorkers + schedulingPoolSize + 1;
+            maxPermits = primaryPoolSize - reservedConnections;
+            if (maxPermits < 1) {
+                log.warn("The primary pool of {} connections leaves none for API requests after the {} kept for background work, "
+                        + "admitting one request at a time", primaryPoolSize, reservedConnections);
+                maxPermits = 1;
+            }
+        }
+        this.writeGate = new Gate(meterRegistry, "write", threads, maxPermits);
+        this.readGate = new Gate(meterRegistry, "read", threads, maxReadPermits);
+        this.maxWaitNanos = TimeUnit.MILLISECONDS.toNanos(maxWaitMs);
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !request.getRequestURI().startsWith(API_PREFIX);
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        Gate gate = isRead(request) ? readGate : writeGate;
+        long start = System.nanoTime();
+        boolean admitted;
+        try {
+            admitted = gate.permits.tryAcquire(maxWaitNanos, TimeUnit.NANOSECONDS);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            admitted = false;
+        }
+        long admittedAt = System.nanoTime();
+
+        if (!admitted) {
+            gate.rejectedWait.record(admittedAt - start, TimeUnit.NANOSECONDS);
+            log.debug("Rejected {} {}: all {} {} permits are in use", request.getMethod(), request.getRequestURI(),
+                    gate.maxPermits, gate.name);
+            response.setHeader(HttpHeaders.RETRY_AFTER, "1");
+            response.sendError(HttpStatus.SERVICE_UNAVAILABLE.value(), "Server is at capacity, retry later");
+            return;
+        }
+
+        gate.admittedWait.record(admittedAt - start, TimeUnit.NANOSECONDS);
+        try {
+            filterChain.doFilter(request, response);
+        } finally {
+            gate.permits.release();
+            gate.active.record(System.nanoTime() - admittedAt, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private static boolean isRead(HttpServletRequest request) {
+        return HttpMethod.GET.matches(request.getMethod()) || HttpMethod.HEAD.matches(request.getMethod());
+    }
+
+    private static final class Gate {
+
+        private final String name;
+        private final Semaphore permits;
+        private final int maxPermits;
+        private final Timer admittedWait;
+        private final Timer rejectedWait;
+        private final Timer active;
+
+        private Gate(MeterRegistry meterRegistry, String name, String threads, int maxPermits) {
+            this.name = name;
+            this.permits = new Semaphore(maxPermits, true);
+            this.maxPermits = maxPermits;
+            this.admittedWait = Timer.builder("payment.admission.wait")
+                    .tags("threads", threads, "gate", name, "outcome", "admitted")
+                    .publishPercentileHistogram()
+                    .register(meterRegistry);
+            this.rejectedWait = Timer.builder("payment.admission.wait")
+                    .tags("threads", threads, "gate", name, "outcome", "rejected")
+                    .register(meterRegistry);
+            this.active = Timer.builder("payment.admission.active")
+                    .tags("threads", threads, "gate", name)
+                    .publishPercentileHistogram()
+                    .register(meterRegistry);
+            Gauge.builder("payment.admission.in.flight", permits, semaphore -> maxPermits - semaphore.availablePermits())
+                    .tags("threads", threads, "gate", name)
+                    .register(meterRegistry);
+            Gauge.builder("payment.admission.queued", permits, Semaphore::getQueueLength)
+                    .tags("threads", threads, "gate", name)
+                    .register(meterRegistry);
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package com.kibit.payment.contention;
+
+import com.kibit.payment.dto.LockContentionReport;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+
+class LockContentionProfilerTest {
+
+    private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @Test
+    void record_keepsHotAccountsAmongManyColdOnesWithinCapacity() {
+        // Arrange
+        LockContentionProfiler profiler = new LockContentionProfiler(meterRegistry, true, 10, 100, 60000);
+
+        // Act
+        for (long accountId = 1000; accountId < 101_000; accountId++) {
+            profiler.record(List.of(7L, accountId), millis(1));
+            if (accountId % 2 == 0) {
+                profiler.record(42L, millis(1));
+            }
+        }
+
+        // Assert
+        LockContentionReport report = profiler.current(2);
+        Assertions.assertEquals(10, report.trackedAccounts());
+        Assertions.assertEquals(List.of(7L, 42L), report.accounts().stream().map(LockContentionReport.HotAccount::accountId).toList());
+        LockContentionReport.HotAccount hottest = report.accounts().get(0);
+        Assertions.assertEquals(100_000, hottest.locks());
+        Assertions.assertEquals(0.0, hottest.waitErrorMs());
+        Assertions.assertEquals(List.of(new LockContentionReport.Bucket(1024L, 100_000)), hottest.waits());
+    }
+
+    @Test
+    void record_reportsAccountOnceItsWaitCrossesThresholdInAnInterval() {
+        // Arrange
+        LockContentionProfiler profiler = new LockContentionProfiler(meterRegistry, true, 10, 100, 100);
+
+        // Act
+        profiler.record(1L, millis(60));
+        profiler.record(1L, millis(60));
+        profiler.record(1L, millis(60));
+        profiler.rotate();
+        profiler.record(1L, millis(150));
+        profiler.drain();
+
+        // Assert
+        Assertions.assertEquals(2.0, meterRegistry.get("payment.contention.hot.accounts").counter().count());
+        LockContentionReport.HotAccount previous = profiler.previous().accounts().get(0);
+        Assertions.assertEquals(3, previous.locks());
+        Assertions.assertEquals(180.0, previous.waitMs());
+        Assertions.assertEquals(150.0, profiler.current(10).accounts().get(0).maxWaitMs());
+    }
+
+    @Test
+    void current_limitOutOfRange_isClampedToReportedAccounts() {
+        // Arrange
+        LockContentionProfiler profiler = new LockContentionProfiler(meterRegistry, true, 10, 3, 60000);
+        for (long accountId = 1; accountId <= 5; accountId++) {
+            profiler.record(accountId, millis(accountId));
+        }
+
+        // Act
+        LockContentionReport negative = profiler.current(-1);
+        LockContentionReport tooMany = profiler.current(Integer.MAX_VALUE);
+
+        // Assert
+        Assertions.assertEquals(List.of(5L), negative.accounts().stream().map(LockContentionReport.HotAccount::accountId).toList());
+        Assertions.assertEquals(3, tooMany.accounts().size());
+    }
+
+    private static long millis(long millis) {
+        return TimeUnit.MILLISECONDS.toNanos(millis);
+    }
+}
@@ -0,0 +1,138 @@
+package com.kibit.payment.datasource;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+
+
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+class ReadWriteDataSourceConfigurationTest {
+
+    @Mock
+    private DataSource primaryDataSource;
+
+    @Mock
+    private DataSource readDataSource;
+
+    @Mock
+    private Connection primaryConnection;
+
+    @Mock
+    private Connection readConnection;
+
+    @Mock
+    private JdbcTemplate readJdbcTemplate;
+
+    private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private ReplicaLagMonitor replicaLagMonitor;
+
+    private DataSource dataSource;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        Mockito.when(primaryDataSource.getConnection()).thenReturn(primaryConnection);
+        Mockito.when(readDataSource.getConnection()).thenReturn(readConnection);
+        replicaLagMonitor = new ReplicaLagMonitor(readJdbcTemplate, meterRegistry, 1000);
+        dataSource = new ReadWriteDataSourceConfiguration().dataSource(primaryDataSource, readDataSource, replicaLagMonitor);
+    }
+
+    @Test
+    void readOnlyConnection_replicaWithinLag_usesReadPool() throws Exception {
+        // Arrange
+        lag(250.0);
+
+        // Act
+        Connection connection = readOnlyConnection();
+
+        // Assert
+        Mockito.verify(readConnection).createStatement();
+        Mockito.verifyNoInteractions(primaryDataSource);
+        Assertions.assertEquals(250.0, meterRegistry.get("payment.datasource.read.lag").gauge().value());
+        Assertions.assertEquals(1.0, meterRegistry.get("payment.datasource.read.available").gauge().value());
+        connection.close();
+    }
+
+    @Test
+    void readOnlyConnection_replicaBehindOrUnchecked_usesPrimary() throws Exception {
+        // Arrange
+        lag(250.0);
+        lag(5000.0);
+
+        // Act
+        readOnlyConnection();
+        Mockito.when(readJdbcTemplate.queryForObject(Mockito.eq(ReplicaLagMonitor.LAG_QUERY), Mockito.<RowMapper<ReplicaLagMonitor.ReplicaStatus>>any()))
+                .thenThrow(new QueryTimeoutException("timeout"));
+        replicaLagMonitor.check();
+        readOnlyConnection();
+
+        // Assert
+        Mockito.verify(primaryConnection, Mockito.times(2)).createStatement();
+        Mockito.verifyNoInteractions(readDataSource);
+        Assertions.assertTrue(Double.isNaN(meterRegistry.get("payment.datasource.read.lag").gauge().value()));
+        Assertions.assertEquals(0.0, meterRegistry.get("payment.datasource.read.available").gauge().value());
+    }
+
+    @Test
+    void readOnlyConnection_replicaNotStreaming_usesPrimary() throws Exception {
+        // Arrange
+        lag(0.0);
+        // Replayed everything it received, but has not received anything for a minute.
+        status(new ReplicaLagMonitor.ReplicaStatus(true, false, true, 60000.0));
+
+        // Act
+        readOnlyConnection();
+
+        // Assert
+        Mockito.verify(primaryConnection).createStatement();
+        Mockito.verifyNoInteractions(readDataSource);
+        Assertions.assertEquals(60000.0, meterRegistry.get("payment.datasource.read.lag").gauge().value());
+    }
+
+    @Test
+    void readWriteConnection_usesPrimary() throws Exception {
+        // Arrange
+        lag(0.0);
+
+        // Act
+        try (Connection connection = dataSource.getConnection()) {
+            connection.createStatement();
+        }
+
+        // Assert
+        Mockito.verify(primaryConnection).createStatement();
+        Mockito.verifyNoInteractions(readDataSource);
+    }
+
+    private void lag(double lagMs) {
+        status(new ReplicaLagMonitor.ReplicaStatus(true, true, lagMs == 0.0, lagMs));
+    }
+
+    private void status(ReplicaLagMonitor.ReplicaStatus status) {
+        Mockito.when(readJdbcTemplate.queryForObject(Mockito.eq(ReplicaLagMonitor.LAG_QUERY), Mockito.<RowMapper<ReplicaLagMonitor.ReplicaStatus>>any()))
+                .thenReturn(status);
+        replicaLagMonitor.check();
+    }
+
+    private Connection readOnlyConnection() throws Exception {
+        Connection connection = dataSource.getConnection();
+        connection.setReadOnly(true);
+        connection.createStatement();
+        return connection;
+    }
+}
@@ -0,0 +1,79 @@
+package com.kibit.payment.exchange;
+
+import com.kibit.payment.exception.ExchangeRateUnavailableException;
+import com.kibit.payment.money.Money;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.Map;
+
+
+@ExtendWith(MockitoExtension.class)
+class ExchangeRateProviderTest {
+
+    private static final ExchangeRateSource.RateTable RATES = new ExchangeRateSource.RateTable("EUR",
+            Map.of("USD", new BigDecimal("1.0850"), "HUF", new BigDecimal("395.20")));
+
+    @Mock
+    private ExchangeRateSource source;
+
+    @Test
+    void convert_usesCrossRateBetweenNonBaseCurrencies() throws IOException {
+        // Arrange
+        Mockito.when(source.load()).thenReturn(RATES);
+        ExchangeRateProvider provider = provider(3600000);
+        provider.refresh();
+
+        // Act
+        CurrencyConversion conversion = provider.convert(Money.of(new BigDecimal("100.00"), "usd"), "HUF");
+
+        // Assert
+        Assertions.assertEquals(new BigDecimal("364.2396313364"), conversion.rate());
+        Assertions.assertEquals(Money.of(new BigDecimal("36423.96"), "HUF"), conversion.convertedAmount());
+    }
+
+    @Test
+    void convert_unknownCurrency_throwsException() throws IOException {
+        // Arrange
+        Mockito.when(source.load()).thenReturn(RATES);
+        ExchangeRateProvider provider = provider(3600000);
+        provider.refresh();
+
+        // Act & Assert
+        ExchangeRateUnavailableException exception = Assertions.assertThrows(
+                ExchangeRateUnavailableException.class,
+                () -> provider.convert(Money.of(new BigDecimal("100.00"), "EUR"), "JPY")
+        );
+
+        Assertions.assertEquals("No exchange rate from EUR to JPY", exception.getMessage());
+    }
+
+    @Test
+    void refresh_failure_keepsPreviousRatesUntilTheyAreTooOld() throws IOException {
+        // Arrange
+        Mockito.when(source.load()).thenReturn(RATES).thenThrow(new IOException("unreachable"));
+        ExchangeRateProvider fresh = provider(3600000);
+        ExchangeRateProvider stale = provider(-1);
+        fresh.refresh();
+        stale.refresh();
+
+        // Act
+        fresh.refresh();
+
+        // Assert
+        Assertions.assertEquals(new BigDecimal("1.0850000000"), fresh.getRate("EUR", "USD"));
+        Assertions.assertThrows(ExchangeRateUnavailableException.class, () -> stale.getRate("EUR", "USD"));
+        Assertions.assertEquals(BigDecimal.ONE, stale.getRate("USD", "USD"));
+    }
+
+    private ExchangeRateProvider provider(long maxAgeMs) {
+        return new ExchangeRateProvider(source, new SimpleMeterRegistry(), maxAgeMs);
+    }
+}
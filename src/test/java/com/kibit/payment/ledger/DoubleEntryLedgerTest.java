@@ -0,0 +1,101 @@
+package com.kibit.payment.ledger;
+
+import com.kibit.payment.entity.Account;
+import com.kibit.payment.exception.InsufficientBalanceException;
+import com.kibit.payment.money.Money;
+import com.kibit.payment.repository.LedgerEntryRepository;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.util.function.Consumer;
+
+
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+class DoubleEntryLedgerTest {
+
+    @Mock
+    private LedgerEntryRepository ledgerEntryRepository;
+
+    @Mock
+    private TransactionTemplate transactionTemplate;
+
+    private DoubleEntryLedger ledger;
+
+    @BeforeEach
+    void setUp() {
+        Mockito.doAnswer(invocation -> {
+            invocation.<Consumer<TransactionStatus>>getArgument(0).accept(null);
+            return null;
+        }).when(transactionTemplate).executeWithoutResult(Mockito.any());
+        Mockito.when(transactionTemplate.execute(Mockito.any()))
+                .thenAnswer(invocation -> invocation.<TransactionCallback<?>>getArgument(0).doInTransaction(null));
+        Mockito.when(ledgerEntryRepository.tryLockCheckpoints()).thenReturn(true);
+        ledger = new DoubleEntryLedger(ledgerEntryRepository, transactionTemplate, 2);
+    }
+
+    @Test
+    void transfer_appendsDebitAndCreditEntries() {
+        // Arrange
+        Mockito.when(ledgerEntryRepository.findBalance(1L)).thenReturn(new BigDecimal("500.00"));
+        Mockito.when(ledgerEntryRepository.findBalance(2L)).thenReturn(new BigDecimal("100.00"));
+
+        // Act
+        LedgerEngine.TransferResult result = ledger.transfer(7L, account(1L), account(2L), new BigDecimal("100.00"), new BigDecimal("108.50"));
+
+        // Assert
+        Assertions.assertEquals(new BigDecimal("400.00"), result.senderNewBalance());
+        Assertions.assertEquals(new BigDecimal("208.50"), result.receiverNewBalance());
+        Mockito.verify(ledgerEntryRepository).lockForDebit(1L);
+        Mockito.verify(ledgerEntryRepository, Mockito.never()).lockForDebit(2L);
+        Mockito.verify(ledgerEntryRepository).appendTransfer(7L, 1L, new BigDecimal("100.00"), 2L, new BigDecimal("108.50"));
+    }
+
+    @Test
+    void transfer_insufficientBalance_appendsNothing() {
+        // Arrange
+        Mockito.when(ledgerEntryRepository.findBalance(1L)).thenReturn(new BigDecimal("50.00"));
+
+        // Act & Assert
+        Assertions.assertThrows(
+                InsufficientBalanceException.class,
+                () -> ledger.transfer(7L, account(1L), account(2L), new BigDecimal("100.00"), new BigDecimal("100.00"))
+        );
+        Mockito.verify(ledgerEntryRepository, Mockito.never())
+                .appendTransfer(Mockito.any(), Mockito.any(), Mockito.any(), Mockito.any(), Mockito.any());
+    }
+
+    @Test
+    void checkpoint_rebuildsAllRangesFirstAndThenOnlyChangedAccounts() {
+        // Arrange
+        Mockito.when(ledgerEntryRepository.findOldestActiveXid()).thenReturn("740", "815");
+        Mockito.when(ledgerEntryRepository.findMaxAccountId()).thenReturn(9L);
+
+        // Act
+        ledger.checkpoint();
+        ledger.checkpoint();
+
+        // Assert
+        Mockito.verify(ledgerEntryRepository).checkpointAccountRange(1L, 5L);
+        Mockito.verify(ledgerEntryRepository).checkpointAccountRange(6L, 9L);
+        Mockito.verify(ledgerEntryRepository).checkpointChangedAccounts("740");
+    }
+
+    private static Account account(Long id) {
+        Account account = new Account();
+        account.setId(id);
+        account.setBalance(Money.zero(account.getCurrency()));
+        return account;
+    }
+}
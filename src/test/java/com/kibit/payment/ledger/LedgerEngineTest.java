@@ -0,0 +1,160 @@
+package com.kibit.payment.ledger;
+
+import com.kibit.payment.entity.Account;
+import com.kibit.payment.exception.InsufficientBalanceException;
+import com.kibit.payment.money.Money;
+import com.kibit.payment.repository.AccountRepository;
+import com.kibit.payment.repository.LedgerCheckpointRepository;
+import com.kibit.payment.repository.TransactionRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Consumer;
+
+
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+class LedgerEngineTest {
+
+    @Mock
+    private AccountRepository accountRepository;
+
+    @Mock
+    private TransactionRepository transactionRepository;
+
+    @Mock
+    private LedgerCheckpointRepository ledgerCheckpointRepository;
+
+    @Mock
+    private TransactionTemplate transactionTemplate;
+
+    @TempDir
+    private Path journalDirectory;
+
+    private LedgerEngine ledgerEngine;
+
+    @BeforeEach
+    void setUp() {
+        Mockito.when(ledgerCheckpointRepository.findTopByOrderByIdDesc()).thenReturn(Optional.empty());
+        Mockito.doAnswer(invocation -> {
+            invocation.<Consumer<TransactionStatus>>getArgument(0).accept(null);
+            return null;
+        }).when(transactionTemplate).executeWithoutResult(Mockito.any());
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (ledgerEngine != null) {
+            ledgerEngine.stop();
+        }
+    }
+
+    @Test
+    void transfer_movesAmountFromSenderToReceiver() {
+        // Arrange
+        ledgerEngine = startEngine();
+        Account sender = account(1L, "500.00");
+        Account receiver = account(2L, "100.00");
+
+        // Act
+        LedgerEngine.TransferResult result = ledgerEngine.transfer(10L, sender, receiver, new BigDecimal("100.00"), new BigDecimal("100.00"));
+
+        // Assert
+        Assertions.assertEquals(new BigDecimal("400.00"), result.senderNewBalance());
+        Assertions.assertEquals(new BigDecimal("200.00"), result.receiverNewBalance());
+        Assertions.assertEquals(new BigDecimal("400.00"), ledgerEngine.getAvailableBalance(sender));
+        Assertions.assertEquals(new BigDecimal("200.00"), ledgerEngine.getAvailableBalance(receiver));
+    }
+
+    @Test
+    void transfer_insufficientBalance_throwsException() {
+        // Arrange
+        ledgerEngine = startEngine();
+        Account sender = account(1L, "50.00");
+        Account receiver = account(2L, "100.00");
+
+        // Act & Assert
+        InsufficientBalanceException exception = Assertions.assertThrows(
+                InsufficientBalanceException.class,
+                () -> ledgerEngine.transfer(10L, sender, receiver, new BigDecimal("100.00"), new BigDecimal("100.00"))
+        );
+
+        Assertions.assertEquals("Sender balance is less than the requested amount", exception.getMessage());
+        Assertions.assertEquals(new BigDecimal("50.00"), ledgerEngine.getAvailableBalance(sender));
+        Assertions.assertEquals(new BigDecimal("100.00"), ledgerEngine.getAvailableBalance(receiver));
+    }
+
+    @Test
+    void start_replaysJournalAndSettlesOpenTransfers() throws Exception {
+        // Arrange
+        Files.write(journalDirectory.resolve(String.format("journal-%020d.log", 1)), List.of(
+                "D,10,1,2,100.00,100.00",
+                "C,10",
+                "D,11,1,3,50.00,54.25",
+                "A,11",
+                "D,12,2,1,25.00,25.00",
+                "D,13,3,2,5.00,5.00"));
+        Mockito.when(transactionRepository.existsByIdAndStatus(13L, com.kibit.payment.entity.TransactionStatus.COMPLETED)).thenReturn(true);
+        Mockito.when(transactionTemplate.execute(Mockito.any()))
+                .thenAnswer(invocation -> invocation.<TransactionCallback<?>>getArgument(0).doInTransaction(null));
+
+        // Act
+        ledgerEngine = startEngine();
+
+        // Assert
+        Mockito.verify(accountRepository).adjustBalance(Mockito.eq(1L), Mockito.argThat(delta -> delta.compareTo(new BigDecimal("-100")) == 0));
+        Mockito.verify(accountRepository).adjustBalance(Mockito.eq(2L), Mockito.argThat(delta -> delta.compareTo(new BigDecimal("105")) == 0));
+        Mockito.verify(accountRepository).adjustBalance(Mockito.eq(3L), Mockito.argThat(delta -> delta.compareTo(new BigDecimal("-5")) == 0));
+        Mockito.verify(ledgerCheckpointRepository).save(Mockito.argThat(checkpoint -> checkpoint.getJournalSegment() == 1L));
+        Assertions.assertEquals(List.of(2L), LedgerJournal.listSegments(journalDirectory));
+    }
+
+    @Test
+    void start_openTransferOfPendingTransaction_isAborted() throws Exception {
+        // Arrange
+        Files.write(journalDirectory.resolve(String.format("journal-%020d.log", 1)), List.of("D,14,1,2,40.00,43.40"));
+        // An asynchronously submitted transaction whose execution rolled back: its row exists, but is PENDING.
+        Mockito.when(transactionRepository.existsById(14L)).thenReturn(true);
+        Mockito.when(transactionRepository.existsByIdAndStatus(14L, com.kibit.payment.entity.TransactionStatus.COMPLETED)).thenReturn(false);
+        Mockito.when(transactionTemplate.execute(Mockito.any()))
+                .thenAnswer(invocation -> invocation.<TransactionCallback<?>>getArgument(0).doInTransaction(null));
+
+        // Act
+        ledgerEngine = startEngine();
+
+        // Assert
+        Mockito.verify(accountRepository).adjustBalance(Mockito.eq(1L), Mockito.argThat(delta -> delta.signum() == 0));
+        Mockito.verify(accountRepository, Mockito.never()).adjustBalance(Mockito.eq(2L), Mockito.any());
+    }
+
+    private LedgerEngine startEngine() {
+        LedgerEngine engine = new LedgerEngine(accountRepository, transactionRepository, ledgerCheckpointRepository,
+                transactionTemplate, 4, journalDirectory.toString(), 64);
+        engine.start();
+        return engine;
+    }
+
+    private Account account(Long id, String balance) {
+        Account account = new Account();
+        account.setId(id);
+        account.setBalance(Money.of(new BigDecimal(balance), account.getCurrency()));
+        return account;
+    }
+}
@@ -0,0 +1,50 @@
+package com.kibit.payment.money;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+
+class MoneyTest {
+
+    @Test
+    void of_keepsExactAmountsAndRejectsAmountsThatNeedRounding() {
+        // Act
+        Money amount = Money.of(new BigDecimal("12.5"), "eur");
+
+        // Assert
+        Assertions.assertEquals(new Money(1250, Money.currency("EUR")), amount);
+        Assertions.assertEquals(new BigDecimal("12.50"), amount.toBigDecimal());
+        Assertions.assertThrows(IllegalArgumentException.class, () -> Money.of(new BigDecimal("12.505"), "EUR"));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> Money.of(new BigDecimal("1E+18"), "EUR"));
+    }
+
+    @Test
+    void arithmetic_isExactAndRefusesOverflowAndMixedCurrencies() {
+        // Arrange
+        Money balance = Money.of(new BigDecimal("0.30"), "EUR");
+
+        // Act
+        Money result = balance.minus(Money.of(new BigDecimal("0.10"), "EUR")).minus(Money.of(new BigDecimal("0.20"), "EUR"));
+
+        // Assert
+        Assertions.assertEquals(0, result.signum());
+        Assertions.assertThrows(ArithmeticException.class, () -> Money.ofMinor(Long.MAX_VALUE, "EUR").plus(Money.ofMinor(1, "EUR")));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> balance.plus(Money.of(BigDecimal.ONE, "USD")));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> balance.isLessThan(Money.of(BigDecimal.ONE, "USD")));
+    }
+
+    @Test
+    void convert_roundsWithTheGivenMode() {
+        // Arrange
+        Money amount = Money.of(new BigDecimal("0.05"), "EUR");
+        BigDecimal rate = new BigDecimal("0.5");
+
+        // Act & Assert
+        Assertions.assertEquals(Money.of(new BigDecimal("0.02"), "USD"), amount.convert(rate, Money.currency("USD"), RoundingMode.HALF_EVEN));
+        Assertions.assertEquals(Money.of(new BigDecimal("0.03"), "USD"), amount.convert(rate, Money.currency("USD"), RoundingMode.HALF_UP));
+        Assertions.assertSame(amount, amount.convert(BigDecimal.ONE, Money.currency("EUR"), RoundingMode.HALF_EVEN));
+    }
+}
@@ -0,0 +1,87 @@
+package com.kibit.payment.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.kibit.payment.dto.AccountResponse;
+import com.kibit.payment.entity.Account;
+import com.kibit.payment.event.BalanceChangedEvent;
+import com.kibit.payment.event.EventCodec;
+import com.kibit.payment.money.Money;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.math.BigDecimal;
+import java.util.Date;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+
+class AccountCacheTest {
+
+    private final ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json().build();
+    private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final AtomicInteger loads = new AtomicInteger();
+    private final Function<Long, AccountResponse> loader = id -> {
+        loads.incrementAndGet();
+        return new AccountResponse(id, 1L, new BigDecimal("100.00"), "EUR", new Date());
+    };
+    private AccountCache accountCache;
+
+    @BeforeEach
+    void setUp() {
+        accountCache = new AccountCache(new EventCodec(objectMapper), meterRegistry, 100, 60000);
+    }
+
+    @Test
+    void get_servesRepeatedReadsFromCache() {
+        // Act
+        AccountResponse first = accountCache.get(1L, loader);
+        AccountResponse second = accountCache.get(1L, loader);
+
+        // Assert
+        Assertions.assertSame(first, second);
+        Assertions.assertEquals(1, loads.get());
+        Assertions.assertEquals(1.0, meterRegistry.get("cache.gets").tag("result", "hit").functionCounter().count());
+        Assertions.assertEquals(1.0, meterRegistry.get("cache.gets").tag("result", "miss").functionCounter().count());
+    }
+
+    @Test
+    void invalidate_reloadsAccountOnNextRead() {
+        // Arrange
+        accountCache.get(1L, loader);
+
+        // Act
+        accountCache.invalidate(1L);
+        accountCache.get(1L, loader);
+
+        // Assert
+        Assertions.assertEquals(2, loads.get());
+    }
+
+    @Test
+    void onBalanceChanged_invalidatesAccountChangedByAnotherInstance() {
+        // Arrange
+        accountCache.get(1L, loader);
+        accountCache.get(2L, loader);
+        BalanceChangedEvent event = BalanceChangedEvent.from(account(1L), new BigDecimal("100.00"), new BigDecimal("80.00"), 7L);
+
+        // Act
+        accountCache.onBalanceChanged(new EventCodec(objectMapper).encode(event));
+        accountCache.get(1L, loader);
+        accountCache.get(2L, loader);
+
+        // Assert
+        Assertions.assertEquals(3, loads.get());
+        Assertions.assertEquals(1.0, meterRegistry.get("payment.account.cache.invalidations").tag("source", "kafka").counter().count());
+    }
+
+    private static Account account(Long id) {
+        Account account = new Account();
+        account.setId(id);
+        account.setBalance(Money.of(new BigDecimal("100.00"), account.getCurrency()));
+        return account;
+    }
+}
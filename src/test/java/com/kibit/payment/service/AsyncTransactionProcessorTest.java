@@ -0,0 +1,91 @@
+package com.kibit.payment.service;
+
+import com.kibit.payment.exception.InsufficientBalanceException;
+import com.kibit.payment.repository.TransactionRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.List;
+
+
+@ExtendWith(MockitoExtension.class)
+class AsyncTransactionProcessorTest {
+
+    @Mock
+    private TransactionService transactionService;
+
+    @Mock
+    private TransactionRepository transactionRepository;
+
+    private AsyncTransactionProcessor processor;
+
+    @BeforeEach
+    void setUp() {
+        processor = new AsyncTransactionProcessor(transactionService, transactionRepository, new SimpleMeterRegistry(), 1, 10, 5000, 500, 3_600_000);
+    }
+
+    @AfterEach
+    void tearDown() {
+        processor.stop();
+    }
+
+    @Test
+    void execute_insufficientBalance_marksTransactionFailed() {
+        // Arrange
+        Mockito.doThrow(new InsufficientBalanceException("Sender balance is less than the requested amount"))
+                .when(transactionService).executePendingTransaction(5L);
+
+        // Act
+        processor.execute(5L);
+
+        // Assert
+        Mockito.verify(transactionService).failPendingTransaction(5L, "Sender balance is less than the requested amount");
+    }
+
+    @Test
+    void execute_amountOverflow_marksTransactionFailed() {
+        // Arrange
+        Mockito.doThrow(new ArithmeticException("long overflow"))
+                .when(transactionService).executePendingTransaction(5L);
+
+        // Act
+        processor.execute(5L);
+
+        // Assert
+        Mockito.verify(transactionService).failPendingTransaction(5L, "long overflow");
+    }
+
+    @Test
+    void recoverPending_failsExpiredTransactionsAndQueuesTheRest() {
+        // Arrange
+        long now = System.currentTimeMillis();
+        Mockito.when(transactionRepository.findPendingIdsCreatedBefore(Mockito.any(), Mockito.any())).thenReturn(List.of(5L));
+
+        // Act
+        processor.recoverPending();
+
+        // Assert
+        Mockito.verify(transactionService).failPendingTransactionsCreatedBefore(
+                Mockito.argThat(createdBefore -> createdBefore.getTime() <= now - 3_600_000 + 1000), Mockito.eq("Not executed within 3600000 ms"));
+        Mockito.verify(transactionService, Mockito.timeout(1000)).executePendingTransaction(5L);
+    }
+
+    @Test
+    void execute_unexpectedError_leavesTransactionPending() {
+        // Arrange
+        Mockito.doThrow(new IllegalStateException("connection reset"))
+                .when(transactionService).executePendingTransaction(5L);
+
+        // Act
+        processor.execute(5L);
+
+        // Assert
+        Mockito.verify(transactionService, Mockito.never()).failPendingTransaction(Mockito.any(), Mockito.any());
+    }
+}
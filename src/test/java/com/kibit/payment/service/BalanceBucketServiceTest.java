@@ -0,0 +1,117 @@
+package com.kibit.payment.service;
+
+import com.kibit.payment.entity.Account;
+import com.kibit.payment.entity.AccountBalanceBucket;
+import com.kibit.payment.exception.InsufficientBalanceException;
+import com.kibit.payment.money.Money;
+import com.kibit.payment.repository.AccountBalanceBucketRepository;
+import com.kibit.payment.repository.AccountRepository;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InOrder;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+
+@ExtendWith(MockitoExtension.class)
+class BalanceBucketServiceTest {
+
+    @Mock
+    private AccountRepository accountRepository;
+
+    @Mock
+    private AccountBalanceBucketRepository accountBalanceBucketRepository;
+
+    @InjectMocks
+    private BalanceBucketService balanceBucketService;
+
+    @Test
+    void debit_borrowsAcrossBuckets() {
+        // Arrange
+        Account account = account(1L, 3);
+        List<AccountBalanceBucket> buckets = List.of(bucket(0, "40.00"), bucket(1, "40.00"), bucket(2, "40.00"));
+        Mockito.when(accountBalanceBucketRepository.findAllByAccountIdForUpdate(1L)).thenReturn(buckets);
+
+        // Act
+        BigDecimal remaining = balanceBucketService.debit(account, new BigDecimal("100.00"));
+
+        // Assert
+        Assertions.assertEquals(new BigDecimal("20.00"), remaining);
+        BigDecimal sum = buckets.stream().map(AccountBalanceBucket::getBalance).reduce(BigDecimal.ZERO, BigDecimal::add);
+        Assertions.assertEquals(new BigDecimal("20.00"), sum);
+        Assertions.assertTrue(buckets.stream().allMatch(bucket -> bucket.getBalance().signum() >= 0));
+    }
+
+    @Test
+    void debit_insufficientBalance_leavesBucketsUnchanged() {
+        // Arrange
+        Account account = account(1L, 2);
+        List<AccountBalanceBucket> buckets = List.of(bucket(0, "30.00"), bucket(1, "30.00"));
+        Mockito.when(accountBalanceBucketRepository.findAllByAccountIdForUpdate(1L)).thenReturn(buckets);
+
+        // Act & Assert
+        Assertions.assertThrows(InsufficientBalanceException.class,
+                () -> balanceBucketService.debit(account, new BigDecimal("100.00")));
+        Assertions.assertEquals(new BigDecimal("30.00"), buckets.get(0).getBalance());
+        Assertions.assertEquals(new BigDecimal("30.00"), buckets.get(1).getBalance());
+    }
+
+    @Test
+    void lockBuckets_locksInAccountOrderAndCreditsOnlyLockedBuckets() {
+        // Arrange
+        Account creditedOnly = account(3L, 4);
+        Account debited = account(5L, 2);
+        Account unbucketed = account(4L, 0);
+        AccountBalanceBucket creditBucket = bucket(0, "10.00");
+        Mockito.when(accountBalanceBucketRepository.findByIdForUpdate(Mockito.eq(3L), Mockito.anyInt()))
+                .thenReturn(Optional.of(creditBucket));
+        Mockito.when(accountBalanceBucketRepository.findAllByAccountIdForUpdate(5L))
+                .thenReturn(List.of(bucket(0, "40.00"), bucket(1, "40.00")));
+        TransactionSynchronizationManager.initSynchronization();
+
+        try {
+            // Act
+            balanceBucketService.lockBuckets(Map.of(5L, debited, 4L, unbucketed, 3L, creditedOnly), Set.of(5L));
+            balanceBucketService.credit(creditedOnly, new BigDecimal("5.00"));
+            balanceBucketService.credit(creditedOnly, new BigDecimal("5.00"));
+            balanceBucketService.debit(debited, new BigDecimal("50.00"));
+
+            // Assert
+            InOrder inOrder = Mockito.inOrder(accountBalanceBucketRepository);
+            inOrder.verify(accountBalanceBucketRepository).findByIdForUpdate(Mockito.eq(3L), Mockito.anyInt());
+            inOrder.verify(accountBalanceBucketRepository).findAllByAccountIdForUpdate(5L);
+            Mockito.verify(accountBalanceBucketRepository, Mockito.times(1)).findByIdForUpdate(Mockito.anyLong(), Mockito.anyInt());
+            Mockito.verify(accountBalanceBucketRepository, Mockito.times(1)).findAllByAccountIdForUpdate(Mockito.anyLong());
+            Assertions.assertEquals(new BigDecimal("20.00"), creditBucket.getBalance());
+        } finally {
+            TransactionSynchronizationManager.unbindResourceIfPossible(balanceBucketService);
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    private Account account(Long id, int bucketCount) {
+        Account account = new Account();
+        account.setId(id);
+        account.setBalance(Money.zero(account.getCurrency()));
+        account.setBalanceBuckets(bucketCount);
+        return account;
+    }
+
+    private AccountBalanceBucket bucket(int number, String balance) {
+        AccountBalanceBucket bucket = new AccountBalanceBucket();
+        bucket.setAccountId(1L);
+        bucket.setBucket(number);
+        bucket.setBalance(new BigDecimal(balance));
+        return bucket;
+    }
+}
@@ -0,0 +1,144 @@
+package com.kibit.payment.service;
+
+import com.kibit.payment.dto.TransactionRequest;
+import com.kibit.payment.entity.IdempotencyRecord;
+import com.kibit.payment.entity.Transaction;
+import com.kibit.payment.exception.IdempotencyKeyConflictException;
+import com.kibit.payment.repository.IdempotencyRecordRepository;
+import com.kibit.payment.repository.TransactionRepository;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+class IdempotencyServiceTest {
+
+    @Mock
+    private TransactionService transactionService;
+
+    @Mock
+    private TransactionRepository transactionRepository;
+
+    @Mock
+    private IdempotencyRecordRepository idempotencyRecordRepository;
+
+    @Mock
+    private TransactionTemplate transactionTemplate;
+
+    private IdempotencyService idempotencyService;
+
+    private final Transaction transaction = new Transaction();
+
+    @BeforeEach
+    void setUp() {
+        idempotencyService = new IdempotencyService(transactionService, transactionRepository,
+                idempotencyRecordRepository, transactionTemplate, 100, 10, 5000, 24);
+        transaction.setId(42L);
+
+        Mockito.when(idempotencyRecordRepository.findById(Mockito.anyString())).thenReturn(Optional.empty());
+        Mockito.when(transactionTemplate.execute(Mockito.any()))
+                .thenAnswer(invocation -> invocation.<TransactionCallback<?>>getArgument(0).doInTransaction(null));
+    }
+
+    @Test
+    void processTransaction_retryReturnsStoredTransactionWithoutProcessingAgain() {
+        // Arrange
+        Mockito.when(transactionService.processTransaction(Mockito.any())).thenReturn(transaction);
+
+        // Act
+        Transaction first = idempotencyService.processTransaction("key-1", request("100.00"));
+        Transaction retry = idempotencyService.processTransaction("key-1", request("100.0"));
+
+        // Assert
+        Assertions.assertSame(first, retry);
+        Mockito.verify(transactionService, Mockito.times(1)).processTransaction(Mockito.any());
+        Mockito.verify(idempotencyRecordRepository).saveAndFlush(Mockito.argThat(record ->
+                record.getIdempotencyKey().equals("key-1") && record.getTransactionId().equals(42L)));
+    }
+
+    @Test
+    void processTransaction_keyReusedForDifferentRequest_throwsException() {
+        // Arrange
+        Mockito.when(transactionService.processTransaction(Mockito.any())).thenReturn(transaction);
+        idempotencyService.processTransaction("key-1", request("100.00"));
+
+        // Act & Assert
+        IdempotencyKeyConflictException exception = Assertions.assertThrows(
+                IdempotencyKeyConflictException.class,
+                () -> idempotencyService.processTransaction("key-1", request("200.00"))
+        );
+
+        Assertions.assertEquals("Idempotency key was already used for a different request", exception.getMessage());
+    }
+
+    @Test
+    void processTransaction_storedRecordAnswersWithoutProcessing() {
+        // Arrange
+        Mockito.when(transactionService.processTransaction(Mockito.any())).thenReturn(transaction);
+        idempotencyService.processTransaction("key-1", request("100.00"));
+        ArgumentCaptor<IdempotencyRecord> stored = ArgumentCaptor.forClass(IdempotencyRecord.class);
+        Mockito.verify(idempotencyRecordRepository).saveAndFlush(stored.capture());
+
+        IdempotencyService restarted = new IdempotencyService(transactionService, transactionRepository,
+                idempotencyRecordRepository, transactionTemplate, 100, 10, 5000, 24);
+        Mockito.when(idempotencyRecordRepository.findById("key-1")).thenReturn(Optional.of(stored.getValue()));
+        Mockito.when(transactionRepository.findById(42L)).thenReturn(Optional.of(transaction));
+
+        // Act
+        Transaction result = restarted.processTransaction("key-1", request("100.00"));
+
+        // Assert
+        Assertions.assertSame(transaction, result);
+        Mockito.verify(transactionService, Mockito.times(1)).processTransaction(Mockito.any());
+    }
+
+    @Test
+    void processTransaction_concurrentDuplicateWaitsForFirstRequest() throws Exception {
+        // Arrange
+        CountDownLatch processing = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Mockito.when(transactionService.processTransaction(Mockito.any())).thenAnswer(invocation -> {
+            processing.countDown();
+            release.await(5, TimeUnit.SECONDS);
+            return transaction;
+        });
+
+        // Act
+        CompletableFuture<Transaction> first = CompletableFuture.supplyAsync(
+                () -> idempotencyService.processTransaction("key-1", request("100.00")));
+        Assertions.assertTrue(processing.await(5, TimeUnit.SECONDS));
+        CompletableFuture<Transaction> duplicate = CompletableFuture.supplyAsync(
+                () -> idempotencyService.processTransaction("key-1", request("100.00")));
+        release.countDown();
+
+        // Assert
+        Assertions.assertSame(transaction, first.get(5, TimeUnit.SECONDS));
+        Assertions.assertSame(transaction, duplicate.get(5, TimeUnit.SECONDS));
+        Mockito.verify(transactionService, Mockito.times(1)).processTransaction(Mockito.any());
+    }
+
+    private TransactionRequest request(String amount) {
+        TransactionRequest request = new TransactionRequest();
+        request.setSenderAccountId(1L);
+        request.setReceiverAccountId(2L);
+        request.setAmount(new BigDecimal(amount));
+        return request;
+    }
+}
@@ -0,0 +1,123 @@
+package com.kibit.payment.service;
+
+import com.kibit.payment.entity.OutboxEvent;
+import com.kibit.payment.repository.OutboxEventRepository;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+
+@ExtendWith(MockitoExtension.class)
+class OutboxRelayTest {
+
+    @Mock
+    private OutboxEventRepository outboxEventRepository;
+
+    @Mock
+    private KafkaProducerService kafkaProducerService;
+
+    @Mock
+    private TransactionTemplate transactionTemplate;
+
+    private OutboxRelay outboxRelay;
+
+    @BeforeEach
+    void setUp() {
+        outboxRelay = new OutboxRelay(outboxEventRepository, kafkaProducerService, transactionTemplate, 2, 1000, 24);
+    }
+
+    @Test
+    void relayBatch_marksAcknowledgedEventsAsPublished() {
+        // Arrange
+        OutboxEvent first = event(1L);
+        OutboxEvent second = event(2L);
+        Mockito.when(outboxEventRepository.tryLockRelay()).thenReturn(true);
+        Mockito.when(outboxEventRepository.findUnpublished(2)).thenReturn(List.of(first, second));
+        Mockito.when(kafkaProducerService.publish(Mockito.any())).thenReturn(CompletableFuture.completedFuture(null));
+
+        // Act
+        int published = outboxRelay.relayBatch();
+
+        // Assert
+        Assertions.assertEquals(2, published);
+        Mockito.verify(outboxEventRepository).markPublished(Mockito.eq(List.of(1L, 2L)), Mockito.any());
+    }
+
+    @Test
+    void relayBatch_leavesFailedEventsUnpublished() {
+        // Arrange
+        OutboxEvent first = event(1L);
+        OutboxEvent second = event(2L);
+        Mockito.when(outboxEventRepository.tryLockRelay()).thenReturn(true);
+        Mockito.when(outboxEventRepository.findUnpublished(2)).thenReturn(List.of(first, second));
+        Mockito.when(kafkaProducerService.publish(first)).thenReturn(CompletableFuture.completedFuture(null));
+        Mockito.when(kafkaProducerService.publish(second)).thenReturn(CompletableFuture.failedFuture(new IllegalStateException("broker down")));
+
+        // Act
+        int published = outboxRelay.relayBatch();
+
+        // Assert
+        Assertions.assertEquals(0, published);
+        Mockito.verify(outboxEventRepository).markPublished(Mockito.eq(List.of(1L)), Mockito.any());
+    }
+
+    @Test
+    void relayBatch_earlierEventOfKeyFailed_leavesLaterEventsOfKeyUnpublished() {
+        // Arrange
+        OutboxEvent first = event(1L, "account-1");
+        OutboxEvent second = event(2L, "account-1");
+        OutboxEvent other = event(3L, "account-2");
+        outboxRelay = new OutboxRelay(outboxEventRepository, kafkaProducerService, transactionTemplate, 3, 1000, 24);
+        Mockito.when(outboxEventRepository.tryLockRelay()).thenReturn(true);
+        Mockito.when(outboxEventRepository.findUnpublished(3)).thenReturn(List.of(first, second, other));
+        Mockito.when(kafkaProducerService.publish(first)).thenReturn(CompletableFuture.failedFuture(new IllegalStateException("broker down")));
+        Mockito.when(kafkaProducerService.publish(second)).thenReturn(CompletableFuture.completedFuture(null));
+        Mockito.when(kafkaProducerService.publish(other)).thenReturn(CompletableFuture.completedFuture(null));
+
+        // Act
+        int published = outboxRelay.relayBatch();
+
+        // Assert
+        Assertions.assertEquals(0, published);
+        Mockito.verify(outboxEventRepository).markPublished(Mockito.eq(List.of(3L)), Mockito.any());
+    }
+
+    @Test
+    void relayBatch_anotherInstanceRelaying_skipsTurn() {
+        Mockito.when(outboxEventRepository.tryLockRelay()).thenReturn(false);
+
+        Assertions.assertEquals(0, outboxRelay.relayBatch());
+        Mockito.verify(outboxEventRepository, Mockito.never()).findUnpublished(Mockito.anyInt());
+        Mockito.verifyNoInteractions(kafkaProducerService);
+    }
+
+    @Test
+    void relayBatch_emptyOutbox_publishesNothing() {
+        Mockito.when(outboxEventRepository.tryLockRelay()).thenReturn(true);
+        Mockito.when(outboxEventRepository.findUnpublished(2)).thenReturn(List.of());
+
+        Assertions.assertEquals(0, outboxRelay.relayBatch());
+        Mockito.verifyNoInteractions(kafkaProducerService);
+    }
+
+    private OutboxEvent event(Long id) {
+        return event(id, null);
+    }
+
+    private OutboxEvent event(Long id, String messageKey) {
+        OutboxEvent event = new OutboxEvent();
+        event.setId(id);
+        event.setMessageKey(messageKey);
+        event.setTopic("transaction_notifications");
+        event.setPayload("payload-" + id);
+        return event;
+    }
+}
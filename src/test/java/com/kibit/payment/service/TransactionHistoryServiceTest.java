@@ -0,0 +1,76 @@
+package com.kibit.payment.service;
+
+import com.kibit.payment.dto.TransactionDirection;
+import com.kibit.payment.dto.TransactionHistoryPage;
+import com.kibit.payment.dto.TransactionResponse;
+import com.kibit.payment.entity.Account;
+import com.kibit.payment.exception.AccountNotFoundException;
+import com.kibit.payment.repository.TransactionRepository;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+
+
+@ExtendWith(MockitoExtension.class)
+class TransactionHistoryServiceTest {
+
+    private static final LocalDateTime CREATED_AT = LocalDateTime.of(2025, 3, 1, 12, 0, 0, 123456000);
+
+    @Mock
+    private TransactionRepository transactionRepository;
+
+    @Mock
+    private AccountService accountService;
+
+    @InjectMocks
+    private TransactionHistoryService transactionHistoryService;
+
+    @Test
+    void getAccountTransactions_nextPageContinuesAfterLastRow() {
+        // Arrange
+        List<TransactionRepository.HistoryRow> rows = List.of(row(30L), row(20L), row(10L));
+        Mockito.when(accountService.findAccounts(List.of(1L))).thenReturn(Map.of(1L, new Account()));
+        Mockito.when(transactionRepository.findSentHistory(Mockito.eq(1L), Mockito.any(), Mockito.any(), Mockito.eq(Long.MIN_VALUE), Mockito.eq(3)))
+                .thenReturn(rows);
+
+        // Act
+        TransactionHistoryPage first = transactionHistoryService.getAccountTransactions(1L, TransactionDirection.SENT, null, null, null, 2);
+        transactionHistoryService.getAccountTransactions(1L, TransactionDirection.SENT, null, null, first.nextCursor(), 2);
+
+        // Assert
+        Assertions.assertEquals(List.of(30L, 20L), first.transactions().stream().map(TransactionResponse::id).toList());
+        Mockito.verify(transactionRepository).findSentHistory(Mockito.eq(1L), Mockito.any(), Mockito.eq(CREATED_AT), Mockito.eq(20L), Mockito.eq(3));
+    }
+
+    @Test
+    void getAccountTransactions_unknownAccount_throwsException() {
+        // Arrange
+        Mockito.when(accountService.findAccounts(List.of(9L))).thenReturn(Map.of());
+
+        // Act & Assert
+        Assertions.assertThrows(
+                AccountNotFoundException.class,
+                () -> transactionHistoryService.getAccountTransactions(9L, TransactionDirection.ALL, null, null, null, 50)
+        );
+        Mockito.verifyNoInteractions(transactionRepository);
+    }
+
+    private static TransactionRepository.HistoryRow row(Long id) {
+        TransactionRepository.HistoryRow row = Mockito.mock(TransactionRepository.HistoryRow.class);
+        Mockito.lenient().when(row.getId()).thenReturn(id);
+        Mockito.lenient().when(row.getAmount()).thenReturn(new BigDecimal("10.00"));
+        Mockito.lenient().when(row.getStatus()).thenReturn("COMPLETED");
+        Mockito.lenient().when(row.getCreatedAt()).thenReturn(Timestamp.valueOf(CREATED_AT));
+        return row;
+    }
+}
@@ -0,0 +1,101 @@
+package com.kibit.payment.service;
+
+import com.kibit.payment.entity.Transaction;
+import com.kibit.payment.entity.TransactionNotification;
+import com.kibit.payment.repository.TransactionNotificationRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Date;
+import java.util.List;
+
+
+@ExtendWith(MockitoExtension.class)
+class TransactionNotificationServiceTest {
+
+    @Mock
+    private TransactionNotificationRepository transactionNotificationRepository;
+
+    private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private TransactionNotificationService service;
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+        service.stop();
+    }
+
+    @Test
+    void submit_insideTransaction_writesBatchOnlyAfterCommit() {
+        // Arrange
+        // Lingers long enough for both notifications to be queued before the batch is written.
+        service = new TransactionNotificationService(transactionNotificationRepository, meterRegistry, 100, 500, 500, 60000, 24);
+        service.start();
+        TransactionSynchronizationManager.initSynchronization();
+
+        // Act
+        service.submitAll(List.of(notification(1L), notification(2L)));
+        Mockito.verify(transactionNotificationRepository, Mockito.after(100).never()).saveAll(Mockito.any());
+        TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+
+        // Assert
+        Mockito.verify(transactionNotificationRepository, Mockito.timeout(2000))
+                .saveAll(Mockito.<List<TransactionNotification>>argThat(batch -> batch.size() == 2));
+        Assertions.assertEquals(1, meterRegistry.get("payment.notifications.flush").timer().count());
+    }
+
+    @Test
+    void submit_whenQueueIsFull_leavesNotificationForReconciliation() {
+        // Arrange
+        service = new TransactionNotificationService(transactionNotificationRepository, meterRegistry, 1, 500, 5, 60000, 24);
+
+        // Act
+        service.submit(notification(1L));
+        service.submit(notification(2L));
+
+        // Assert
+        Assertions.assertEquals(1.0, meterRegistry.get("payment.notifications.queue.size").gauge().value());
+        Assertions.assertEquals(1.0, meterRegistry.get("payment.notifications.queue.overflow").counter().count());
+    }
+
+    @Test
+    void reconcile_looksBackOnFirstRunAndThenContinuesFromPreviousRun() {
+        // Arrange
+        service = new TransactionNotificationService(transactionNotificationRepository, meterRegistry, 100, 500, 5, 60000, 24);
+        Mockito.when(transactionNotificationRepository.tryLockReconciliation()).thenReturn(true, false, true);
+        ArgumentCaptor<Date> since = ArgumentCaptor.forClass(Date.class);
+        ArgumentCaptor<Date> before = ArgumentCaptor.forClass(Date.class);
+
+        // Act
+        service.reconcile();
+        service.reconcile();
+        service.reconcile();
+
+        // Assert
+        Mockito.verify(transactionNotificationRepository, Mockito.times(2)).insertMissing(since.capture(), before.capture(), Mockito.any());
+        Assertions.assertEquals(24 * 3600_000L, before.getAllValues().get(0).getTime() - since.getAllValues().get(0).getTime());
+        Assertions.assertEquals(before.getAllValues().get(0).getTime() - 60000, since.getAllValues().get(1).getTime());
+    }
+
+    private static TransactionNotification notification(Long transactionId) {
+        Transaction transaction = new Transaction();
+        transaction.setId(transactionId);
+        TransactionNotification notification = new TransactionNotification();
+        notification.setTransaction(transaction);
+        notification.setRecipientEmail("test@test.com");
+        notification.setMessage("Transaction ID: " + transactionId + " has been completed");
+        return notification;
+    }
+}
@@ -1,11 +1,20 @@
 package com.kibit.payment.service;
 
+import com.kibit.payment.dto.BatchMode;
+import com.kibit.payment.dto.BatchTransactionResult;
 import com.kibit.payment.dto.TransactionRequest;
 import com.kibit.payment.entity.Account;
 import com.kibit.payment.entity.Transaction;
+import com.kibit.payment.entity.TransactionStatus;
 import com.kibit.payment.entity.User;
+import com.kibit.payment.exception.AccountNotFoundException;
 import com.kibit.payment.exception.InsufficientBalanceException;
+import com.kibit.payment.exchange.CurrencyConversion;
+import com.kibit.payment.exchange.ExchangeRateProvider;
+import com.kibit.payment.money.Money;
 import com.kibit.payment.repository.TransactionRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -13,9 +22,14 @@ import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.Mockito;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
 
 import java.math.BigDecimal;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
 
 
 @ExtendWith(MockitoExtension.class)
@@ -35,6 +49,14 @@ class TransactionServiceTest {
 
     @Mock
     private KafkaProducerService kafkaProducerService;
+
+    @Mock
+    private ExchangeRateProvider exchangeRateProvider;
+
+    private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @Spy
+    private TransferMetrics transferMetrics = new TransferMetrics(meterRegistry);
     private Account sender = new Account();
     private Account receiver = new Account();
 
@@ -49,14 +71,20 @@ class TransactionServiceTest {
 
 
         sender.setId(1L);
-        sender.setBalance(new BigDecimal("500.00"));
         sender.setCurrency("USD");
+        sender.setBalance(Money.of(new BigDecimal("500.00"), "USD"));
         sender.setUser(senderUser);
 
         receiver.setId(2L);
-        receiver.setBalance(new BigDecimal("100.00"));
         receiver.setCurrency("EUR");
+        receiver.setBalance(Money.of(new BigDecimal("100.00"), "EUR"));
         receiver.setUser(receiverUser);
+
+        Mockito.lenient().when(accountService.getAvailableBalance(Mockito.any(Account.class)))
+                .thenAnswer(invocation -> invocation.<Account>getArgument(0).getBalance());
+        Mockito.lenient().when(exchangeRateProvider.convert(Mockito.any(), Mockito.any()))
+                .thenAnswer(invocation -> new CurrencyConversion(BigDecimal.ONE,
+                        Money.ofMinor(invocation.<Money>getArgument(0).minorUnits(), invocation.getArgument(1))));
     }
 
     @Test
@@ -72,10 +100,10 @@ class TransactionServiceTest {
         transaction.setSenderAccount(sender);
         transaction.setReceiverAccount(receiver);
         transaction.setAmount(new BigDecimal("100.00"));
+        transaction.setCreditedAmount(new BigDecimal("100.00"));
         sender.setCurrency(receiver.getCurrency());
 
-        Mockito.when(accountService.getAccountById(1L)).thenReturn(sender);
-        Mockito.when(accountService.getAccountById(2L)).thenReturn(receiver);
+        Mockito.when(accountService.lockAccounts(List.of(1L, 2L))).thenReturn(Map.of(1L, sender, 2L, receiver));
         Mockito.when(transactionRepository.save(Mockito.any(Transaction.class))).thenReturn(transaction);
 
         // Act
@@ -87,11 +115,14 @@ class TransactionServiceTest {
         Assertions.assertEquals(new BigDecimal("100.00"), result.getAmount());
 
         // Verify interactions
-        Mockito.verify(accountService).getAccountById(1L);
-        Mockito.verify(accountService).getAccountById(2L);
-        Mockito.verify(accountService).updateBalance(sender.getId(), new BigDecimal("400.00"), transaction.getId());
-        Mockito.verify(accountService).updateBalance(receiver.getId(), new BigDecimal("200.00"), transaction.getId());
+        Mockito.verify(accountService).lockAccounts(List.of(1L, 2L));
+        Mockito.verify(accountService).transfer(sender, receiver, Money.of(new BigDecimal("100.00"), "EUR"),
+                Money.of(new BigDecimal("100.00"), "EUR"), transaction.getId());
         Mockito.verify(kafkaProducerService).sendTransactionNotification(transaction);
+        Assertions.assertEquals(1, meterRegistry.get("payment.transfer").tag("outcome", "completed").timer().count());
+        for (TransferMetrics.Stage stage : List.of(TransferMetrics.Stage.LOCK, TransferMetrics.Stage.PERSIST, TransferMetrics.Stage.NOTIFICATION)) {
+            Assertions.assertEquals(1, meterRegistry.get("payment.transfer.stage").tag("stage", stage.name().toLowerCase()).timer().count());
+        }
     }
 
     @Test
@@ -104,8 +135,7 @@ class TransactionServiceTest {
         request.setAmount(new BigDecimal("600.00"));
 
 
-        Mockito.when(accountService.getAccountById(1L)).thenReturn(sender);
-        Mockito.when(accountService.getAccountById(2L)).thenReturn(receiver);
+        Mockito.when(accountService.lockAccounts(List.of(1L, 2L))).thenReturn(Map.of(1L, sender, 2L, receiver));
 
         // Act & Assert
         InsufficientBalanceException exception = Assertions.assertThrows(
@@ -114,7 +144,29 @@ class TransactionServiceTest {
         );
 
         Assertions.assertEquals("Sender balance is less than the requested amount", exception.getMessage());
-        Mockito.verify(accountService).getAccountById(1L);
+        Mockito.verify(accountService).lockAccounts(List.of(1L, 2L));
+        Mockito.verifyNoInteractions(transactionRepository, kafkaProducerService);
+        Assertions.assertEquals(1.0, meterRegistry.get("payment.transfer.errors").tag("outcome", "insufficient_balance").counter().count());
+    }
+
+    @Test
+    void processTransaction_missingReceiver_throwsException() {
+        // Arrange
+        TransactionRequest request = new TransactionRequest();
+        request.setSenderAccountId(1L);
+        request.setReceiverAccountId(2L);
+        request.setAmount(new BigDecimal("100.00"));
+
+        Mockito.when(accountService.lockAccounts(List.of(1L, 2L))).thenReturn(Map.of(1L, sender));
+
+        // Act & Assert
+        AccountNotFoundException exception = Assertions.assertThrows(
+                AccountNotFoundException.class,
+                () -> transactionService.processTransaction(request)
+        );
+
+        Assertions.assertEquals("Receiver account does not exist", exception.getMessage());
+        Mockito.verify(accountService, Mockito.never()).transfer(Mockito.any(), Mockito.any(), Mockito.any(), Mockito.any(), Mockito.any());
         Mockito.verifyNoInteractions(transactionRepository, kafkaProducerService);
     }
 
@@ -146,28 +198,26 @@ class TransactionServiceTest {
         request.setReceiverAccountId(2L);
         request.setAmount(new BigDecimal("100.00"));
 
-        Transaction transaction = new Transaction();
-        transaction.setId(1L);
-        transaction.setSenderAccount(sender);
-        transaction.setReceiverAccount(receiver);
-        transaction.setAmount(new BigDecimal("110.00"));
-
-        Mockito.when(accountService.getAccountById(1L)).thenReturn(sender);
-        Mockito.when(accountService.getAccountById(2L)).thenReturn(receiver);
-        Mockito.when(transactionRepository.save(Mockito.any(Transaction.class))).thenReturn(transaction);
-
-        Mockito.doNothing().when(kafkaProducerService).modifyCurrencyNotification(Mockito.anyString());
+        Mockito.when(exchangeRateProvider.convert(Money.of(new BigDecimal("100.00"), "USD"), "EUR"))
+                .thenReturn(new CurrencyConversion(new BigDecimal("0.9216589862"), Money.of(new BigDecimal("92.17"), "EUR")));
+        Mockito.when(accountService.lockAccounts(List.of(1L, 2L))).thenReturn(Map.of(1L, sender, 2L, receiver));
+        Mockito.when(transactionRepository.save(Mockito.any(Transaction.class))).thenAnswer(invocation -> {
+            Transaction saved = invocation.getArgument(0);
+            saved.setId(1L);
+            return saved;
+        });
 
         // Act
         Transaction result = transactionService.processTransaction(request);
 
         // Assert
-        Assertions.assertNotNull(result);
-        Mockito.verify(accountService).getAccountById(1L);
-        Mockito.verify(accountService).getAccountById(2L);
-        Mockito.verify(accountService).updateBalance(sender.getId(), new BigDecimal("390.000"), transaction.getId());
-        Mockito.verify(accountService).updateBalance(receiver.getId(), new BigDecimal("210.000"), transaction.getId());
-        Mockito.verify(kafkaProducerService).modifyCurrencyNotification(Mockito.contains("Amount converted from"));
+        Assertions.assertEquals(new BigDecimal("100.00"), result.getAmount());
+        Assertions.assertEquals(new BigDecimal("92.17"), result.getCreditedAmount());
+        Assertions.assertEquals(new BigDecimal("0.9216589862"), result.getExchangeRate());
+        Mockito.verify(accountService).lockAccounts(List.of(1L, 2L));
+        Mockito.verify(accountService).transfer(sender, receiver, Money.of(new BigDecimal("100.00"), "USD"),
+                Money.of(new BigDecimal("92.17"), "EUR"), 1L);
+        Mockito.verify(kafkaProducerService).modifyCurrencyNotification(result, "USD", "EUR");
     }
 
     @Test
@@ -217,4 +267,115 @@ class TransactionServiceTest {
         Assertions.assertEquals("Transaction amount must be greater than zero", exception.getMessage());
         Mockito.verifyNoInteractions(accountService, transactionRepository, kafkaProducerService);
     }
+
+    @Test
+    void processTransaction_amountWithMoreThanTwoDecimals_throwsException() {
+        // Arrange
+        TransactionRequest request = new TransactionRequest();
+        request.setSenderAccountId(1L);
+        request.setReceiverAccountId(2L);
+        request.setAmount(new BigDecimal("10.005"));
+
+        // Act & Assert
+        IllegalArgumentException exception = Assertions.assertThrows(
+                IllegalArgumentException.class,
+                () -> transactionService.processTransaction(request)
+        );
+
+        Assertions.assertEquals("Transaction amount cannot have more than 2 decimals", exception.getMessage());
+        Mockito.verifyNoInteractions(accountService, transactionRepository, kafkaProducerService);
+    }
+
+    @Test
+    void processBatch_bestEffort_appliesValidTransfersAgainstRunningBalance() {
+        // Arrange
+        sender.setCurrency(receiver.getCurrency());
+        List<TransactionRequest> requests = List.of(
+                request(1L, 2L, "300.00"),
+                request(1L, 2L, "300.00"),
+                request(2L, 1L, "50.00"));
+
+        Mockito.when(accountService.lockAccounts(Set.of(1L, 2L))).thenReturn(Map.of(1L, sender, 2L, receiver));
+        Mockito.when(transactionRepository.saveAll(Mockito.anyList())).thenAnswer(invocation -> {
+            List<Transaction> transactions = invocation.getArgument(0);
+            for (int i = 0; i < transactions.size(); i++) {
+                transactions.get(i).setId(10L + i);
+            }
+            return transactions;
+        });
+
+        // Act
+        List<BatchTransactionResult> results = transactionService.processBatch(requests, BatchMode.BEST_EFFORT);
+
+        // Assert
+        Assertions.assertEquals(3, results.size());
+        Assertions.assertEquals(TransactionStatus.COMPLETED, results.get(0).getStatus());
+        Assertions.assertEquals(10L, results.get(0).getTransactionId());
+        Assertions.assertEquals(TransactionStatus.FAILED, results.get(1).getStatus());
+        Assertions.assertEquals("Sender balance is less than the requested amount", results.get(1).getMessage());
+        Assertions.assertEquals(TransactionStatus.COMPLETED, results.get(2).getStatus());
+        Assertions.assertEquals(11L, results.get(2).getTransactionId());
+
+        Mockito.verify(accountService).lockAccounts(Set.of(1L, 2L));
+        Mockito.verify(transactionNotificationService).submitAll(Mockito.argThat(notifications -> notifications.size() == 2));
+        Mockito.verify(kafkaProducerService, Mockito.times(2)).sendTransactionNotification(Mockito.any(Transaction.class));
+    }
+
+    @Test
+    void processBatch_allOrNothing_writesNothingWhenAnyTransferFails() {
+        // Arrange
+        List<TransactionRequest> requests = List.of(
+                request(1L, 2L, "100.00"),
+                request(1L, 3L, "100.00"));
+
+        Mockito.when(accountService.lockAccounts(Set.of(1L, 2L, 3L))).thenReturn(Map.of(1L, sender, 2L, receiver));
+
+        // Act
+        List<BatchTransactionResult> results = transactionService.processBatch(requests, BatchMode.ALL_OR_NOTHING);
+
+        // Assert
+        Assertions.assertEquals(TransactionStatus.FAILED, results.get(0).getStatus());
+        Assertions.assertEquals(TransactionStatus.FAILED, results.get(1).getStatus());
+        Assertions.assertEquals("Receiver account does not exist", results.get(1).getMessage());
+        Mockito.verify(accountService, Mockito.never()).transfer(Mockito.any(), Mockito.any(), Mockito.any(), Mockito.any(), Mockito.any());
+        Mockito.verifyNoInteractions(transactionRepository, transactionNotificationService, kafkaProducerService);
+    }
+
+    @Test
+    void submitTransaction_storesPendingTransactionWithoutTransfer() {
+        // Arrange
+        Mockito.when(accountService.findAccounts(List.of(1L, 2L))).thenReturn(Map.of(1L, sender, 2L, receiver));
+        Mockito.when(transactionRepository.save(Mockito.any(Transaction.class))).thenAnswer(invocation -> invocation.getArgument(0));
+
+        // Act
+        Transaction result = transactionService.submitTransaction(request(1L, 2L, "100.00"));
+
+        // Assert
+        Assertions.assertEquals(TransactionStatus.PENDING, result.getStatus());
+        Mockito.verify(accountService, Mockito.never()).lockAccounts(Mockito.any());
+        Mockito.verify(accountService, Mockito.never()).transfer(Mockito.any(), Mockito.any(), Mockito.any(), Mockito.any(), Mockito.any());
+        Mockito.verifyNoInteractions(kafkaProducerService, transactionNotificationService);
+    }
+
+    @Test
+    void executePendingTransaction_alreadyCompleted_isSkipped() {
+        // Arrange
+        TransactionRepository.TransferDetails details = Mockito.mock(TransactionRepository.TransferDetails.class);
+        Mockito.when(details.getStatus()).thenReturn(TransactionStatus.COMPLETED.name());
+        Mockito.when(transactionRepository.findTransferDetailsForUpdate(7L)).thenReturn(Optional.of(details));
+
+        // Act
+        transactionService.executePendingTransaction(7L);
+
+        // Assert
+        Mockito.verifyNoInteractions(accountService, kafkaProducerService, transactionNotificationService);
+    }
+
+    private TransactionRequest request(Long senderAccountId, Long receiverAccountId, String amount) {
+        TransactionRequest request = new TransactionRequest();
+        request.setSenderAccountId(senderAccountId);
+        request.setReceiverAccountId(receiverAccountId);
+        request.setAmount(new BigDecimal(amount));
+        return request;
+    }
 }
@@ -0,0 +1,60 @@
+package com.kibit.payment.service;
+
+import com.kibit.payment.dto.UserPage;
+import com.kibit.payment.dto.UserResponse;
+import com.kibit.payment.repository.UserRepository;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.PageRequest;
+
+import java.util.Date;
+import java.util.List;
+import java.util.stream.LongStream;
+
+
+@ExtendWith(MockitoExtension.class)
+class UserServiceTest {
+
+    @Mock
+    private UserRepository userRepository;
+
+    @InjectMocks
+    private UserService userService;
+
+    @Test
+    void getUsers_fullPage_returnsCursorOfLastUser() {
+        // Arrange
+        Mockito.when(userRepository.findPageAfter(10L, PageRequest.ofSize(3))).thenReturn(users(11, 13));
+
+        // Act
+        UserPage page = userService.getUsers(10L, 2);
+
+        // Assert
+        Assertions.assertEquals(List.of(11L, 12L), page.users().stream().map(UserResponse::id).toList());
+        Assertions.assertEquals(12L, page.nextCursor());
+    }
+
+    @Test
+    void getUsers_lastPage_hasNoCursor() {
+        // Arrange
+        Mockito.when(userRepository.findPageAfter(0L, PageRequest.ofSize(UserService.MAX_PAGE_SIZE + 1))).thenReturn(users(1, 2));
+
+        // Act
+        UserPage page = userService.getUsers(null, 5000);
+
+        // Assert
+        Assertions.assertEquals(2, page.users().size());
+        Assertions.assertNull(page.nextCursor());
+    }
+
+    private static List<UserResponse> users(long fromId, long toId) {
+        return LongStream.rangeClosed(fromId, toId)
+                .mapToObj(id -> new UserResponse(id, "user" + id, "user" + id + "@test.com", new Date()))
+                .toList();
+    }
+}
@@ -0,0 +1,108 @@
+package com.kibit.payment.streams;
+
+import com.kibit.payment.entity.TransactionStatus;
+import com.kibit.payment.event.EventCodec;
+import com.kibit.payment.event.TransactionEvent;
+import com.kibit.payment.service.KafkaProducerService;
+import org.apache.kafka.common.serialization.StringSerializer;
+import org.apache.kafka.streams.KeyValue;
+import org.apache.kafka.streams.StreamsBuilder;
+import org.apache.kafka.streams.StreamsConfig;
+import org.apache.kafka.streams.TestInputTopic;
+import org.apache.kafka.streams.TopologyTestDriver;
+import org.apache.kafka.streams.state.WindowStore;
+import org.apache.kafka.streams.state.WindowStoreIterator;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+
+
+class AccountActivityTopologyTest {
+
+    private static final Instant WINDOW_START = Instant.parse("2026-10-18T10:00:00Z");
+
+    private final EventCodec eventCodec = new EventCodec(Jackson2ObjectMapperBuilder.json().build());
+    private TopologyTestDriver driver;
+    private TestInputTopic<String, String> notifications;
+
+    @BeforeEach
+    void setUp() {
+        StreamsBuilder streamsBuilder = new StreamsBuilder();
+        new AccountActivityTopology(eventCodec, 60000, 60000, 24).accountActivity(streamsBuilder);
+        Properties properties = new Properties();
+        properties.put(StreamsConfig.APPLICATION_ID_CONFIG, "account-activity-test");
+        properties.put(StreamsConfig.BOOTSTRAP_SERVERS_CONFIG, "dummy:9092");
+        driver = new TopologyTestDriver(streamsBuilder.build(), properties);
+        notifications = driver.createInputTopic(KafkaProducerService.TRANSACTION_TOPIC,
+                new StringSerializer(), new StringSerializer());
+    }
+
+    @AfterEach
+    void tearDown() {
+        driver.close();
+    }
+
+    @Test
+    void transfer_countsForSenderAndReceiverInTheirCurrencies() {
+        // Arrange
+        send(transfer(1L, 1L, 2L, "100.00", "108.50", TransactionStatus.COMPLETED, WINDOW_START.plusSeconds(5)));
+        send(transfer(2L, 2L, 1L, "20.00", "18.43", TransactionStatus.COMPLETED, WINDOW_START.plusSeconds(30)));
+
+        // Act
+        List<KeyValue<Long, AccountActivity>> sender = windows(1L);
+        List<KeyValue<Long, AccountActivity>> receiver = windows(2L);
+
+        // Assert
+        Assertions.assertEquals(List.of(KeyValue.pair(WINDOW_START.toEpochMilli(),
+                new AccountActivity(2, new BigDecimal("118.43"), new BigDecimal("-81.57")))), sender);
+        Assertions.assertEquals(List.of(KeyValue.pair(WINDOW_START.toEpochMilli(),
+                new AccountActivity(2, new BigDecimal("128.50"), new BigDecimal("88.50")))), receiver);
+    }
+
+    @Test
+    void transfers_areWindowedByTransferTimeAndIncompleteOnesSkipped() {
+        // Arrange
+        send(transfer(1L, 1L, 2L, "10.00", "10.00", TransactionStatus.COMPLETED, WINDOW_START.plusSeconds(59)));
+        send(transfer(2L, 1L, 2L, "5.00", "5.00", TransactionStatus.COMPLETED, WINDOW_START.plusSeconds(61)));
+        send(transfer(3L, 1L, 2L, "7.00", "7.00", TransactionStatus.FAILED, WINDOW_START.plusSeconds(62)));
+        notifications.pipeInput("1", "not json");
+
+        // Act
+        List<KeyValue<Long, AccountActivity>> sender = windows(1L);
+
+        // Assert
+        Assertions.assertEquals(List.of(
+                KeyValue.pair(WINDOW_START.toEpochMilli(), new AccountActivity(1, new BigDecimal("10.00"), new BigDecimal("-10.00"))),
+                KeyValue.pair(WINDOW_START.plusSeconds(60).toEpochMilli(), new AccountActivity(1, new BigDecimal("5.00"), new BigDecimal("-5.00")))
+        ), sender);
+    }
+
+    private void send(TransactionEvent event) {
+        // Sent a while after the transfer, as the outbox relay would.
+        notifications.pipeInput(event.senderAccountId().toString(), eventCodec.encode(event), event.timestamp().plusSeconds(30));
+    }
+
+    private List<KeyValue<Long, AccountActivity>> windows(Long accountId) {
+        WindowStore<String, AccountActivity> store = driver.getWindowStore(AccountActivityTopology.STORE);
+        List<KeyValue<Long, AccountActivity>> windows = new ArrayList<>();
+        try (WindowStoreIterator<AccountActivity> iterator =
+                     store.fetch(accountId.toString(), WINDOW_START.minusSeconds(3600), WINDOW_START.plusSeconds(3600))) {
+            iterator.forEachRemaining(windows::add);
+        }
+        return windows;
+    }
+
+    private static TransactionEvent transfer(Long id, Long sender, Long receiver, String amount, String creditedAmount,
+                                             TransactionStatus status, Instant timestamp) {
+        return new TransactionEvent(TransactionEvent.VERSION, id, sender, receiver, new BigDecimal(amount),
+                new BigDecimal(creditedAmount), status, timestamp);
+    }
+}
@@ -0,0 +1,108 @@
+package com.kibit.payment.web;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicReference;
+
+
+class AdmissionControlFilterTest {
+
+    private SimpleMeterRegistry meterRegistry;
+    private AdmissionControlFilter filter;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        filter = new AdmissionControlFilter(meterRegistry, 1, 10, 4, 4, 1, 0, false);
+    }
+
+    @Test
+    void doFilter_permitAvailable_admitsRequestAndReleasesPermit() throws Exception {
+        // Act
+        MockHttpServletResponse first = execute("/api/transactions", new MockFilterChain());
+        MockHttpServletResponse second = execute("/api/transactions", new MockFilterChain());
+
+        // Assert
+        Assertions.assertEquals(200, first.getStatus());
+        Assertions.assertEquals(200, second.getStatus());
+        Assertions.assertEquals(2, meterRegistry.get("payment.admission.wait").tags("gate", "write", "outcome", "admitted").timer().count());
+    }
+
+    @Test
+    void doFilter_allPermitsInUse_rejectsWith503() throws Exception {
+        // Arrange
+        AtomicReference<MockHttpServletResponse> nested = new AtomicReference<>();
+        FilterChain holdingPermit = (request, response) -> nested.set(execute("/api/transactions", new MockFilterChain()));
+
+        // Act
+        MockHttpServletResponse outer = execute("/api/transactions", holdingPermit);
+
+        // Assert
+        Assertions.assertEquals(200, outer.getStatus());
+        Assertions.assertEquals(503, nested.get().getStatus());
+        Assertions.assertEquals("1", nested.get().getHeader("Retry-After"));
+        Assertions.assertEquals(1, meterRegistry.get("payment.admission.wait").tags("gate", "write", "outcome", "rejected").timer().count());
+    }
+
+    @Test
+    void doFilter_permitsUnset_reservesConnectionsForBackgroundWork() throws Exception {
+        // Arrange
+        // 7 connections, of which 4 are kept for the async workers, 1 for the scheduler and 1 for the notification writer.
+        filter = new AdmissionControlFilter(meterRegistry, 0, 7, 4, 1, 1, 0, false);
+        AtomicReference<MockHttpServletResponse> nested = new AtomicReference<>();
+        FilterChain holdingPermit = (request, response) -> nested.set(execute("/api/transactions", new MockFilterChain()));
+
+        // Act
+        execute("/api/transactions", holdingPermit);
+
+        // Assert
+        Assertions.assertEquals(503, nested.get().getStatus());
+    }
+
+    @Test
+    void doFilter_writePermitsInUse_admitsReads() throws Exception {
+        // Arrange
+        AtomicReference<MockHttpServletResponse> nested = new AtomicReference<>();
+        FilterChain holdingPermit = (request, response) -> nested.set(execute("GET", "/api/accounts/1", new MockFilterChain()));
+
+        // Act
+        execute("/api/transactions", holdingPermit);
+
+        // Assert
+        Assertions.assertEquals(200, nested.get().getStatus());
+        Assertions.assertEquals(1, meterRegistry.get("payment.admission.wait").tags("gate", "read", "outcome", "admitted").timer().count());
+    }
+
+    @Test
+    void doFilter_nonApiRequest_bypassesGate() throws Exception {
+        // Arrange
+        AtomicReference<MockHttpServletResponse> nested = new AtomicReference<>();
+        FilterChain holdingPermit = (request, response) -> nested.set(execute("/actuator/health", new MockFilterChain()));
+
+        // Act
+        execute("/api/transactions", holdingPermit);
+
+        // Assert
+        Assertions.assertEquals(200, nested.get().getStatus());
+    }
+
+    private MockHttpServletResponse execute(String uri, FilterChain chain) throws ServletException, IOException {
+        return execute("POST", uri, chain);
+    }
+
+    private MockHttpServletResponse execute(String method, String uri, FilterChain chain) throws ServletException, IOException {
+        MockHttpServletRequest request = new MockHttpServletRequest(method, uri);
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        filter.doFilter(request, response, chain);
+        return response;
+    }
+}